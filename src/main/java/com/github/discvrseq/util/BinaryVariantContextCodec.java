@@ -0,0 +1,527 @@
+package com.github.discvrseq.util;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.SortingCollection;
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypeBuilder;
+import htsjdk.variant.variantcontext.GenotypesContext;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextBuilder;
+import htsjdk.variant.vcf.VCFEncoder;
+import htsjdk.variant.vcf.VCFFormatHeaderLine;
+import htsjdk.variant.vcf.VCFHeader;
+import htsjdk.variant.vcf.VCFInfoHeaderLine;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nullable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A SortingCollection codec that stores VariantContexts in a compact binary form, rather than formatting each record (including all genotypes) as VCF text
+ * and parsing it again on read-back, as VCFRecordCodec does.
+ *
+ * Similar to BCF2, contigs, samples and INFO/FORMAT keys are written as indexes into dictionaries built from the header, integers use a variable-length encoding,
+ * and genotype alleles are written as indexes into the site's alleles. Unlike BCF2, attribute values keep their java type, so a value parsed from VCF text as a String
+ * is written back exactly as it was read. Values of other types are stored as the text the VCF encoder would produce, so output written from decoded records is unchanged.
+ *
+ * Spill files are compressed by SortingCollection itself when snappy is available.
+ */
+public class BinaryVariantContextCodec implements SortingCollection.Codec<VariantContext> {
+    // The approximate heap size of a VariantContext and of each genotype, used to convert a RAM budget to a record count:
+    private static final int ESTIMATED_BYTES_PER_RECORD = 1024;
+    private static final int ESTIMATED_BYTES_PER_GENOTYPE = 256;
+
+    // SortingCollection writes one spill file each time this many records accumulate, and holds every spill file open while merging.
+    // A smaller limit is not used even if the RAM budget is smaller, since a large input would otherwise exhaust the open file limit:
+    public static final int MIN_RECORDS_IN_RAM = 500;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_DOUBLE = 3;
+    private static final byte TYPE_TRUE = 4;
+    private static final byte TYPE_FALSE = 5;
+    private static final byte TYPE_LIST = 6;
+    private static final byte TYPE_INT_ARRAY = 7;
+    private static final byte TYPE_DOUBLE_ARRAY = 8;
+
+    private static final int NO_CALL_ALLELE = -1;
+    private static final int OTHER_ALLELE = -2;
+
+    private final Dictionary contigs;
+    private final Dictionary samples;
+    private final Dictionary infoKeys;
+    private final Dictionary formatKeys;
+
+    private DataOutputStream out;
+    private DataInputStream in;
+
+    public BinaryVariantContextCodec(VCFHeader header) {
+        SAMSequenceDictionary dict = header.getSequenceDictionary();
+        this.contigs = new Dictionary(dict == null ? List.of() : dict.getSequences().stream().map(SAMSequenceRecord::getSequenceName).toList());
+        this.samples = new Dictionary(header.getGenotypeSamples());
+        this.infoKeys = new Dictionary(header.getInfoHeaderLines().stream().map(VCFInfoHeaderLine::getID).toList());
+        this.formatKeys = new Dictionary(header.getFormatHeaderLines().stream().map(VCFFormatHeaderLine::getID).toList());
+    }
+
+    private BinaryVariantContextCodec(BinaryVariantContextCodec other) {
+        this.contigs = other.contigs;
+        this.samples = other.samples;
+        this.infoKeys = other.infoKeys;
+        this.formatKeys = other.formatKeys;
+    }
+
+    /**
+     * Creates a SortingCollection using this codec, which holds approximately maxRamBytes of records in memory before spilling to disk.
+     * If the budget is too small to hold MIN_RECORDS_IN_RAM records, a warning is logged and that many records are held regardless.
+     *
+     * @param maxRamBytes The RAM budget for records, or null to use a quarter of the maximum heap size
+     */
+    public static SortingCollection<VariantContext> createSortingCollection(VCFHeader header, @Nullable Long maxRamBytes, Path tmpDir, Logger logger) {
+        long recordsWithinBudget = getRecordsWithinBudget(header, maxRamBytes);
+        if (recordsWithinBudget < MIN_RECORDS_IN_RAM) {
+            logger.warn("The sorting RAM budget allows only " + recordsWithinBudget + " records with " + header.getNGenotypeSamples() + " samples. " + MIN_RECORDS_IN_RAM + " records will be held in memory regardless, which is approximately " + (getEstimatedBytesPerRecord(header) * MIN_RECORDS_IN_RAM / (1024 * 1024)) + "MB");
+        }
+
+        return SortingCollection.newInstance(
+                VariantContext.class,
+                new BinaryVariantContextCodec(header),
+                header.getVCFRecordComparator(),
+                getMaxRecordsInRam(header, maxRamBytes), tmpDir);
+    }
+
+    /**
+     * @return The number of records expected to fit within maxRamBytes, based on the number of samples in the header, but no fewer than MIN_RECORDS_IN_RAM
+     */
+    public static int getMaxRecordsInRam(VCFHeader header, @Nullable Long maxRamBytes) {
+        return (int) Math.max(MIN_RECORDS_IN_RAM, Math.min(Integer.MAX_VALUE - 8, getRecordsWithinBudget(header, maxRamBytes)));
+    }
+
+    private static long getRecordsWithinBudget(VCFHeader header, @Nullable Long maxRamBytes) {
+        long budget = maxRamBytes == null ? Runtime.getRuntime().maxMemory() / 4 : maxRamBytes;
+
+        return budget / getEstimatedBytesPerRecord(header);
+    }
+
+    private static long getEstimatedBytesPerRecord(VCFHeader header) {
+        return ESTIMATED_BYTES_PER_RECORD + (long) header.getNGenotypeSamples() * ESTIMATED_BYTES_PER_GENOTYPE;
+    }
+
+    @Override
+    public void setOutputStream(OutputStream os) {
+        out = new DataOutputStream(os);
+    }
+
+    @Override
+    public void setInputStream(InputStream is) {
+        in = new DataInputStream(is);
+    }
+
+    @Override
+    public SortingCollection.Codec<VariantContext> clone() {
+        return new BinaryVariantContextCodec(this);
+    }
+
+    @Override
+    public void encode(VariantContext vc) {
+        try {
+            // Each record starts with a marker byte, which allows the end of the stream to be detected:
+            out.writeByte(1);
+            contigs.write(out, vc.getContig());
+            writeVarInt(out, vc.getStart());
+            writeVarInt(out, vc.getEnd());
+            writeString(out, vc.getID());
+            out.writeDouble(vc.getLog10PError());
+
+            List<Allele> alleles = vc.getAlleles();
+            writeVarInt(out, alleles.size());
+            for (Allele a : alleles) {
+                out.writeBoolean(a.isReference());
+                writeString(out, a.getDisplayString());
+            }
+
+            Set<String> filters = vc.getFiltersMaybeNull();
+            if (filters == null) {
+                writeVarInt(out, -1);
+            }
+            else {
+                writeVarInt(out, filters.size());
+                for (String f : filters) {
+                    writeString(out, f);
+                }
+            }
+
+            writeAttributes(out, vc.getAttributes(), infoKeys);
+
+            GenotypesContext genotypes = vc.getGenotypes();
+            writeVarInt(out, genotypes.size());
+            for (int i = 0; i < genotypes.size(); i++) {
+                writeGenotype(out, genotypes.get(i), alleles);
+            }
+        }
+        catch (IOException e) {
+            throw new RuntimeIOException(e);
+        }
+    }
+
+    private void writeGenotype(DataOutputStream out, Genotype g, List<Allele> siteAlleles) throws IOException {
+        samples.write(out, g.getSampleName());
+        out.writeBoolean(g.isPhased());
+
+        writeVarInt(out, g.getPloidy());
+        for (Allele a : g.getAlleles()) {
+            if (a.isNoCall()) {
+                writeVarInt(out, NO_CALL_ALLELE);
+                continue;
+            }
+
+            int idx = siteAlleles.indexOf(a);
+            writeVarInt(out, idx == -1 ? OTHER_ALLELE : idx);
+            if (idx == -1) {
+                out.writeBoolean(a.isReference());
+                writeString(out, a.getDisplayString());
+            }
+        }
+
+        writeVarInt(out, g.hasGQ() ? g.getGQ() : -1);
+        writeVarInt(out, g.hasDP() ? g.getDP() : -1);
+        writeIntArray(out, g.hasAD() ? g.getAD() : null);
+        writeIntArray(out, g.hasPL() ? g.getPL() : null);
+        writeString(out, g.getFilters());
+
+        writeAttributes(out, g.getExtendedAttributes(), formatKeys);
+    }
+
+    @Override
+    public VariantContext decode() {
+        try {
+            int marker = in.read();
+            if (marker == -1) {
+                return null;
+            }
+
+            VariantContextBuilder vcb = new VariantContextBuilder();
+            vcb.chr(contigs.read(in));
+            vcb.start(readVarInt(in));
+            vcb.stop(readVarInt(in));
+            vcb.id(readString(in));
+            vcb.log10PError(in.readDouble());
+
+            int alleleCount = readVarInt(in);
+            List<Allele> alleles = new ArrayList<>(alleleCount);
+            for (int i = 0; i < alleleCount; i++) {
+                boolean isRef = in.readBoolean();
+                alleles.add(Allele.create(readString(in), isRef));
+            }
+            vcb.alleles(alleles);
+
+            int filterCount = readVarInt(in);
+            if (filterCount == -1) {
+                vcb.unfiltered();
+            }
+            else if (filterCount == 0) {
+                vcb.passFilters();
+            }
+            else {
+                Set<String> filters = new LinkedHashSet<>(filterCount);
+                for (int i = 0; i < filterCount; i++) {
+                    filters.add(readString(in));
+                }
+                vcb.filters(filters);
+            }
+
+            vcb.attributes(readAttributes(in, infoKeys));
+
+            int genotypeCount = readVarInt(in);
+            if (genotypeCount > 0) {
+                ArrayList<Genotype> genotypes = new ArrayList<>(genotypeCount);
+                for (int i = 0; i < genotypeCount; i++) {
+                    genotypes.add(readGenotype(in, alleles));
+                }
+                vcb.genotypes(GenotypesContext.create(genotypes));
+            }
+
+            return vcb.make();
+        }
+        catch (IOException e) {
+            throw new RuntimeIOException(e);
+        }
+    }
+
+    private Genotype readGenotype(DataInputStream in, List<Allele> siteAlleles) throws IOException {
+        String sampleName = samples.read(in);
+        boolean phased = in.readBoolean();
+
+        int ploidy = readVarInt(in);
+        List<Allele> alleles = new ArrayList<>(ploidy);
+        for (int i = 0; i < ploidy; i++) {
+            int idx = readVarInt(in);
+            if (idx == NO_CALL_ALLELE) {
+                alleles.add(Allele.NO_CALL);
+            }
+            else if (idx == OTHER_ALLELE) {
+                boolean isRef = in.readBoolean();
+                alleles.add(Allele.create(readString(in), isRef));
+            }
+            else {
+                alleles.add(siteAlleles.get(idx));
+            }
+        }
+
+        GenotypeBuilder gb = new GenotypeBuilder(sampleName, alleles);
+        gb.phased(phased);
+
+        int gq = readVarInt(in);
+        if (gq != -1) {
+            gb.GQ(gq);
+        }
+
+        int dp = readVarInt(in);
+        if (dp != -1) {
+            gb.DP(dp);
+        }
+
+        int[] ad = readIntArray(in);
+        if (ad != null) {
+            gb.AD(ad);
+        }
+
+        int[] pl = readIntArray(in);
+        if (pl != null) {
+            gb.PL(pl);
+        }
+
+        gb.filter(readString(in));
+        gb.attributes(readAttributes(in, formatKeys));
+
+        return gb.make();
+    }
+
+    private static void writeAttributes(DataOutputStream out, Map<String, Object> attributes, Dictionary keys) throws IOException {
+        writeVarInt(out, attributes.size());
+        for (Map.Entry<String, Object> e : attributes.entrySet()) {
+            keys.write(out, e.getKey());
+            writeValue(out, e.getValue());
+        }
+    }
+
+    private static Map<String, Object> readAttributes(DataInputStream in, Dictionary keys) throws IOException {
+        int count = readVarInt(in);
+        Map<String, Object> attributes = new LinkedHashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            String key = keys.read(in);
+            attributes.put(key, readValue(in));
+        }
+
+        return attributes;
+    }
+
+    private static void writeValue(DataOutputStream out, @Nullable Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        }
+        else if (value instanceof String s) {
+            out.writeByte(TYPE_STRING);
+            writeString(out, s);
+        }
+        else if (value instanceof Integer i) {
+            out.writeByte(TYPE_INT);
+            writeVarInt(out, i);
+        }
+        else if (value instanceof Double d) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble(d);
+        }
+        else if (value instanceof Boolean b) {
+            out.writeByte(b ? TYPE_TRUE : TYPE_FALSE);
+        }
+        else if (value instanceof List<?> list) {
+            out.writeByte(TYPE_LIST);
+            writeVarInt(out, list.size());
+            for (Object o : list) {
+                writeValue(out, o);
+            }
+        }
+        else if (value instanceof int[] arr) {
+            out.writeByte(TYPE_INT_ARRAY);
+            writeIntArray(out, arr);
+        }
+        else if (value instanceof double[] arr) {
+            out.writeByte(TYPE_DOUBLE_ARRAY);
+            writeVarInt(out, arr.length);
+            for (double d : arr) {
+                out.writeDouble(d);
+            }
+        }
+        else {
+            // Any other type is stored as the text VCFEncoder would write for it:
+            out.writeByte(TYPE_STRING);
+            writeString(out, VCFEncoder.formatVCFField(value));
+        }
+    }
+
+    @Nullable
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_STRING:
+                return readString(in);
+            case TYPE_INT:
+                return readVarInt(in);
+            case TYPE_DOUBLE:
+                return in.readDouble();
+            case TYPE_TRUE:
+                return Boolean.TRUE;
+            case TYPE_FALSE:
+                return Boolean.FALSE;
+            case TYPE_LIST:
+                int size = readVarInt(in);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            case TYPE_INT_ARRAY:
+                return readIntArray(in);
+            case TYPE_DOUBLE_ARRAY:
+                double[] arr = new double[readVarInt(in)];
+                for (int i = 0; i < arr.length; i++) {
+                    arr[i] = in.readDouble();
+                }
+                return arr;
+            default:
+                throw new IllegalStateException("Unknown value type: " + type);
+        }
+    }
+
+    private static void writeIntArray(DataOutputStream out, @Nullable int[] arr) throws IOException {
+        if (arr == null) {
+            writeVarInt(out, -1);
+            return;
+        }
+
+        writeVarInt(out, arr.length);
+        for (int i : arr) {
+            writeVarInt(out, i);
+        }
+    }
+
+    @Nullable
+    private static int[] readIntArray(DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+        if (length == -1) {
+            return null;
+        }
+
+        int[] arr = new int[length];
+        for (int i = 0; i < length; i++) {
+            arr[i] = readVarInt(in);
+        }
+
+        return arr;
+    }
+
+    private static void writeString(DataOutputStream out, @Nullable String s) throws IOException {
+        if (s == null) {
+            writeVarInt(out, -1);
+            return;
+        }
+
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    @Nullable
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+        if (length == -1) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a zigzag-encoded variable-length integer, so small values of either sign use a single byte
+     */
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        int v = (value << 1) ^ (value >> 31);
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        int v = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Unexpected end of stream");
+            }
+
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+            shift += 7;
+        }
+
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * Maps the values declared in the header to indexes. Values absent from the header are written in full.
+     */
+    private static class Dictionary {
+        private final String[] values;
+        private final Map<String, Integer> indexes;
+
+        public Dictionary(List<String> values) {
+            this.values = values.toArray(new String[0]);
+            this.indexes = new HashMap<>(values.size() * 2);
+            for (int i = 0; i < this.values.length; i++) {
+                indexes.putIfAbsent(this.values[i], i);
+            }
+        }
+
+        public void write(DataOutputStream out, String value) throws IOException {
+            Integer idx = indexes.get(value);
+            writeVarInt(out, idx == null ? -1 : idx);
+            if (idx == null) {
+                writeString(out, value);
+            }
+        }
+
+        public String read(DataInputStream in) throws IOException {
+            int idx = readVarInt(in);
+
+            return idx == -1 ? readString(in) : values[idx];
+        }
+    }
+}
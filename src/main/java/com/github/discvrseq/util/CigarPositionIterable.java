@@ -15,16 +15,19 @@
  */
 package com.github.discvrseq.util;
 
-import htsjdk.samtools.Cigar;
+import htsjdk.samtools.CigarElement;
 import htsjdk.samtools.CigarOperator;
 import htsjdk.samtools.SAMRecord;
-import htsjdk.samtools.util.CigarUtil;
 
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * Iterator that transverses the elements of a CIGAR string, accumulating information at each position of the alignment.
  *
+ * The CIGAR elements are walked directly, tracking the read and reference positions as primitives, so no per-base arrays are built.
+ * {@link #iterator()} returns a new PositionInfo per position. {@link #reusingIterator()} updates a single PositionInfo in place, which avoids
+ * an allocation per base in tight loops, provided the caller does not retain the PositionInfo after the next call to next().
  */
 public class CigarPositionIterable implements Iterable<CigarPositionIterable.PositionInfo>
 {
@@ -40,17 +43,38 @@ public class CigarPositionIterable implements Iterable<CigarPositionIterable.Pos
 
     public CigarIterator iterator()
     {
-        return new CigarIterator(this);
+        return new CigarIterator(this, false);
     }
 
-    public class CigarIterator implements Iterator<PositionInfo>
+    /**
+     * @return An iterator that returns the same PositionInfo instance for every position, updated in place.  Callers must not retain the PositionInfo between calls to next().
+     */
+    public CigarIterator reusingIterator()
     {
-        private SAMRecord _record;
+        return new CigarIterator(this, true);
+    }
 
-        private Integer[] _readPositions;
-        private Integer[] _refPositions;
-        private char[] _explodedCigar;
-        private int _pos = 0;
+    public class CigarIterator implements Iterator<PositionInfo>
+    {
+        private final SAMRecord _record;
+        private final List<CigarElement> _elements;
+        private final PositionInfo _reused;
+
+        private int _elementIdx = -1;
+        private int _elementRemaining = 0;
+        private CigarOperator _op = null;
+        private boolean _consumesRead = false;
+        private boolean _consumesRef = false;
+
+        private int _pos = -1;
+        private int _nextReadPos = 0; //0-based
+        private int _nextRefPos; //0-based
+
+        // The most recent read/reference positions and the index of the position at which these occurred, or -1 if none yet
+        private int _lastReadPos = 0;
+        private int _lastReadIdx = -1;
+        private int _lastRefPos = 0;
+        private int _lastRefIdx = -1;
 
         /**
          * Prepare to iterate the CIGAR string of this record
@@ -58,44 +82,31 @@ public class CigarPositionIterable implements Iterable<CigarPositionIterable.Pos
          */
         public CigarIterator(CigarPositionIterable iterable)
         {
-            _record = iterable._record;
-            initializeCigar();
+            this(iterable, false);
         }
 
-        private void initializeCigar()
+        private CigarIterator(CigarPositionIterable iterable, boolean reuse)
         {
-            Cigar c = _record.getCigar();
-            _explodedCigar = CigarUtil.cigarArrayFromString(c.toString());
-
-            int readPos = 0; //0-based
-            int refPos = _record.getAlignmentStart() - 1; //0-based
+            _record = iterable._record;
+            _elements = _record.getCigar().getCigarElements();
+            _nextRefPos = _record.getAlignmentStart() - 1;
+            _reused = reuse ? new PositionInfo(_record) : null;
+            advanceElement();
+        }
 
-            _readPositions = new Integer[_explodedCigar.length];
-            _refPositions = new Integer[_explodedCigar.length];
-            int i = 0;
-            for (char el : _explodedCigar)
+        /**
+         * Moves to the next non-empty CIGAR element, if one exists
+         */
+        private void advanceElement()
+        {
+            while (_elementRemaining == 0 && _elementIdx + 1 < _elements.size())
             {
-                CigarOperator op = CigarOperator.valueOf(Character.toString(el));
-                if (op.consumesReadBases())
-                {
-                    _readPositions[i] = readPos;
-                    readPos++;
-                }
-                else
-                {
-                    _readPositions[i] = -1;
-                }
-
-                if (op.consumesReferenceBases())
-                {
-                    _refPositions[i] = refPos;
-                    refPos++;
-                }
-                else
-                {
-                    _refPositions[i] = -1;
-                }
-                i++;
+                _elementIdx++;
+                CigarElement el = _elements.get(_elementIdx);
+                _elementRemaining = el.getLength();
+                _op = el.getOperator();
+                _consumesRead = _op.consumesReadBases();
+                _consumesRef = _op.consumesReferenceBases();
             }
         }
 
@@ -109,7 +120,7 @@ public class CigarPositionIterable implements Iterable<CigarPositionIterable.Pos
          */
         public boolean hasNext()
         {
-            return _pos < _readPositions.length;
+            return _elementRemaining > 0;
         }
 
         /**
@@ -117,11 +128,44 @@ public class CigarPositionIterable implements Iterable<CigarPositionIterable.Pos
          */
         public PositionInfo next()
         {
-            if (_pos >= _readPositions.length)
+            if (_elementRemaining == 0)
                 return null;
 
-            PositionInfo info = new PositionInfo(_record, _pos, _explodedCigar, _readPositions, _refPositions);
             _pos++;
+            int readPos = -1;
+            int refPos = -1;
+            int indel = 0;
+
+            if (_consumesRead)
+            {
+                readPos = _nextReadPos;
+                _nextReadPos++;
+                _lastReadPos = readPos;
+                _lastReadIdx = _pos;
+            }
+            else if (_lastReadIdx > -1)
+            {
+                indel = _lastReadIdx - _pos;
+            }
+
+            if (_consumesRef)
+            {
+                refPos = _nextRefPos;
+                _nextRefPos++;
+                _lastRefPos = refPos;
+                _lastRefIdx = _pos;
+            }
+            else if (_lastRefIdx > -1)
+            {
+                indel = _pos - _lastRefIdx;
+            }
+
+            PositionInfo info = _reused == null ? new PositionInfo(_record) : _reused;
+            info.set(_op, _pos, readPos, refPos, indel, _lastReadPos, _lastRefPos);
+
+            _elementRemaining--;
+            advanceElement();
+
             return info;
         }
     }
@@ -132,7 +176,7 @@ public class CigarPositionIterable implements Iterable<CigarPositionIterable.Pos
      */
     public class PositionInfo
     {
-        private SAMRecord _record;
+        private final SAMRecord _record;
         private CigarOperator _op;
         private int _pos;
         private int _readPos;
@@ -142,47 +186,20 @@ public class CigarPositionIterable implements Iterable<CigarPositionIterable.Pos
         private int _lastReadPos;
         private int _lastRefPos;
 
-        public PositionInfo(SAMRecord record, int pos, char[] ops, Integer[] readPos, Integer[] refPos)
+        private PositionInfo(SAMRecord record)
         {
             _record = record;
-            _pos = pos;
-            _op = CigarOperator.valueOf(Character.toString(ops[pos]));
-            _readPos = readPos[pos];
-            _refPos = refPos[pos];
-
-            if (_readPos > -1)
-                _lastReadPos = _readPos;
-            else
-            {
-                int i = _pos;
-                while (i >= 0)
-                {
-                    if (readPos[i] > -1)
-                    {
-                        _lastReadPos = readPos[i];
-                        _indel = i - _pos;
-                        break;
-                    }
-                    i--;
-                }
-            }
+        }
 
-            if (_refPos > -1)
-                _lastRefPos = _refPos;
-            else
-            {
-                int i = _pos;
-                while (i >= 0)
-                {
-                    if (refPos[i] > -1)
-                    {
-                        _lastRefPos = refPos[i];
-                        _indel = _pos - i;
-                        break;
-                    }
-                    i--;
-                }
-            }
+        private void set(CigarOperator op, int pos, int readPos, int refPos, int indel, int lastReadPos, int lastRefPos)
+        {
+            _op = op;
+            _pos = pos;
+            _readPos = readPos;
+            _refPos = refPos;
+            _indel = indel;
+            _lastReadPos = lastReadPos;
+            _lastRefPos = lastRefPos;
         }
 
         /**
@@ -259,7 +276,7 @@ public class CigarPositionIterable implements Iterable<CigarPositionIterable.Pos
          */
         public boolean isSkipped()
         {
-            return _op.equals(CigarOperator.SOFT_CLIP) || _op.equals(CigarOperator.HARD_CLIP) || _op.equals(CigarOperator.SKIPPED_REGION);
+            return _op == CigarOperator.SOFT_CLIP || _op == CigarOperator.HARD_CLIP || _op == CigarOperator.SKIPPED_REGION;
         }
 
         /**
@@ -275,7 +292,7 @@ public class CigarPositionIterable implements Iterable<CigarPositionIterable.Pos
          */
         public boolean isInsertion()
         {
-            return _op.equals(CigarOperator.INSERTION);
+            return _op == CigarOperator.INSERTION;
         }
 
         /**
@@ -283,7 +300,7 @@ public class CigarPositionIterable implements Iterable<CigarPositionIterable.Pos
          */
         public boolean isDel()
         {
-            return _op.equals(CigarOperator.DELETION);
+            return _op == CigarOperator.DELETION;
         }
 
         /**
@@ -0,0 +1,51 @@
+package com.github.discvrseq.util;
+
+import java.util.*;
+
+/**
+ * Tracks the most frequent values in a stream using a bounded number of counters (the Misra-Gries summary).
+ * Any value occurring more than N / (capacity + 1) times is guaranteed to be retained, and counts are underestimated by at most that amount.
+ * If fewer than capacity distinct values are seen, counts are exact. Instances can be merged.
+ */
+public class HeavyHitters {
+    private final int capacity;
+    private final Map<String, Long> counters = new HashMap<>();
+
+    public HeavyHitters(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void add(String value) {
+        Long count = counters.get(value);
+        if (count != null) {
+            counters.put(value, count + 1);
+        }
+        else if (counters.size() < capacity) {
+            counters.put(value, 1L);
+        }
+        else {
+            // Decrement every counter, dropping those that reach zero:
+            counters.replaceAll((k, v) -> v - 1);
+            counters.values().removeIf(v -> v <= 0);
+        }
+    }
+
+    public void merge(HeavyHitters other) {
+        other.counters.forEach((k, v) -> counters.merge(k, v, Long::sum));
+        if (counters.size() > capacity) {
+            List<Long> counts = new ArrayList<>(counters.values());
+            counts.sort(Comparator.reverseOrder());
+            final long offset = counts.get(capacity);
+
+            counters.replaceAll((k, v) -> v - offset);
+            counters.values().removeIf(v -> v <= 0);
+        }
+    }
+
+    /**
+     * @return Up to maxValues entries, ordered by descending count and then by value
+     */
+    public List<Map.Entry<String, Long>> getTopValues(int maxValues) {
+        return counters.entrySet().stream().sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey())).limit(maxValues).toList();
+    }
+}
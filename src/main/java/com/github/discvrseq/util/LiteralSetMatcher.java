@@ -0,0 +1,321 @@
+package com.github.discvrseq.util;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Finds the first exact, case-sensitive occurrence of each of a set of literal strings in a read, scanning the read once for all of them.
+ * This gives the same start positions as String.indexOf(), or a regular expression consisting only of that literal.
+ *
+ * The literals are compiled into an Aho-Corasick automaton, with the transitions for every state and ASCII character precomputed, so each base of
+ * the read costs a single array lookup. Literals must be ASCII; read characters outside of ASCII never match.
+ *
+ * Instances are immutable and may be shared between threads.
+ */
+public class LiteralSetMatcher {
+    private static final int ALPHABET_SIZE = 128;
+    private static final int[] NO_OUTPUTS = new int[0];
+
+    private final int[] lengths;
+
+    // Indexed by (state * ALPHABET_SIZE + character):
+    private final int[] transitions;
+
+    // For each state, the literals ending at that state, including those that are a suffix of the state's prefix:
+    private final int[][] outputs;
+
+    public LiteralSetMatcher(List<String> literals) {
+        lengths = new int[literals.size()];
+
+        // Build the trie. State 0 is the root, and 0 also denotes a missing child since no edge leads back to the root:
+        List<int[]> trie = new ArrayList<>();
+        List<List<Integer>> trieOutputs = new ArrayList<>();
+        trie.add(new int[ALPHABET_SIZE]);
+        trieOutputs.add(new ArrayList<>());
+        for (int i = 0; i < literals.size(); i++) {
+            String literal = literals.get(i);
+            if (literal == null || literal.isEmpty()) {
+                throw new IllegalArgumentException("Literals cannot be empty");
+            }
+
+            lengths[i] = literal.length();
+            int state = 0;
+            for (int j = 0; j < literal.length(); j++) {
+                char c = literal.charAt(j);
+                if (c >= ALPHABET_SIZE) {
+                    throw new IllegalArgumentException("Literals must contain only ASCII characters: " + literal);
+                }
+
+                if (trie.get(state)[c] == 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(new int[ALPHABET_SIZE]);
+                    trieOutputs.add(new ArrayList<>());
+                }
+
+                state = trie.get(state)[c];
+            }
+
+            trieOutputs.get(state).add(i);
+        }
+
+        // Add the failure transitions in breadth-first order, so each state's failure state is complete before it is used:
+        int[] failure = new int[trie.size()];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET_SIZE; c++) {
+            int child = trie.get(0)[c];
+            if (child != 0) {
+                queue.add(child);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int[] row = trie.get(state);
+            for (int c = 0; c < ALPHABET_SIZE; c++) {
+                int child = row[c];
+                int fallback = trie.get(failure[state])[c];
+                if (child == 0) {
+                    row[c] = fallback;
+                }
+                else {
+                    failure[child] = fallback;
+                    trieOutputs.get(child).addAll(trieOutputs.get(fallback));
+                    queue.add(child);
+                }
+            }
+        }
+
+        transitions = new int[trie.size() * ALPHABET_SIZE];
+        outputs = new int[trie.size()][];
+        for (int state = 0; state < trie.size(); state++) {
+            System.arraycopy(trie.get(state), 0, transitions, state * ALPHABET_SIZE, ALPHABET_SIZE);
+            List<Integer> out = trieOutputs.get(state);
+            outputs[state] = out.isEmpty() ? NO_OUTPUTS : out.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    public int getLiteralCount() {
+        return lengths.length;
+    }
+
+    /**
+     * Scans the read once for all literals. The scan stops early once every literal has been found.
+     *
+     * @param read The read sequence
+     * @param positions An array of at least getLiteralCount() elements. On return, each element holds the 0-based start of the first occurrence of that literal, or -1 if it was not found.
+     * @return The number of literals found
+     */
+    public int findFirst(CharSequence read, int[] positions) {
+        if (positions.length < lengths.length) {
+            throw new IllegalArgumentException("The positions array must be at least as long as the number of literals");
+        }
+
+        Arrays.fill(positions, 0, lengths.length, -1);
+
+        int found = 0;
+        int state = 0;
+        for (int i = 0; i < read.length(); i++) {
+            char c = read.charAt(i);
+            state = c < ALPHABET_SIZE ? transitions[state * ALPHABET_SIZE + c] : 0;
+            for (int literalIdx : outputs[state]) {
+                if (positions[literalIdx] == -1) {
+                    positions[literalIdx] = i - lengths[literalIdx] + 1;
+                    found++;
+                    if (found == lengths.length) {
+                        return found;
+                    }
+                }
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * @return The 0-based start of the first occurrence of each literal, or -1 if that literal was not found
+     */
+    public int[] findFirst(CharSequence read) {
+        int[] positions = new int[lengths.length];
+        findFirst(read, positions);
+
+        return positions;
+    }
+
+    /**
+     * Finds the longest run of literal characters that any match of the regular expression must contain, which can be used to skip reads that cannot match.
+     * Only runs at the top level of the expression are considered, and characters made optional by a quantifier are excluded. Expressions using top-level
+     * alternation, inline flags, or constructs this does not parse (such as quoting or unicode escapes) return null.
+     *
+     * @param regex A java regular expression, compiled without flags
+     * @return The required literal, or null if none was identified
+     */
+    @Nullable
+    public static String getRequiredLiteral(String regex) {
+        if (regex.contains("(?") || regex.contains("\\Q")) {
+            return null;
+        }
+
+        String best = "";
+        StringBuilder current = new StringBuilder();
+        boolean lastWasLiteral = false;
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= regex.length()) {
+                    return null;
+                }
+
+                char escaped = regex.charAt(i + 1);
+                if (Character.isLetterOrDigit(escaped)) {
+                    // Only single-character classes and boundaries are supported:
+                    if ("dDsSwWbBAzZG".indexOf(escaped) == -1) {
+                        return null;
+                    }
+
+                    best = longest(best, current);
+                    lastWasLiteral = false;
+                }
+                else {
+                    current.append(escaped);
+                    lastWasLiteral = true;
+                }
+
+                i += 2;
+            }
+            else if (c == '[' || c == '(') {
+                best = longest(best, current);
+                lastWasLiteral = false;
+                i = c == '[' ? skipCharacterClass(regex, i) : skipGroup(regex, i);
+                if (i == -1) {
+                    return null;
+                }
+            }
+            else if (c == '|' || c == ']' || c == '}' || c == ')') {
+                return null;
+            }
+            else if (c == '.' || c == '^' || c == '$') {
+                best = longest(best, current);
+                lastWasLiteral = false;
+                i++;
+            }
+            else if (c == '?' || c == '*' || c == '+' || c == '{') {
+                // The quantified character is required only for '+', and cannot be joined to any that follow:
+                if (lastWasLiteral && c != '+') {
+                    current.setLength(current.length() - 1);
+                }
+
+                best = longest(best, current);
+                lastWasLiteral = false;
+                if (c == '{') {
+                    i = regex.indexOf('}', i);
+                    if (i == -1) {
+                        return null;
+                    }
+                }
+                i++;
+
+                // Skip a lazy or possessive modifier:
+                if (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) {
+                    i++;
+                }
+            }
+            else {
+                current.append(c);
+                lastWasLiteral = true;
+                i++;
+            }
+        }
+
+        best = longest(best, current);
+
+        return best.isEmpty() ? null : best;
+    }
+
+    private static String longest(String best, StringBuilder current) {
+        String ret = current.length() > best.length() ? current.toString() : best;
+        current.setLength(0);
+
+        return ret;
+    }
+
+    /**
+     * @return The index following the end of the character class starting at idx, or -1 if it is not closed
+     */
+    private static int skipCharacterClass(String regex, int idx) {
+        int depth = 0;
+        int i = idx;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+
+            if (c == '[') {
+                depth++;
+
+                // A closing bracket immediately following the opening bracket (or negation) is a literal:
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+                    i++;
+                }
+
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+                    i++;
+                }
+            }
+            else if (c == ']') {
+                depth--;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            }
+
+            i++;
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return The index following the end of the group starting at idx, or -1 if it is not closed
+     */
+    private static int skipGroup(String regex, int idx) {
+        int depth = 0;
+        int i = idx;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+
+            if (c == '[') {
+                i = skipCharacterClass(regex, i);
+                if (i == -1) {
+                    return -1;
+                }
+
+                continue;
+            }
+
+            if (c == '(') {
+                depth++;
+            }
+            else if (c == ')') {
+                depth--;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            }
+
+            i++;
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,264 @@
+package com.github.discvrseq.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the first position at which each of a set of patterns occurs in a read, allowing up to a fixed number of mismatches (Hamming distance, no indels).
+ * Patterns are compiled once, and each read is scanned a single time for all patterns, rather than once per pattern as with {@link SequenceMatcher#fuzzyMatch}.
+ *
+ * Patterns are packed into 64-bit words and matched using the bit-parallel shift-or algorithm, extended with one state vector per allowed mismatch (Wu-Manber).
+ * Patterns longer than 64 bases fall back to a direct comparison with early termination.
+ *
+ * Read bases are compared case-insensitively (the read is treated as upper-cased), while pattern characters are used as provided.
+ * To match the historic behavior of {@link SequenceMatcher#fuzzyMatch}, a hit must start before (readLength - patternLength), meaning a pattern ending on the final base of the read is not reported.
+ *
+ * Instances are immutable and may be shared between threads.
+ */
+public class MultiPatternMatcher {
+    private static final int MAX_WORD_LENGTH = Long.SIZE;
+    private static final int ALPHABET_SIZE = 128;
+
+    private final int mismatchesAllowed;
+    private final char[][] patterns;
+    private final Word[] words;
+    private final int[] longPatterns;
+    private final int maxLevels;
+
+    private final ThreadLocal<long[]> state;
+
+    private static class Word {
+        private final long[] charMasks = new long[ALPHABET_SIZE];
+        private final long notStartMask;
+        private final long endMask;
+        private final int levels;
+
+        // For each bit that ends a pattern, the index of that pattern:
+        private final int[] patternByEndBit = new int[MAX_WORD_LENGTH];
+        private final int[] patternIdxs;
+
+        private Word(char[][] patterns, List<Integer> patternIdxs, int mismatchesAllowed) {
+            this.patternIdxs = patternIdxs.stream().mapToInt(Integer::intValue).toArray();
+
+            Arrays.fill(charMasks, ~0L);
+            long startMask = 0L;
+            long endMask = 0L;
+            int maxLength = 0;
+            int bit = 0;
+            for (int patternIdx : patternIdxs) {
+                char[] pattern = patterns[patternIdx];
+                maxLength = Math.max(maxLength, pattern.length);
+                startMask |= 1L << bit;
+                for (char c : pattern) {
+                    if (c < ALPHABET_SIZE) {
+                        charMasks[c] &= ~(1L << bit);
+                    }
+
+                    bit++;
+                }
+
+                endMask |= 1L << (bit - 1);
+                patternByEndBit[bit - 1] = patternIdx;
+            }
+
+            this.notStartMask = ~startMask;
+            this.endMask = endMask;
+
+            // Beyond the pattern length every window matches, so additional state vectors are not informative:
+            this.levels = Math.min(mismatchesAllowed, maxLength) + 1;
+
+            // Read bases are upper-cased prior to lookup:
+            for (char c = 'a'; c <= 'z'; c++) {
+                charMasks[c] = charMasks[Character.toUpperCase(c)];
+            }
+        }
+    }
+
+    public MultiPatternMatcher(List<String> patterns, int mismatchesAllowed) {
+        if (mismatchesAllowed < 0) {
+            throw new IllegalArgumentException("Mismatches allowed must be non-negative");
+        }
+
+        this.mismatchesAllowed = mismatchesAllowed;
+        this.patterns = new char[patterns.size()][];
+
+        List<Word> words = new ArrayList<>();
+        List<Integer> longPatterns = new ArrayList<>();
+        List<Integer> currentWord = new ArrayList<>();
+        int currentWordLength = 0;
+        for (int i = 0; i < patterns.size(); i++) {
+            String pattern = patterns.get(i);
+            if (pattern == null || pattern.isEmpty()) {
+                throw new IllegalArgumentException("Patterns cannot be empty");
+            }
+
+            this.patterns[i] = pattern.toCharArray();
+            if (pattern.length() > MAX_WORD_LENGTH) {
+                longPatterns.add(i);
+                continue;
+            }
+
+            if (currentWordLength + pattern.length() > MAX_WORD_LENGTH) {
+                words.add(new Word(this.patterns, currentWord, mismatchesAllowed));
+                currentWord = new ArrayList<>();
+                currentWordLength = 0;
+            }
+
+            currentWord.add(i);
+            currentWordLength += pattern.length();
+        }
+
+        if (!currentWord.isEmpty()) {
+            words.add(new Word(this.patterns, currentWord, mismatchesAllowed));
+        }
+
+        this.words = words.toArray(new Word[0]);
+        this.longPatterns = longPatterns.stream().mapToInt(Integer::intValue).toArray();
+        this.maxLevels = words.stream().mapToInt(w -> w.levels).max().orElse(0);
+        this.state = ThreadLocal.withInitial(() -> new long[maxLevels]);
+    }
+
+    public int getPatternCount() {
+        return patterns.length;
+    }
+
+    public int getMismatchesAllowed() {
+        return mismatchesAllowed;
+    }
+
+    /**
+     * Scans the read once for all patterns.
+     *
+     * @param read The read sequence
+     * @param positions An array of at least getPatternCount() elements. On return, each element holds the 0-based start of the first hit for that pattern, or -1 if the pattern was not found.
+     * @return The number of patterns found
+     */
+    public int findFirst(CharSequence read, int[] positions) {
+        return scan(read, positions, false);
+    }
+
+    /**
+     * @return The 0-based start of the first hit for each pattern, or -1 if that pattern was not found
+     */
+    public int[] findFirst(CharSequence read) {
+        int[] positions = new int[patterns.length];
+        findFirst(read, positions);
+
+        return positions;
+    }
+
+    /**
+     * @return True if any pattern is found in the read. The scan stops at the first hit.
+     */
+    public boolean matchesAny(CharSequence read) {
+        return scan(read, null, true) > 0;
+    }
+
+    private int scan(CharSequence read, int[] positions, boolean stopAtFirstHit) {
+        if (positions != null) {
+            if (positions.length < patterns.length) {
+                throw new IllegalArgumentException("The positions array must be at least as long as the number of patterns");
+            }
+
+            Arrays.fill(positions, 0, patterns.length, -1);
+        }
+
+        // See class description: the final base of the read is never the last base of a hit
+        final int scanLength = read.length() - 1;
+        if (scanLength <= 0) {
+            return 0;
+        }
+
+        int found = 0;
+        long[] levels = state.get();
+        for (Word word : words) {
+            found += scanWord(word, read, scanLength, levels, positions, stopAtFirstHit);
+            if (stopAtFirstHit && found > 0) {
+                return found;
+            }
+        }
+
+        for (int patternIdx : longPatterns) {
+            int pos = scanDirect(patterns[patternIdx], read, scanLength);
+            if (pos > -1) {
+                if (positions != null) {
+                    positions[patternIdx] = pos;
+                }
+
+                found++;
+                if (stopAtFirstHit) {
+                    return found;
+                }
+            }
+        }
+
+        return found;
+    }
+
+    private int scanWord(Word word, CharSequence read, int scanLength, long[] levels, int[] positions, boolean stopAtFirstHit) {
+        final int top = word.levels - 1;
+        final long notStart = word.notStartMask;
+        Arrays.fill(levels, 0, word.levels, ~0L);
+
+        long remaining = word.endMask;
+        int found = 0;
+        for (int i = 0; i < scanLength; i++) {
+            final char c = read.charAt(i);
+            final long charMask = c < ALPHABET_SIZE ? word.charMasks[c] : ~0L;
+
+            // Level 0 is exact matching. Level d either extends a level d prefix with a matching base, or a level d-1 prefix with a mismatch:
+            long previous = levels[0];
+            levels[0] = ((previous << 1) & notStart) | charMask;
+            for (int d = 1; d <= top; d++) {
+                final long current = levels[d];
+                levels[d] = (((current << 1) & notStart) | charMask) & ((previous << 1) & notStart);
+                previous = current;
+            }
+
+            long hits = ~levels[top] & remaining;
+            if (hits != 0) {
+                if (stopAtFirstHit) {
+                    return 1;
+                }
+
+                remaining &= ~hits;
+                while (hits != 0) {
+                    final int endBit = Long.numberOfTrailingZeros(hits);
+                    final int patternIdx = word.patternByEndBit[endBit];
+                    positions[patternIdx] = i - patterns[patternIdx].length + 1;
+                    found++;
+
+                    hits &= hits - 1;
+                }
+
+                if (remaining == 0) {
+                    break;
+                }
+            }
+        }
+
+        return found;
+    }
+
+    private int scanDirect(char[] pattern, CharSequence read, int scanLength) {
+        final int windows = scanLength - pattern.length + 1;
+        for (int i = 0; i < windows; i++) {
+            int mismatches = 0;
+            for (int j = 0; j < pattern.length; j++) {
+                if (pattern[j] != Character.toUpperCase(read.charAt(i + j))) {
+                    mismatches++;
+                    if (mismatches > mismatchesAllowed) {
+                        break;
+                    }
+                }
+            }
+
+            if (mismatches <= mismatchesAllowed) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.discvrseq.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A bounded-memory, mergeable sketch of a numeric distribution, based on the compactor design of the KLL sketch.
+ * Values are buffered at level zero. When a level fills, it is sorted and every other value is promoted to the next level
+ * with twice the weight. Until the first compaction, quantiles are exact. Compaction alternates between keeping
+ * odd and even positions rather than choosing randomly, so results are reproducible.
+ */
+public class QuantileSketch {
+    private final int levelCapacity;
+    private final List<double[]> levels = new ArrayList<>();
+    private final List<Integer> levelSizes = new ArrayList<>();
+    private boolean keepOdd = false;
+
+    public QuantileSketch() {
+        this(256);
+    }
+
+    public QuantileSketch(int levelCapacity) {
+        if (levelCapacity < 2) {
+            throw new IllegalArgumentException("Level capacity must be at least 2");
+        }
+
+        this.levelCapacity = levelCapacity;
+    }
+
+    public void add(double value) {
+        append(0, value);
+        compactIfNeeded(0);
+    }
+
+    public void merge(QuantileSketch other) {
+        for (int level = 0; level < other.levels.size(); level++) {
+            final double[] values = other.levels.get(level);
+            final int size = other.levelSizes.get(level);
+            for (int i = 0; i < size; i++) {
+                append(level, values[i]);
+            }
+        }
+
+        for (int level = 0; level < levels.size(); level++) {
+            compactIfNeeded(level);
+        }
+    }
+
+    public boolean isEmpty() {
+        return levels.isEmpty() || levelSizes.stream().allMatch(x -> x == 0);
+    }
+
+    private void append(int level, double value) {
+        while (levels.size() <= level) {
+            levels.add(new double[levelCapacity]);
+            levelSizes.add(0);
+        }
+
+        double[] values = levels.get(level);
+        final int size = levelSizes.get(level);
+        if (size == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+            levels.set(level, values);
+        }
+
+        values[size] = value;
+        levelSizes.set(level, size + 1);
+    }
+
+    private void compactIfNeeded(int level) {
+        while (level < levels.size() && levelSizes.get(level) >= levelCapacity) {
+            final double[] values = levels.get(level);
+            final int size = levelSizes.get(level);
+            Arrays.sort(values, 0, size);
+
+            // With an odd count, the smallest value stays at this level so that total weight is preserved:
+            final int start = size % 2;
+            for (int i = start + (keepOdd ? 1 : 0); i < size; i += 2) {
+                append(level + 1, values[i]);
+            }
+            keepOdd = !keepOdd;
+
+            levelSizes.set(level, start);
+            level++;
+        }
+    }
+
+    /**
+     * @param q The quantile, between 0 and 1
+     * @return The smallest value whose cumulative weight is at least q of the total, or null if no values were added
+     */
+    public Double getQuantile(double q) {
+        int total = 0;
+        for (int size : levelSizes) {
+            total += size;
+        }
+
+        if (total == 0) {
+            return null;
+        }
+
+        final double[] values = new double[total];
+        final long[] weights = new long[total];
+        final Integer[] order = new Integer[total];
+        long totalWeight = 0;
+        int idx = 0;
+        for (int level = 0; level < levels.size(); level++) {
+            final double[] levelValues = levels.get(level);
+            for (int i = 0; i < levelSizes.get(level); i++) {
+                values[idx] = levelValues[i];
+                weights[idx] = 1L << level;
+                order[idx] = idx;
+                totalWeight += weights[idx];
+                idx++;
+            }
+        }
+
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+        final double target = q * totalWeight;
+        long cumulative = 0;
+        for (int i : order) {
+            cumulative += weights[i];
+            if (cumulative >= target) {
+                return values[i];
+            }
+        }
+
+        return values[order[total - 1]];
+    }
+}
@@ -0,0 +1,308 @@
+package com.github.discvrseq.util;
+
+import htsjdk.samtools.*;
+import htsjdk.samtools.util.CloseableIterator;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Iterates the alignments of a SAM/BAM, returning all alignments that share a read name as one group.
+ * This provides the same groups as reading a queryname-sorted file, without rewriting the input:
+ *
+ * <ul>
+ *     <li>If the input is already queryname sorted, consecutive alignments are grouped as they are read.</li>
+ *     <li>Otherwise, alignments are held in memory. If the input has no more than maxRecordsInRam alignments, these are sorted by name and grouped, in which case the groups and their order are identical to a queryname-sorted file.</li>
+ *     <li>If the input exceeds maxRecordsInRam, alignments are hash-partitioned by read name into temporary files, so every alignment for a read lands in the same partition. Each partition is then loaded, sorted and grouped in turn.
+ *     A partition with more than maxRecordsInRam alignments is not loaded, but is itself split into enough partitions to fit within the limit, using a different hash seed.
+ *     Groups are sorted by name within each partition, but not across partitions.</li>
+ * </ul>
+ *
+ * Since every alignment for a read lands in the same partition, the limit can only be exceeded by a read with more than maxRecordsInRam alignments.
+ */
+public class ReadNameGrouper implements CloseableIterator<List<SAMRecord>> {
+    private static final int DEFAULT_PARTITIONS = 64;
+
+    // Caps the number of partition files open for writing at once. Larger partitions are split again in a later pass:
+    private static final int MAX_PARTITIONS = 1024;
+
+    // An oversized partition that remains after this many splits is loaded regardless, since it is most likely a single read:
+    private static final int MAX_PARTITION_DEPTH = 4;
+
+    private final SamReaderFactory fact;
+    private final SamReader reader;
+    private final SAMRecordIterator it;
+    private final int maxRecordsInRam;
+    private final Logger logger;
+
+    private PeekableIterator groupSource = null;
+    private final Deque<Partition> pendingPartitions = new ArrayDeque<>();
+    private int totalPartitions = 0;
+    private File partitionDir = null;
+
+    private long peakRecordsInRam = 0;
+    private long peakHeapBytes = 0;
+
+    private List<SAMRecord> nextGroup = null;
+
+    public ReadNameGrouper(SamReaderFactory fact, File bam, int maxRecordsInRam, Logger logger) {
+        this.fact = fact;
+        this.reader = fact.open(bam);
+        this.it = reader.iterator();
+        this.maxRecordsInRam = maxRecordsInRam;
+        this.logger = logger;
+
+        if (reader.getFileHeader().getSortOrder() == SAMFileHeader.SortOrder.queryname) {
+            logger.info("BAM is already query sorted, alignments will be grouped as they are read");
+            groupSource = new PeekableIterator(it);
+        }
+        else {
+            bufferInput();
+        }
+    }
+
+    private static class PeekableIterator {
+        private final Iterator<SAMRecord> it;
+        private SAMRecord next;
+
+        private PeekableIterator(Iterator<SAMRecord> it) {
+            this.it = it;
+            this.next = it.hasNext() ? it.next() : null;
+        }
+
+        private List<SAMRecord> nextGroup() {
+            if (next == null) {
+                return null;
+            }
+
+            List<SAMRecord> group = new ArrayList<>();
+            final String readName = next.getReadName();
+            while (next != null && next.getReadName().equals(readName)) {
+                group.add(next);
+                next = it.hasNext() ? it.next() : null;
+            }
+
+            return group;
+        }
+    }
+
+    private void bufferInput() {
+        List<SAMRecord> records = new ArrayList<>();
+        while (it.hasNext()) {
+            records.add(it.next());
+
+            if (records.size() > maxRecordsInRam) {
+                logger.info("Input BAM has more than " + maxRecordsInRam + " alignments, partitioning alignments by read name");
+                partitionInput(records);
+                return;
+            }
+        }
+
+        logger.info("Grouping " + records.size() + " alignments by read name in memory");
+        groupSource = sortAndGroup(records);
+    }
+
+    private static class Partition {
+        private final File file;
+        private final int depth;
+        private long records = 0;
+
+        private Partition(File file, int depth) {
+            this.file = file;
+            this.depth = depth;
+        }
+    }
+
+    private void partitionInput(List<SAMRecord> buffered) {
+        partitionDir = IOUtils.createTempDir("readNameGrouping");
+
+        // Returns the buffered alignments, releasing each once written, followed by the remainder of the input:
+        Iterator<SAMRecord> input = new Iterator<>() {
+            private int bufferedIdx = 0;
+
+            @Override
+            public boolean hasNext() {
+                return bufferedIdx < buffered.size() || it.hasNext();
+            }
+
+            @Override
+            public SAMRecord next() {
+                if (bufferedIdx < buffered.size()) {
+                    return buffered.set(bufferedIdx++, null);
+                }
+
+                return it.next();
+            }
+        };
+
+        List<Partition> created = writePartitions(input, DEFAULT_PARTITIONS, 0);
+        logger.info("Total alignments partitioned: " + created.stream().mapToLong(p -> p.records).sum());
+        pendingPartitions.addAll(created);
+    }
+
+    private List<Partition> writePartitions(Iterator<SAMRecord> records, int numPartitions, int depth) {
+        List<Partition> ret = new ArrayList<>(numPartitions);
+        List<SAMFileWriter> writers = new ArrayList<>(numPartitions);
+
+        SAMFileHeader header = reader.getFileHeader().clone();
+        header.setSortOrder(SAMFileHeader.SortOrder.unsorted);
+        SAMFileWriterFactory writerFactory = new SAMFileWriterFactory();
+        try {
+            for (int i = 0; i < numPartitions; i++) {
+                Partition partition = new Partition(new File(partitionDir, "partition" + totalPartitions + ".bam"), depth);
+                totalPartitions++;
+                ret.add(partition);
+
+                // These are read once and deleted, so favor speed over size:
+                writers.add(writerFactory.makeBAMWriter(header, true, partition.file, 1));
+            }
+
+            while (records.hasNext()) {
+                SAMRecord rec = records.next();
+                int idx = getPartition(rec, depth, numPartitions);
+                writers.get(idx).addAlignment(rec);
+                ret.get(idx).records++;
+            }
+        }
+        finally {
+            writers.forEach(SAMFileWriter::close);
+        }
+
+        return ret;
+    }
+
+    private static int getPartition(SAMRecord rec, int depth, int numPartitions) {
+        if (depth == 0) {
+            return Math.floorMod(rec.getReadName().hashCode(), numPartitions);
+        }
+
+        // Alignments in a partition share the same String.hashCode() modulo the parent's partition count, so later splits need an independent hash.
+        // This is FNV-1a with a per-depth seed, followed by a mixing step:
+        int h = 0x811C9DC5 ^ (depth * 0x9E3779B9);
+        String readName = rec.getReadName();
+        for (int i = 0; i < readName.length(); i++) {
+            h = (h ^ readName.charAt(i)) * 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+
+        return Math.floorMod(h, numPartitions);
+    }
+
+    /**
+     * Splits an oversized partition, adding the new partitions to the front of the queue so the overall order of partitions is unchanged.
+     */
+    private void splitPartition(Partition partition) {
+        // Allow headroom, since read names will not be evenly distributed:
+        int numPartitions = (int) Math.min(MAX_PARTITIONS, Math.max(2, 2 * ((partition.records + maxRecordsInRam - 1) / maxRecordsInRam)));
+        logger.info("Partition " + partition.file.getName() + " has " + partition.records + " alignments, which exceeds the limit of " + maxRecordsInRam + ". Splitting into " + numPartitions + " partitions");
+
+        List<Partition> created;
+        try (SamReader partitionReader = fact.open(partition.file); SAMRecordIterator partitionIt = partitionReader.iterator()) {
+            created = writePartitions(partitionIt, numPartitions, partition.depth + 1);
+        }
+        catch (IOException e) {
+            throw new GATKException(e.getMessage(), e);
+        }
+
+        partition.file.delete();
+        for (int i = created.size() - 1; i >= 0; i--) {
+            pendingPartitions.addFirst(created.get(i));
+        }
+    }
+
+    private PeekableIterator sortAndGroup(List<SAMRecord> records) {
+        peakRecordsInRam = Math.max(peakRecordsInRam, records.size());
+        Runtime runtime = Runtime.getRuntime();
+        peakHeapBytes = Math.max(peakHeapBytes, runtime.totalMemory() - runtime.freeMemory());
+
+        // NOTE: this is a stable sort, matching the order produced by a queryname sort of the same input
+        records.sort(new SAMRecordQueryNameComparator());
+
+        return new PeekableIterator(records.iterator());
+    }
+
+    private PeekableIterator loadNextPartition() {
+        Partition partition = pendingPartitions.removeFirst();
+        while (partition.records > maxRecordsInRam && partition.depth < MAX_PARTITION_DEPTH) {
+            splitPartition(partition);
+            partition = pendingPartitions.removeFirst();
+        }
+
+        if (partition.records > maxRecordsInRam) {
+            logger.warn("Partition " + partition.file.getName() + " has " + partition.records + " alignments, which exceeds the limit of " + maxRecordsInRam + ", and could not be split further. It will be held in memory regardless.");
+        }
+
+        List<SAMRecord> records = new ArrayList<>();
+        try (SamReader partitionReader = fact.open(partition.file)) {
+            partitionReader.iterator().forEachRemaining(records::add);
+        }
+        catch (IOException e) {
+            throw new GATKException(e.getMessage(), e);
+        }
+
+        partition.file.delete();
+
+        return sortAndGroup(records);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextGroup == null) {
+            nextGroup = groupSource == null ? null : groupSource.nextGroup();
+            while (nextGroup == null && !pendingPartitions.isEmpty()) {
+                groupSource = loadNextPartition();
+                nextGroup = groupSource.nextGroup();
+            }
+        }
+
+        return nextGroup != null;
+    }
+
+    @Override
+    public List<SAMRecord> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        List<SAMRecord> ret = nextGroup;
+        nextGroup = null;
+
+        return ret;
+    }
+
+    /**
+     * @return The largest number of alignments held in memory at once. This is zero for queryname-sorted input.
+     */
+    public long getPeakRecordsInRam() {
+        return peakRecordsInRam;
+    }
+
+    /**
+     * @return The JVM heap in use at the point the most alignments were held in memory
+     */
+    public long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    @Override
+    public void close() {
+        it.close();
+        try {
+            reader.close();
+        }
+        catch (IOException e) {
+            throw new GATKException(e.getMessage(), e);
+        }
+
+        if (partitionDir != null) {
+            pendingPartitions.forEach(p -> p.file.delete());
+            partitionDir.delete();
+        }
+    }
+}
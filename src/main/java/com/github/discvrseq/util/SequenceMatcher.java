@@ -1,21 +1,27 @@
 package com.github.discvrseq.util;
 
-import org.apache.commons.text.similarity.HammingDistance;
-
 public class SequenceMatcher {
-    private static final HammingDistance hd = new HammingDistance();
-
+    /**
+     * Returns the 0-based start of the first window of readSeq within the given Hamming distance of the query, or null if none is found.
+     * When scanning a read for several queries, {@link MultiPatternMatcher} is preferred since it compiles the queries once and scans the read a single time.
+     */
     public static Integer fuzzyMatch(String query, String readSeq, int editDistance) {
         int windows = readSeq.length() - query.length();
 
-        int i = 0;
-        while (i < windows) {
-            CharSequence test = readSeq.subSequence(i, i + query.length());
-            if (hd.apply(query, test) <= editDistance) {
-                return i;
+        for (int i = 0; i < windows; i++) {
+            int mismatches = 0;
+            for (int j = 0; j < query.length(); j++) {
+                if (query.charAt(j) != readSeq.charAt(i + j)) {
+                    mismatches++;
+                    if (mismatches > editDistance) {
+                        break;
+                    }
+                }
             }
 
-            i++;
+            if (mismatches <= editDistance) {
+                return i;
+            }
         }
 
         return null;
@@ -0,0 +1,76 @@
+package com.github.discvrseq.util;
+
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypesContext;
+import htsjdk.variant.variantcontext.VariantContext;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes the genotypes at a site into small integer codes, such that two genotypes share a code if and only if Genotype.sameGenotype() is true.
+ * Missing, filtered and no-call genotypes are encoded as NOT_CALLED. This allows genotypes to be compared across many samples, or between VCFs, using
+ * int arrays rather than repeated sample lookups and allele comparisons.
+ *
+ * Codes are only comparable within a site, so reset() must be called before encoding each new site. Since a site has few distinct genotypes,
+ * each genotype is compared against those already seen. Instances are not thread-safe.
+ */
+public class SiteGenotypeEncoder {
+    public static final int NOT_CALLED = -1;
+
+    private final List<Genotype> distinctGenotypes = new ArrayList<>();
+
+    public void reset() {
+        distinctGenotypes.clear();
+    }
+
+    public int encode(@Nullable Genotype g) {
+        if (g == null || g.isFiltered() || g.isNoCall()) {
+            return NOT_CALLED;
+        }
+
+        for (int i = 0; i < distinctGenotypes.size(); i++) {
+            if (distinctGenotypes.get(i).sameGenotype(g)) {
+                return i;
+            }
+        }
+
+        distinctGenotypes.add(g);
+
+        return distinctGenotypes.size() - 1;
+    }
+
+    /**
+     * Encodes the genotype of each of the provided samples. When these are the samples of the VCF header, in order, the genotypes of a VCF record are read by position,
+     * which avoids a name lookup per sample. Otherwise, or if the record's samples differ from this list, each genotype is found by name.
+     *
+     * @param vc The variant to encode
+     * @param sampleNames The samples to encode
+     * @param codes An array of at least sampleNames.size() elements, which receives the code for each sample. Samples absent from the variant are NOT_CALLED.
+     * @return True if any sample had a called genotype
+     */
+    public boolean encode(VariantContext vc, List<String> sampleNames, int[] codes) {
+        GenotypesContext genotypes = vc.getGenotypes();
+        boolean inSampleOrder = genotypes.size() == sampleNames.size();
+        boolean anyCalled = false;
+        for (int i = 0; i < sampleNames.size(); i++) {
+            Genotype g = null;
+            if (inSampleOrder) {
+                g = genotypes.get(i);
+                if (!g.getSampleName().equals(sampleNames.get(i))) {
+                    inSampleOrder = false;
+                }
+            }
+
+            if (!inSampleOrder) {
+                g = genotypes.get(sampleNames.get(i));
+            }
+
+            codes[i] = encode(g);
+            anyCalled = anyCalled || codes[i] != NOT_CALLED;
+        }
+
+        return anyCalled;
+    }
+}
@@ -1,7 +1,7 @@
 package com.github.discvrseq.walkers;
 
 import com.github.discvrseq.tools.DiscvrSeqInternalProgramGroup;
-import htsjdk.samtools.SAMFileWriterImpl;
+import com.github.discvrseq.util.BinaryVariantContextCodec;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.util.*;
 import htsjdk.variant.variantcontext.*;
@@ -16,11 +16,15 @@ import org.broadinstitute.hellbender.engine.FeatureContext;
 import org.broadinstitute.hellbender.engine.ReadsContext;
 import org.broadinstitute.hellbender.engine.ReferenceContext;
 import org.broadinstitute.hellbender.engine.VariantWalker;
+import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.reference.ReferenceUtils;
 import org.broadinstitute.hellbender.utils.variant.GATKVariantContextUtils;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -54,10 +58,35 @@ public class BackportLiftedVcf extends VariantWalker {
     @Argument(doc = "The liftOver can result in dropped ALT alleles. If this flag is provided, the tool will error if a given loci does not have the same number of ref/alt alleles. The default is to skip it.",  fullName = "errorOnLociWithMismatchedAlleles", shortName = "errorOnLociWithMismatchedAlleles", optional = true)
     public boolean errorOnLociWithMismatchedAlleles = false;
 
+    @Argument(doc = "The approximate amount of memory, in megabytes, used to hold records while sorting the output, before these are spilled to disk. If not provided, a quarter of the maximum heap size is used. At least " + BinaryVariantContextCodec.MIN_RECORDS_IN_RAM + " records are held regardless, to limit the number of temporary files.", fullName = "sortingRamMb", shortName = "sortingRamMb", optional = true, minValue = 1)
+    public Long sortingRamMb = null;
+
+    @Argument(doc = "If provided, records are written as they are backported rather than after all records have been sorted. Up to this many records are held in a reorder window, ordered by their original position, and the first record of the window is written once it is full. Any record that would sort before one already written is instead set aside and sorted, and these are merged into the output after traversal, which requires a second pass over the output. This works well when each lifted contig maps back to a single original contig, with mostly increasing positions.", fullName = "reorderWindowSize", shortName = "reorderWindowSize", optional = true, minValue = 1)
+    public Integer reorderWindowSize = null;
+
     private SortingCollection<VariantContext> sorter;
     private VCFHeader outputHeader;
 
-    private final int MAX_RECORDS_IN_RAM = SAMFileWriterImpl.getDefaultMaxRecordsInRam();
+    // Used when reorderWindowSize is provided:
+    private VariantContextWriter streamingWriter = null;
+    private PriorityQueue<WindowedVariant> reorderWindow = null;
+    private VariantContext lastStreamedVariant = null;
+    private long totalWindowedVariants = 0;
+    private long streamedRecords = 0;
+    private long fallbackRecords = 0;
+    private ProgressLogger streamingProgress = null;
+
+    private static final class WindowedVariant {
+        final VariantContext vc;
+
+        // Preserves input order among records at the same position, matching the stable order of the sorted output:
+        final long order;
+
+        public WindowedVariant(VariantContext vc, long order) {
+            this.vc = vc;
+            this.order = order;
+        }
+    }
 
     public static final String ORIGINAL_CONTIG = "OriginalContig";
     public static final String ORIGINAL_START = "OriginalStart";
@@ -102,6 +131,14 @@ public class BackportLiftedVcf extends VariantWalker {
 
         prepareVcfHeader();
         initializeSorter(outputHeader);
+
+        if (reorderWindowSize != null) {
+            Comparator<VariantContext> comparator = outputHeader.getVCFRecordComparator();
+            reorderWindow = new PriorityQueue<>(Comparator.comparing((WindowedVariant wv) -> wv.vc, comparator).thenComparingLong(wv -> wv.order));
+            streamingWriter = createOutputWriter();
+            streamingWriter.writeHeader(outputHeader);
+            streamingProgress = new ProgressLogger(log, 25000, "wrote", "records");
+        }
     }
 
     private void prepareVcfHeader(){
@@ -137,11 +174,7 @@ public class BackportLiftedVcf extends VariantWalker {
             tmpDir.mkdirs();
         }
 
-        sorter = SortingCollection.newInstance(
-                VariantContext.class,
-                new VCFRecordCodec(outputHeader, true),
-                outputHeader.getVCFRecordComparator(),
-                MAX_RECORDS_IN_RAM, tmpDir.toPath());
+        sorter = BinaryVariantContextCodec.createSortingCollection(outputHeader, sortingRamMb == null ? null : sortingRamMb * 1024 * 1024, tmpDir.toPath(), logger);
     }
 
     private String getCoalescedFieldName(VariantContext variant, String fn1, String fn2)
@@ -221,7 +254,34 @@ public class BackportLiftedVcf extends VariantWalker {
         vcb.rmAttribute(ORIGINAL_START_BCF);
         vcb.rmAttribute(ORIGINAL_ALLELES_BCF);
 
-        sorter.add(vcb.make());
+        addVariant(vcb.make());
+    }
+
+    private void addVariant(VariantContext vc) {
+        if (streamingWriter == null) {
+            sorter.add(vc);
+            return;
+        }
+
+        // This record can no longer be written in order, so it is sorted and merged into the output afterwards:
+        if (lastStreamedVariant != null && outputHeader.getVCFRecordComparator().compare(vc, lastStreamedVariant) < 0) {
+            sorter.add(vc);
+            fallbackRecords++;
+            return;
+        }
+
+        reorderWindow.add(new WindowedVariant(vc, totalWindowedVariants));
+        totalWindowedVariants++;
+        if (reorderWindow.size() > reorderWindowSize) {
+            streamVariant(reorderWindow.poll().vc);
+        }
+    }
+
+    private void streamVariant(VariantContext vc) {
+        streamingWriter.add(vc);
+        streamingProgress.record(vc.getContig(), vc.getStart());
+        lastStreamedVariant = vc;
+        streamedRecords++;
     }
 
     private GenotypesContext fixGenotypes(final GenotypesContext originals, List<Allele> originalAlleles, List<Allele> newAlleles) {
@@ -251,25 +311,88 @@ public class BackportLiftedVcf extends VariantWalker {
 
     @Override
     public Object onTraversalSuccess() {
-        writeSortedOutput();
+        if (streamingWriter == null) {
+            writeSortedOutput();
+        }
+        else {
+            while (!reorderWindow.isEmpty()) {
+                streamVariant(reorderWindow.poll().vc);
+            }
+
+            streamingWriter.close();
+            streamingWriter = null;
+
+            log.info("Total records written within the reorder window: " + streamedRecords);
+            log.info("Total records outside the reorder window, which required sorting: " + fallbackRecords);
+
+            if (fallbackRecords > 0) {
+                mergeFallbackRecords();
+            }
+            else {
+                sorter.cleanup();
+            }
+        }
 
         log.info("Total loci skipped due to mismatched allele number: " + skippedLoci);
 
         return null;
     }
 
-    private void writeSortedOutput() {
-        final ProgressLogger writeProgress = new ProgressLogger(log, 25000, "wrote", "records");
+    private VariantContextWriter createOutputWriter() {
         final EnumSet<Options> options = createOutputVariantIndex ? EnumSet.of(Options.INDEX_ON_THE_FLY) : EnumSet.noneOf(Options.class);
         if (lenientVCFProcessing) {
             options.add(Options.ALLOW_MISSING_FIELDS_IN_HEADER);
         }
 
-        try (final VariantContextWriter out = GATKVariantContextUtils.createVCFWriter(
+        return GATKVariantContextUtils.createVCFWriter(
                 new File(outFile).toPath(),
                 outputHeader.getSequenceDictionary(),
                 createOutputVariantMD5,
-                options.toArray(new Options[options.size()]));CloseableIterator<VariantContext> it = sorter.iterator()) {
+                options.toArray(new Options[options.size()]));
+    }
+
+    /**
+     * Merges the records that fell outside the reorder window into the streamed output. The streamed output is renamed and read back, so this is a second pass over the output.
+     */
+    private void mergeFallbackRecords() {
+        log.info("Merging records from outside the reorder window into the output");
+
+        final File output = new File(outFile).getAbsoluteFile();
+        final File unmerged = new File(output.getParentFile(), "unmerged." + output.getName());
+        try {
+            Files.move(output.toPath(), unmerged.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException e) {
+            throw new GATKException("Unable to rename output file: " + output.getPath(), e);
+        }
+
+        final Comparator<VariantContext> comparator = outputHeader.getVCFRecordComparator();
+        final ProgressLogger writeProgress = new ProgressLogger(log, 25000, "wrote", "records");
+        try (VCFFileReader reader = new VCFFileReader(unmerged, false);
+             PeekableIterator<VariantContext> streamed = new PeekableIterator<>(reader.iterator());
+             PeekableIterator<VariantContext> sorted = new PeekableIterator<>(sorter.iterator());
+             VariantContextWriter out = createOutputWriter()) {
+
+            out.writeHeader(outputHeader);
+            while (streamed.hasNext() || sorted.hasNext()) {
+                // Among records at the same position, those written within the window come first:
+                boolean useStreamed = !sorted.hasNext() || (streamed.hasNext() && comparator.compare(streamed.peek(), sorted.peek()) <= 0);
+                VariantContext vc = useStreamed ? streamed.next() : sorted.next();
+                out.add(vc);
+                writeProgress.record(vc.getContig(), vc.getStart());
+            }
+        }
+        finally {
+            sorter.cleanup();
+            if (!unmerged.delete()) {
+                log.warn("Unable to delete file: " + unmerged.getPath());
+            }
+        }
+    }
+
+    private void writeSortedOutput() {
+        final ProgressLogger writeProgress = new ProgressLogger(log, 25000, "wrote", "records");
+        try (final VariantContextWriter out = createOutputWriter(); CloseableIterator<VariantContext> it = sorter.iterator()) {
 
             out.writeHeader(outputHeader);
             while (it.hasNext())
@@ -284,6 +407,15 @@ public class BackportLiftedVcf extends VariantWalker {
         }
     }
 
+    @Override
+    public void closeTool() {
+        if (streamingWriter != null) {
+            streamingWriter.close();
+        }
+
+        super.closeTool();
+    }
+
     @Override
     public boolean requiresReference() {
         return true;
@@ -7,6 +7,7 @@ import htsjdk.samtools.*;
 import htsjdk.samtools.util.CigarUtil;
 import htsjdk.samtools.util.FileExtensions;
 import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.IntervalTree;
 import htsjdk.tribble.bed.BEDCodec;
 import htsjdk.tribble.bed.BEDFeature;
 import htsjdk.tribble.index.Index;
@@ -22,11 +23,14 @@ import org.broadinstitute.hellbender.utils.read.GATKRead;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * This tool is designed to soft clip any alignments that start or end in the provided set of intervals. It was originally created to clip reads that overlap with amplification primer binding sites.
@@ -62,11 +66,39 @@ public class ClipOverlappingAlignments extends ReadWalker {
     @Argument(doc="File to which a summary of clipping will be written", fullName = "reportFile", shortName = "rf", optional = true)
     public File reportFile = null;
 
+    @Argument(doc="If selected, each clipped alignment will be checked for consistency with its CIGAR and read length, and every alignment will be validated before it is written. This is intended for debugging, and is considerably slower.", fullName = "validateAlignments", optional = true)
+    public boolean validateAlignments = false;
+
     private FeatureInput<BEDFeature> bedFeatures;
 
     private SAMFileWriter writer;
 
-    private Map<String, HitTracker> summary = new LinkedHashMap<>();
+    // The clip regions for each contig. Identical intervals are held in one node, in BED file order:
+    private final Map<String, IntervalTree<List<ClipRegion>>> regionsByContig = new HashMap<>();
+
+    // One tracker per distinct interval, indexed by ClipRegion.trackerIdx. These are reported in the order each was first hit:
+    private final List<HitTracker> trackers = new ArrayList<>();
+    private final List<HitTracker> trackersInHitOrder = new ArrayList<>();
+
+    private static class ClipRegion {
+        final BEDFeature feature;
+
+        // The position of this feature in the BED file, which determines the order in which regions are applied to an alignment:
+        final int ordinal;
+        final int trackerIdx;
+
+        public ClipRegion(BEDFeature feature, int ordinal, int trackerIdx) {
+            this.feature = feature;
+            this.ordinal = ordinal;
+            this.trackerIdx = trackerIdx;
+        }
+    }
+
+    private final List<ClipRegion> overlappingRegions = new ArrayList<>();
+
+    // The 1-based read position of each reference position of the current alignment, or 0 for deleted or skipped positions:
+    private int[] readPositionsByRef = new int[1024];
+    private int readPositionsStart;
 
     private static class HitTracker {
         final String contig;
@@ -79,6 +111,8 @@ public class ClipOverlappingAlignments extends ReadWalker {
         int totalBasesClipped5 = 0;
         int totalBasesClipped3 = 0;
 
+        boolean hit = false;
+
         public HitTracker(String contig, int start, int end) {
             this.contig = contig;
             this.start = start;
@@ -86,9 +120,13 @@ public class ClipOverlappingAlignments extends ReadWalker {
         }
     }
 
-    private void addSummary(BEDFeature feat, int totalClipped, boolean isFivePrime) {
-        String key = feat.getContig() + "<>" + feat.getStart() + "<>" + feat.getEnd();
-        HitTracker tracker = summary.getOrDefault(key, new HitTracker(feat.getContig(), feat.getStart(), feat.getEnd()));
+    private void addSummary(ClipRegion region, int totalClipped, boolean isFivePrime) {
+        HitTracker tracker = trackers.get(region.trackerIdx);
+        if (!tracker.hit) {
+            tracker.hit = true;
+            trackersInHitOrder.add(tracker);
+        }
+
         if (isFivePrime) {
             tracker.totalClipped5++;
             tracker.totalBasesClipped5 += totalClipped;
@@ -97,8 +135,6 @@ public class ClipOverlappingAlignments extends ReadWalker {
             tracker.totalClipped3++;
             tracker.totalBasesClipped3 += totalClipped;
         }
-
-        summary.put(key, tracker);
     }
 
     @Override
@@ -127,11 +163,100 @@ public class ClipOverlappingAlignments extends ReadWalker {
 
         bedFeatures = addFeatures();
 
-        features.getFeatureIterator(bedFeatures).forEachRemaining(feat -> {
+        // The regions are held in memory, so each alignment is checked with an interval tree lookup rather than a feature query:
+        Map<String, Integer> trackerIdxByInterval = new HashMap<>();
+        Iterator<BEDFeature> it = features.getFeatureIterator(bedFeatures);
+        int ordinal = 0;
+        while (it.hasNext()) {
+            BEDFeature feat = it.next();
             if (feat.getStart() >= feat.getEnd()) {
                 throw new UserException.BadInput("Improper BED feature, start greater than end: " + feat.getContig() + ":" + feat.getStart() + "-" + feat.getEnd());
             }
-        });
+
+            Integer trackerIdx = trackerIdxByInterval.get(feat.getContig() + "<>" + feat.getStart() + "<>" + feat.getEnd());
+            if (trackerIdx == null) {
+                trackerIdx = trackers.size();
+                trackers.add(new HitTracker(feat.getContig(), feat.getStart(), feat.getEnd()));
+                trackerIdxByInterval.put(feat.getContig() + "<>" + feat.getStart() + "<>" + feat.getEnd(), trackerIdx);
+            }
+
+            IntervalTree<List<ClipRegion>> tree = regionsByContig.computeIfAbsent(feat.getContig(), x -> new IntervalTree<>());
+            IntervalTree.Node<List<ClipRegion>> node = tree.find(feat.getStart(), feat.getEnd());
+            if (node == null) {
+                tree.put(feat.getStart(), feat.getEnd(), new ArrayList<>(1));
+                node = tree.find(feat.getStart(), feat.getEnd());
+            }
+
+            node.getValue().add(new ClipRegion(feat, ordinal, trackerIdx));
+            ordinal++;
+        }
+
+        logger.info("Total clipping intervals: " + ordinal);
+    }
+
+    private List<ClipRegion> getOverlappingRegions(GATKRead read) {
+        overlappingRegions.clear();
+        IntervalTree<List<ClipRegion>> tree = regionsByContig.get(read.getContig());
+        if (tree == null) {
+            return overlappingRegions;
+        }
+
+        Iterator<IntervalTree.Node<List<ClipRegion>>> it = tree.overlappers(read.getStart(), read.getEnd());
+        while (it.hasNext()) {
+            overlappingRegions.addAll(it.next().getValue());
+        }
+
+        // The tree orders intervals by start then end, so restore BED file order:
+        if (overlappingRegions.size() > 1) {
+            overlappingRegions.sort(Comparator.comparingInt(r -> r.ordinal));
+        }
+
+        return overlappingRegions;
+    }
+
+    /**
+     * Records the 1-based read position of each reference position spanned by this alignment, or 0 if that position is deleted or skipped, in a single
+     * pass of the CIGAR. This replaces repeated calls to SAMRecord.getReadPositionAtReferencePosition(), each of which walks the CIGAR.
+     */
+    private void indexReadPositions(SAMRecord rec) {
+        int refLength = rec.getCigar().getReferenceLength();
+        if (readPositionsByRef.length < refLength) {
+            readPositionsByRef = new int[Math.max(refLength, readPositionsByRef.length * 2)];
+        }
+
+        readPositionsStart = rec.getAlignmentStart();
+
+        int readPos = 0;
+        int refIdx = 0;
+        for (CigarElement ce : rec.getCigar().getCigarElements()) {
+            CigarOperator op = ce.getOperator();
+            int length = ce.getLength();
+            if (op.consumesReadBases() && op.consumesReferenceBases()) {
+                for (int i = 0; i < length; i++) {
+                    readPos++;
+                    readPositionsByRef[refIdx++] = readPos;
+                }
+            }
+            else if (op.consumesReferenceBases()) {
+                Arrays.fill(readPositionsByRef, refIdx, refIdx + length, 0);
+                refIdx += length;
+            }
+            else if (op.consumesReadBases()) {
+                readPos += length;
+            }
+        }
+    }
+
+    /**
+     * Equivalent to rec.getReadPositionAtReferencePosition(refPos), using the positions from indexReadPositions(). Soft clipping either end of the
+     * alignment does not change the read position of the bases that remain aligned, so these remain valid as the alignment is clipped.
+     */
+    private int getReadPositionAtReferencePosition(SAMRecord rec, int refPos) {
+        if (refPos < rec.getAlignmentStart() || refPos > rec.getAlignmentEnd()) {
+            return 0;
+        }
+
+        return readPositionsByRef[refPos - readPositionsStart];
     }
 
     private long totalOverlappingStart = 0;
@@ -150,21 +275,27 @@ public class ClipOverlappingAlignments extends ReadWalker {
         Cigar origCigar = rec.getCigar();
 
         totalAlignments++;
-        AtomicBoolean shouldWrite = new AtomicBoolean(true);
+        boolean shouldWrite = true;
 
         if (rec.getReadUnmappedFlag()) {
             writer.addAlignment(rec);
             return;
         }
 
-        featureContext.getValues(bedFeatures).forEach(feat -> {
+        List<ClipRegion> regions = getOverlappingRegions(read);
+        if (!regions.isEmpty()) {
+            indexReadPositions(rec);
+        }
+
+        for (ClipRegion region : regions) {
+            BEDFeature feat = region.feature;
             //Alignment start within region
             if (read.getStart() >= feat.getStart() && read.getStart() <= feat.getEnd())
             {
                 int newAlignStart = feat.getEnd() + 1;
 
                 //Increment start until it doesnt land in a deletion:
-                while (newAlignStart <= read.getEnd() && rec.getReadPositionAtReferencePosition(newAlignStart) == 0) {
+                while (newAlignStart <= read.getEnd() && getReadPositionAtReferencePosition(rec, newAlignStart) == 0) {
                     newAlignStart++;
                 }
 
@@ -172,30 +303,31 @@ public class ClipOverlappingAlignments extends ReadWalker {
                     readsDropped++;
                     setUnaligned(rec);
                     if (rec.isSecondaryOrSupplementary()) {
-                        shouldWrite.getAndSet(false);
+                        shouldWrite = false;
                     }
-                    return;
+                    continue;
                 }
 
-                int numBasesToClip = rec.getReadPositionAtReferencePosition(newAlignStart) - 1;
+                int numBasesToClip = getReadPositionAtReferencePosition(rec, newAlignStart) - 1;
                 rec.setCigar(softClipStartOfRead(numBasesToClip, rec.getCigar()));
                 rec.setAttribute("Xc", origCigar.toString());
                 if (rec.getCigar().getReferenceLength() == 0) {
                     readsDropped++;
                     setUnaligned(rec);
                     if (rec.isSecondaryOrSupplementary()) {
-                        shouldWrite.getAndSet(false);
+                        shouldWrite = false;
                     }
-                    return;
+                    continue;
                 }
 
                 rec.setAlignmentStart(newAlignStart);
                 totalOverlappingStart++;
 
-                validateCigarChange(rec, origCigar);
-                addSummary(feat, numBasesToClip, true);
-
+                if (validateAlignments) {
+                    validateCigarChange(rec, origCigar);
+                }
 
+                addSummary(region, numBasesToClip, true);
             }
 
             //Alignment end within region
@@ -204,21 +336,21 @@ public class ClipOverlappingAlignments extends ReadWalker {
                 int newAlignEnd = feat.getStart() - 1;
 
                 //Decrement until it doesnt land in a deletion:
-                while (newAlignEnd >= read.getStart() && rec.getReadPositionAtReferencePosition(newAlignEnd) == 0) {
+                while (newAlignEnd >= read.getStart() && getReadPositionAtReferencePosition(rec, newAlignEnd) == 0) {
                     newAlignEnd--;
                 }
 
                 if (newAlignEnd <= read.getStart()) {
                     readsDropped++;
                     if (rec.isSecondaryOrSupplementary()) {
-                        shouldWrite.getAndSet(false);
+                        shouldWrite = false;
                     }
                     setUnaligned(rec);
-                    return;
+                    continue;
                 }
 
                 //NOTE: this reports the first base to clip, not the last to retain
-                int readEnd = rec.getReadPositionAtReferencePosition(newAlignEnd) + 1;
+                int readEnd = getReadPositionAtReferencePosition(rec, newAlignEnd) + 1;
                 int numBasesToClip = rec.getAlignmentEnd() - newAlignEnd;
 
                 try {
@@ -233,28 +365,33 @@ public class ClipOverlappingAlignments extends ReadWalker {
                 if (rec.getCigar().getReferenceLength() == 0) {
                     readsDropped++;
                     if (rec.isSecondaryOrSupplementary()) {
-                        shouldWrite.getAndSet(false);
+                        shouldWrite = false;
                     }
                     setUnaligned(rec);
-                    return;
+                    continue;
                 }
                 totalOverlappingEnd++;
 
-                validateCigarChange(rec, origCigar);
+                if (validateAlignments) {
+                    validateCigarChange(rec, origCigar);
+                }
 
-                addSummary(feat, numBasesToClip, false);
+                addSummary(region, numBasesToClip, false);
             }
-        });
+        }
 
-        if (shouldWrite.get()) {
-            List<SAMValidationError> errors = rec.isValid();
-            if (errors != null && !errors.isEmpty()) {
-                for (SAMValidationError e : errors) {
-                    logger.error(e.getMessage());
-                }
+        if (shouldWrite) {
+            if (validateAlignments) {
+                List<SAMValidationError> errors = rec.isValid();
+                if (errors != null && !errors.isEmpty()) {
+                    for (SAMValidationError e : errors) {
+                        logger.error(e.getMessage());
+                    }
 
-                throw new GATKException("Invalid SAM Record: " + origCigar.toString() + ", new: " + rec.getCigar().toString() + ", align start: " + rec.getAlignmentStart() + ", name: " + rec.getReadName());
+                    throw new GATKException("Invalid SAM Record: " + origCigar.toString() + ", new: " + rec.getCigar().toString() + ", align start: " + rec.getAlignmentStart() + ", name: " + rec.getReadName());
+                }
             }
+
             writer.addAlignment(rec);
         }
     }
@@ -363,8 +500,7 @@ public class ClipOverlappingAlignments extends ReadWalker {
         if (reportFile != null) {
             try (ICSVWriter csvWriter = CsvUtils.getTsvWriter(reportFile)) {
                 csvWriter.writeNext(new String[]{"FeatureContig", "FeatureStart", "FeatureEnd","TotalAlignmentsClippedAt5Prime", "Total5PrimeBasesClipped","TotalAlignmentsClippedAt3Prime", "Total3PrimeBasesClipped"});
-                for (String key : summary.keySet()) {
-                    HitTracker tracker = summary.get(key);
+                for (HitTracker tracker : trackersInHitOrder) {
                     csvWriter.writeNext(new String[]{tracker.contig, String.valueOf(tracker.start), String.valueOf(tracker.end), String.valueOf(tracker.totalClipped5), String.valueOf(tracker.totalBasesClipped5), String.valueOf(tracker.totalClipped3), String.valueOf(tracker.totalBasesClipped3)});
                 }
             }
@@ -2,8 +2,8 @@ package com.github.discvrseq.walkers;
 
 import com.github.discvrseq.tools.VariantManipulationProgramGroup;
 import com.github.discvrseq.util.CsvUtils;
+import com.github.discvrseq.util.SiteGenotypeEncoder;
 import com.opencsv.ICSVWriter;
-import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.vcf.VCFHeader;
 import org.broadinstitute.barclay.argparser.Argument;
@@ -17,9 +17,12 @@ import org.broadinstitute.hellbender.utils.Utils;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This tool was originally created to help identify possible sample mix-ups. It accepts an input VCF, reference VCF and list of samples to consider.  It will compare each sample in this list from the VCF against every samples in the reference VCF, 
@@ -66,6 +69,12 @@ public class CrossSampleGenotypeComparison extends VariantWalker {
     @Argument(doc = "Samples To Consider", fullName = "samples", shortName = "s", optional = true)
     public List<String> SAMPLES = new ArrayList<>();
 
+    @Argument(fullName = "threads", doc = "The number of threads to use. If greater than one, the encoded genotypes of " + SITES_PER_BATCH + " sites are buffered, and the samples are divided into blocks that are compared against the reference samples concurrently for the whole batch. Each batch still ends with all threads waiting on the slowest block, so this only pays off with thousands of samples and spare cores: with a few hundred samples or fewer, the comparison is cheap relative to reading the VCFs and a single thread is faster.", optional = true, minValue = 1)
+    public int threads = 1;
+
+    // The number of sites (reference records) whose genotypes are buffered before the workers compare them:
+    private static final int SITES_PER_BATCH = 256;
+
     @Override
     public void onTraversalStart() {
         Utils.nonNull(outFile);
@@ -76,11 +85,52 @@ public class CrossSampleGenotypeComparison extends VariantWalker {
 
         VCFHeader header = (VCFHeader)getHeaderForFeatures(refVariants);
         refSamples.addAll(header.getSampleNamesInOrder());
+
+        // Indexed by the position of each sample in SAMPLES, and then the reference sample:
+        totalGenotypes = new int[SAMPLES.size()];
+        totalConcordant = new int[SAMPLES.size()][refSamples.size()];
+        totalDiscordant = new int[SAMPLES.size()][refSamples.size()];
+
+        if (threads > 1 && SAMPLES.size() > 1) {
+            batchSampleCodes = new int[SITES_PER_BATCH][SAMPLES.size()];
+            batchRefSampleCodes = new int[SITES_PER_BATCH][refSamples.size()];
+
+            int blockSize = (SAMPLES.size() + threads - 1) / threads;
+            for (int start = 0; start < SAMPLES.size(); start += blockSize) {
+                int blockStart = start;
+                int blockEnd = Math.min(start + blockSize, SAMPLES.size());
+                blockTasks.add(() -> {
+                    for (int site = 0; site < sitesInBatch; site++) {
+                        compareSamples(batchSampleCodes[site], batchRefSampleCodes[site], blockStart, blockEnd);
+                    }
+
+                    return null;
+                });
+            }
+
+            executor = Executors.newFixedThreadPool(blockTasks.size());
+        }
+        else {
+            batchSampleCodes = new int[1][SAMPLES.size()];
+            batchRefSampleCodes = new int[1][refSamples.size()];
+        }
     }
 
     private List<String> refSamples = new ArrayList<>();
     private int warningsLogged = 0;
-    private Map<String, Tracker> results = new HashMap<>();
+
+    private int[] totalGenotypes;
+    private int[][] totalConcordant;
+    private int[][] totalDiscordant;
+
+    // The encoded genotypes of each site in the current batch. Codes are only comparable within a site. When single-threaded, the batch holds one site:
+    private final SiteGenotypeEncoder encoder = new SiteGenotypeEncoder();
+    private int[][] batchSampleCodes;
+    private int[][] batchRefSampleCodes;
+    private int sitesInBatch = 0;
+
+    private ExecutorService executor = null;
+    private final List<Callable<Void>> blockTasks = new ArrayList<>();
 
     @Override
     public void apply(VariantContext vc, ReadsContext readsContext, ReferenceContext referenceContext, FeatureContext featureContext) {
@@ -93,57 +143,106 @@ public class CrossSampleGenotypeComparison extends VariantWalker {
             return;
         }
 
-        for (String sn : SAMPLES) {
-            List<VariantContext> list = featureContext.getValues(refVariants);
-            list.removeIf(x -> x.getStart() != vc.getStart());
+        if (SAMPLES.isEmpty()) {
+            return;
+        }
 
-            if (list.isEmpty()){
-                if (warningsLogged < 10) {
-                    logger.warn("position not found in reference VCF: " + vc.getContig() + ":" + vc.getStart());
-                    warningsLogged++;
+        List<VariantContext> list = featureContext.getValues(refVariants);
+        list.removeIf(x -> x.getStart() != vc.getStart());
 
-                    if (warningsLogged == 10){
-                        logger.warn("future warnings will not be logged");
-                    }
+        if (list.isEmpty()){
+            if (warningsLogged < 10) {
+                logger.warn("position not found in reference VCF: " + vc.getContig() + ":" + vc.getStart());
+                warningsLogged++;
+
+                if (warningsLogged == 10){
+                    logger.warn("future warnings will not be logged");
                 }
+            }
 
-                return;
+            return;
+        }
+
+        // Genotypes from both VCFs are encoded together, so codes are comparable between them:
+        encoder.reset();
+        final int[] sampleCodes = batchSampleCodes[sitesInBatch];
+        if (!encoder.encode(vc, SAMPLES, sampleCodes)) {
+            return;
+        }
+
+        //iterate all animals in the ref:
+        for (VariantContext c : list) {
+            if (executor == null) {
+                encoder.encode(c, refSamples, batchRefSampleCodes[0]);
+                compareSamples(sampleCodes, batchRefSampleCodes[0], 0, SAMPLES.size());
+                continue;
             }
 
-            if (vc.hasGenotype(sn)) {
-                Genotype g = vc.getGenotype(sn);
-                if (g.isFiltered() || g.isNoCall()) {
-                    continue;
-                }
+            // Each reference record is one entry in the batch, with its own copy of the sample codes:
+            if (sampleCodes != batchSampleCodes[sitesInBatch]) {
+                System.arraycopy(sampleCodes, 0, batchSampleCodes[sitesInBatch], 0, sampleCodes.length);
+            }
+            encoder.encode(c, refSamples, batchRefSampleCodes[sitesInBatch]);
+            sitesInBatch++;
 
-                //iterate all animals in the ref:
-                for (VariantContext c : list){
-                    for (String sn2 : refSamples) {
-                        String key = Tracker.getKey(sn, sn2);
-                        Tracker t = results.get(key);
-                        if (t == null){
-                            t = new Tracker(sn, sn2);
-                            results.put(key, t);
-                        }
-
-                        t.totalGenotypes++;
-                        Genotype refGenotype = c.getGenotype(sn2);
-                        if (refGenotype != null && !refGenotype.isFiltered() && !refGenotype.isNoCall()) {
-                            if (!refGenotype.sameGenotype(g)) {
-                                t.totalDiscordant++;
-                            }
-                            else {
-                                t.totalConcordant++;
-                            }
-                        }
-                    }
-                }
+            if (sitesInBatch == SITES_PER_BATCH) {
+                compareBatch();
+            }
+        }
+    }
+
+    private void compareBatch() {
+        if (sitesInBatch == 0) {
+            return;
+        }
+
+        try {
+            for (Future<Void> f : executor.invokeAll(blockTasks)) {
+                f.get();
+            }
+        }
+        catch (InterruptedException e) {
+            throw new GATKException("Error comparing genotypes", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof GATKException ge) {
+                throw ge;
+            }
+
+            throw new GATKException("Error comparing genotypes", e.getCause());
+        }
+
+        sitesInBatch = 0;
+    }
+
+    /**
+     * Compares the samples from fromIdx (inclusive) to toIdx (exclusive) against every reference sample, using the codes for one site.
+     * Each sample only updates its own row of the matrices, so blocks of samples can be compared concurrently.
+     */
+    private void compareSamples(int[] sampleCodes, int[] refCodes, int fromIdx, int toIdx) {
+        for (int i = fromIdx; i < toIdx; i++) {
+            final int code = sampleCodes[i];
+            if (code == SiteGenotypeEncoder.NOT_CALLED) {
+                continue;
+            }
+
+            totalGenotypes[i]++;
+            final int[] concordant = totalConcordant[i];
+            final int[] discordant = totalDiscordant[i];
+            for (int j = 0; j < refCodes.length; j++) {
+                final int refCode = refCodes[j];
+                concordant[j] += refCode == code ? 1 : 0;
+                discordant[j] += refCode != code && refCode != SiteGenotypeEncoder.NOT_CALLED ? 1 : 0;
             }
         }
     }
 
     @Override
     public Object onTraversalSuccess() {
+        if (executor != null) {
+            compareBatch();
+        }
+
         try (ICSVWriter writer = CsvUtils.getTsvWriter(new File(outFile)); ICSVWriter summaryWriter = CsvUtils.getTsvWriter(new File(summaryOutFile))){
             writer.writeNext(new String[]{"SampleName", "RefSampleName", "TotalCalledGenotypes", "TotalComparedToRef", "TotalDiscordant", "FractionDiscordant"});
 
@@ -152,20 +251,21 @@ public class CrossSampleGenotypeComparison extends VariantWalker {
             summaryHeader.addAll(refSamples);
             summaryWriter.writeNext(summaryHeader.toArray(new String[summaryHeader.size()]));
 
-            for (String sn : SAMPLES){
+            for (int i = 0; i < SAMPLES.size(); i++){
+                String sn = SAMPLES.get(i);
                 List<String> summaryLine = new ArrayList<>();
                 summaryLine.add(sn);
 
-                for (String sn2 : refSamples){
-                    Tracker t = results.get(Tracker.getKey(sn, sn2));
-                    if (t == null){
+                for (int j = 0; j < refSamples.size(); j++){
+                    // Samples without any called genotypes at sites present in the reference are not reported:
+                    if (totalGenotypes[i] == 0){
                         summaryLine.add("");
                         continue;
                     }
 
-                    int totalCompared = t.totalConcordant + t.totalDiscordant;
-                    String fraction = (totalCompared == 0 ? "" : String.valueOf(t.totalDiscordant / (double)totalCompared));
-                    writer.writeNext(new String[]{t.sample1, t.sample2, String.valueOf(t.totalGenotypes), String.valueOf(t.totalConcordant + t.totalDiscordant), String.valueOf(t.totalDiscordant), fraction});
+                    int totalCompared = totalConcordant[i][j] + totalDiscordant[i][j];
+                    String fraction = (totalCompared == 0 ? "" : String.valueOf(totalDiscordant[i][j] / (double)totalCompared));
+                    writer.writeNext(new String[]{sn, refSamples.get(j), String.valueOf(totalGenotypes[i]), String.valueOf(totalCompared), String.valueOf(totalDiscordant[i][j]), fraction});
 
                     summaryLine.add(fraction);
                 }
@@ -180,21 +280,12 @@ public class CrossSampleGenotypeComparison extends VariantWalker {
         return super.onTraversalSuccess();
     }
 
-    private static class Tracker {
-        String sample1;
-        String sample2;
-
-        int totalGenotypes = 0;
-        int totalConcordant = 0;
-        int totalDiscordant = 0;
-
-        private Tracker(String sample1, String sample2) {
-            this.sample1 = sample1;
-            this.sample2 = sample2;
+    @Override
+    public void closeTool() {
+        if (executor != null && !executor.isTerminated()) {
+            executor.shutdownNow();
         }
 
-        private static String getKey(String sample1, String sample2) {
-            return sample1 + "||" + sample2;
-        }
+        super.closeTool();
     }
 }
@@ -1,7 +1,7 @@
 package com.github.discvrseq.walkers;
 
 import com.github.discvrseq.tools.DiscvrSeqInternalProgramGroup;
-import htsjdk.samtools.SAMFileWriterImpl;
+import com.github.discvrseq.util.BinaryVariantContextCodec;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.liftover.LiftOver;
 import htsjdk.samtools.reference.IndexedFastaSequenceFile;
@@ -15,7 +15,6 @@ import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
 import htsjdk.variant.vcf.VCFHeader;
 import htsjdk.variant.vcf.VCFHeaderLineType;
 import htsjdk.variant.vcf.VCFInfoHeaderLine;
-import htsjdk.variant.vcf.VCFRecordCodec;
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 import org.broadinstitute.barclay.help.DocumentedFeature;
@@ -74,6 +73,9 @@ public class FindGenomeDifferences extends GATKTool {
     @Argument(fullName = "windowSize", shortName = "ws", doc = "Window Size", optional = true)
     private int windowSize = 5000;
 
+    @Argument(fullName = "sortingRamMb", shortName = "sortingRamMb", doc = "The approximate amount of memory, in megabytes, used to hold variants while sorting the output, before these are spilled to disk. If not provided, a quarter of the maximum heap size is used. At least " + BinaryVariantContextCodec.MIN_RECORDS_IN_RAM + " records are held regardless, to limit the number of temporary files.", optional = true, minValue = 1)
+    private Long sortingRamMb = null;
+
     private SAMSequenceDictionary sourceDict;
     private SAMSequenceDictionary targetDict;
 
@@ -207,11 +209,7 @@ public class FindGenomeDifferences extends GATKTool {
             tmpDir.mkdirs();
         }
 
-        sorter = SortingCollection.newInstance(
-                VariantContext.class,
-                new VCFRecordCodec(vcfHeader, true),
-                vcfHeader.getVCFRecordComparator(),
-                SAMFileWriterImpl.getDefaultMaxRecordsInRam(), tmpDir.toPath());
+        sorter = BinaryVariantContextCodec.createSortingCollection(vcfHeader, sortingRamMb == null ? null : sortingRamMb * 1024 * 1024, tmpDir.toPath(), logger);
     }
 
     private void prepareVcfHeader(){
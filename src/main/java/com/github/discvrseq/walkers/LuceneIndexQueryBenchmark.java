@@ -0,0 +1,339 @@
+package com.github.discvrseq.walkers;
+
+import com.github.discvrseq.tools.DiscvrSeqDevProgramGroup;
+import com.github.discvrseq.util.CsvUtils;
+import com.opencsv.ICSVWriter;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.*;
+import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
+import org.apache.lucene.queryparser.flexible.standard.StandardQueryParser;
+import org.apache.lucene.queryparser.flexible.standard.config.PointsConfig;
+import org.apache.lucene.search.*;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.broadinstitute.barclay.argparser.Argument;
+import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
+import org.broadinstitute.barclay.help.DocumentedFeature;
+import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
+import org.broadinstitute.hellbender.engine.GATKPath;
+import org.broadinstitute.hellbender.engine.GATKTool;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.exceptions.UserException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.NumberFormat;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This tool opens a lucene index, such as one created by VcfToLuceneIndexer, and measures the latency of a set of representative queries.
+ * The index is opened read-only using memory-mapped IO. Each query is run for a number of warmup iterations, which are not recorded, followed by
+ * the measured iterations. The tool reports p50/p95/p99 latency per query and overall, queries/sec, hits/sec, and query cache hit rates.
+ *
+ * <p>The query file has one query per line, using lucene query syntax (for example: contig:1, start:[1000 TO 2000], AF:[* TO 0.05] or variableSamples:Sample1).
+ * Numeric ranges are supported for any point field in the index. Optionally, a sort can follow the query, separated by a tab, given as the name of
+ * a doc values field such as genomicPosition_sort. Prefix the field with '-' to reverse the sort. Blank lines and lines beginning with # are ignored.</p>
+ *
+ * <h3>Usage example:</h3>
+ * <pre>
+ *  java -jar DISCVRseq.jar LuceneIndexQueryBenchmark \
+ *     --index-dir /path/to/luceneIndex/ \
+ *     --query-file queries.txt \
+ *     --iterations 20 \
+ *     -O queryLatency.txt
+ * </pre>
+ */
+@DocumentedFeature
+@CommandLineProgramProperties(
+        summary = "This tool runs a set of queries against a lucene index, such as one created by VcfToLuceneIndexer, and reports query latency",
+        oneLineSummary = "Measure query latency against a lucene index",
+        programGroup = DiscvrSeqDevProgramGroup.class
+)
+public class LuceneIndexQueryBenchmark extends GATKTool {
+    @Argument(fullName = "index-dir", doc = "The directory containing the lucene index")
+    public GATKPath indexDir;
+
+    @Argument(fullName = "query-file", doc = "A file with one query per line, in lucene query syntax, optionally followed by a tab and a sort field")
+    public GATKPath queryFile;
+
+    @Argument(fullName = StandardArgumentDefinitions.OUTPUT_LONG_NAME, shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME, doc = "A TSV file where the per-query latency will be written", optional = true)
+    public GATKPath outFile;
+
+    @Argument(fullName = "iterations", doc = "The number of times each query will be run and measured", optional = true, minValue = 1)
+    public int iterations = 10;
+
+    @Argument(fullName = "warmup-iterations", doc = "The number of times each query will be run before measurement begins", optional = true, minValue = 0)
+    public int warmupIterations = 2;
+
+    @Argument(fullName = "max-hits", doc = "The number of top hits to retrieve per query", optional = true, minValue = 1)
+    public int maxHits = 100;
+
+    @Argument(fullName = "load-documents", doc = "If true, the stored fields of the top hits will be loaded, which is included in the latency", optional = true)
+    public boolean loadDocuments = false;
+
+    @Argument(fullName = "threads", doc = "The number of queries to run concurrently", optional = true, minValue = 1)
+    public int threads = 1;
+
+    @Argument(fullName = "long-point-field", doc = "Point fields with 8 bytes per dimension are assumed to hold doubles, except for these fields, which hold longs", optional = true)
+    public List<String> longPointFields = new ArrayList<>(List.of("genomicPosition"));
+
+    @Argument(fullName = "query-cache-size", doc = "The maximum number of queries held in the searcher's query cache. Use zero to disable the cache.", optional = true, minValue = 0)
+    public int queryCacheSize = 1000;
+
+    private static final String DEFAULT_FIELD = "contig";
+
+    private static final long QUERY_CACHE_MAX_RAM_BYTES = 64L * 1024 * 1024;
+
+    private static class BenchmarkQuery {
+        final String text;
+        final String sortText;
+        final Query query;
+        final Sort sort;
+        final long[] latencies;
+        volatile TotalHits totalHits = null;
+
+        public BenchmarkQuery(String text, String sortText, Query query, Sort sort, int iterations) {
+            this.text = text;
+            this.sortText = sortText;
+            this.query = query;
+            this.sort = sort;
+            this.latencies = new long[iterations];
+        }
+    }
+
+    @Override
+    public void traverse() {
+        try (Directory directory = new MMapDirectory(indexDir.toPath()); DirectoryReader reader = DirectoryReader.open(directory)) {
+            IndexSearcher searcher = new IndexSearcher(reader);
+            LRUQueryCache cache = null;
+            if (queryCacheSize > 0) {
+                cache = new LRUQueryCache(queryCacheSize, QUERY_CACHE_MAX_RAM_BYTES);
+            }
+            searcher.setQueryCache(cache);
+
+            logger.info("Total documents in index: " + reader.numDocs() + ", segments: " + reader.leaves().size());
+
+            final List<BenchmarkQuery> queries = readQueries(reader);
+            logger.info("Total queries: " + queries.size());
+
+            if (warmupIterations > 0) {
+                logger.info("Running warmup iterations");
+                runIterations(searcher, queries, warmupIterations, false);
+            }
+
+            final long cacheHitsBefore = cache == null ? 0 : cache.getHitCount();
+            final long cacheMissesBefore = cache == null ? 0 : cache.getMissCount();
+
+            logger.info("Running measured iterations");
+            final long start = System.nanoTime();
+            runIterations(searcher, queries, iterations, true);
+            final double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+            List<Long> allLatencies = new ArrayList<>();
+            long totalHits = 0;
+            for (BenchmarkQuery q : queries) {
+                for (long l : q.latencies) {
+                    allLatencies.add(l);
+                }
+
+                totalHits += q.totalHits.value() * iterations;
+            }
+            Collections.sort(allLatencies);
+
+            logger.info("Total executions: " + allLatencies.size() + ", elapsed seconds: " + String.format("%.2f", elapsedSeconds));
+            logger.info("Latency (ms) p50: " + formatMs(getPercentile(allLatencies, 0.5)) + ", p95: " + formatMs(getPercentile(allLatencies, 0.95)) + ", p99: " + formatMs(getPercentile(allLatencies, 0.99)));
+            logger.info("Queries/sec: " + String.format("%.1f", allLatencies.size() / elapsedSeconds) + ", hits/sec: " + String.format("%.1f", totalHits / elapsedSeconds));
+            if (cache != null) {
+                final long hits = cache.getHitCount() - cacheHitsBefore;
+                final long misses = cache.getMissCount() - cacheMissesBefore;
+                logger.info("Query cache hits: " + hits + ", misses: " + misses + ", hit rate: " + (hits + misses == 0 ? "NA" : String.format("%.3f", (double) hits / (hits + misses))) + ", cached queries: " + cache.getCacheSize() + ", evictions: " + cache.getEvictionCount() + ", RAM bytes: " + cache.ramBytesUsed());
+            }
+
+            if (outFile != null) {
+                writeOutput(queries, allLatencies);
+            }
+        }
+        catch (IOException e) {
+            throw new GATKException(e.getMessage(), e);
+        }
+    }
+
+    private List<BenchmarkQuery> readQueries(IndexReader reader) throws IOException {
+        final FieldInfos fieldInfos = FieldInfos.getMergedFieldInfos(reader);
+
+        StandardQueryParser parser = new StandardQueryParser(new StandardAnalyzer());
+        parser.setAllowLeadingWildcard(true);
+        parser.setPointsConfigMap(getPointsConfig(fieldInfos));
+
+        List<BenchmarkQuery> ret = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(queryFile.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (StringUtils.isBlank(line) || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] tokens = line.split("\t");
+                String sortText = tokens.length > 1 ? StringUtils.trimToNull(tokens[1]) : null;
+                try {
+                    ret.add(new BenchmarkQuery(tokens[0], sortText, parser.parse(tokens[0], DEFAULT_FIELD), parseSort(sortText, fieldInfos), iterations));
+                }
+                catch (QueryNodeException e) {
+                    throw new UserException.BadInput("Unable to parse query: " + tokens[0], e);
+                }
+            }
+        }
+
+        if (ret.isEmpty()) {
+            throw new UserException.BadInput("No queries found in: " + queryFile.getURIString());
+        }
+
+        return ret;
+    }
+
+    private Map<String, PointsConfig> getPointsConfig(FieldInfos fieldInfos) {
+        Map<String, PointsConfig> ret = new HashMap<>();
+        for (FieldInfo fi : fieldInfos) {
+            if (fi.getPointDimensionCount() == 0) {
+                continue;
+            }
+
+            // NOTE: VcfToLuceneIndexer writes Integer and Flag fields as IntPoints, and Float fields as DoublePoints
+            final Class<? extends Number> type;
+            if (fi.getPointNumBytes() == Integer.BYTES) {
+                type = Integer.class;
+            }
+            else if (longPointFields.contains(fi.getName())) {
+                type = Long.class;
+            }
+            else {
+                type = Double.class;
+            }
+
+            ret.put(fi.getName(), new PointsConfig(NumberFormat.getInstance(Locale.ROOT), type));
+        }
+
+        return ret;
+    }
+
+    private Sort parseSort(String sortText, FieldInfos fieldInfos) {
+        if (sortText == null) {
+            return null;
+        }
+
+        final boolean reverse = sortText.startsWith("-");
+        final String field = reverse ? sortText.substring(1) : sortText;
+        final FieldInfo fi = fieldInfos.fieldInfo(field);
+        if (fi == null) {
+            throw new UserException.BadInput("Unknown sort field: " + field);
+        }
+
+        return switch (fi.getDocValuesType()) {
+            case NUMERIC -> new Sort(new SortField(field, SortField.Type.LONG, reverse));
+            case SORTED -> new Sort(new SortField(field, SortField.Type.STRING, reverse));
+            default -> throw new UserException.BadInput("Field cannot be used to sort: " + field);
+        };
+    }
+
+    private void runIterations(IndexSearcher searcher, List<BenchmarkQuery> queries, int n, boolean record) {
+        List<Callable<Long>> tasks = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            final int iteration = i;
+            for (BenchmarkQuery q : queries) {
+                tasks.add(() -> {
+                    final long latency = runQuery(searcher, q);
+                    if (record) {
+                        q.latencies[iteration] = latency;
+                    }
+
+                    return latency;
+                });
+            }
+        }
+
+        if (threads == 1) {
+            for (Callable<Long> task : tasks) {
+                try {
+                    task.call();
+                }
+                catch (Exception e) {
+                    throw new GATKException("Error running query", e);
+                }
+            }
+
+            return;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Long> f : executor.invokeAll(tasks)) {
+                f.get();
+            }
+        }
+        catch (InterruptedException | ExecutionException e) {
+            throw new GATKException("Error running query", e);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long runQuery(IndexSearcher searcher, BenchmarkQuery q) throws IOException {
+        final long start = System.nanoTime();
+
+        TopDocs topDocs = q.sort == null ? searcher.search(q.query, maxHits) : searcher.search(q.query, maxHits, q.sort);
+        if (loadDocuments) {
+            StoredFields storedFields = searcher.storedFields();
+            for (ScoreDoc sd : topDocs.scoreDocs) {
+                storedFields.document(sd.doc);
+            }
+        }
+
+        final long latency = System.nanoTime() - start;
+        q.totalHits = topDocs.totalHits;
+
+        return latency;
+    }
+
+    private void writeOutput(List<BenchmarkQuery> queries, List<Long> allLatencies) {
+        try (ICSVWriter writer = CsvUtils.getTsvWriter(outFile.toPath())) {
+            writer.writeNext(new String[]{"Query", "Sort", "TotalHits", "Executions", "MeanMs", "P50Ms", "P95Ms", "P99Ms", "MaxMs"});
+            for (BenchmarkQuery q : queries) {
+                List<Long> latencies = new ArrayList<>();
+                for (long l : q.latencies) {
+                    latencies.add(l);
+                }
+                Collections.sort(latencies);
+
+                String totalHits = (q.totalHits.relation() == TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO ? ">=" : "") + q.totalHits.value();
+                writer.writeNext(getRow(q.text, q.sortText == null ? "" : q.sortText, totalHits, latencies));
+            }
+
+            writer.writeNext(getRow("ALL", "", "", allLatencies));
+        }
+        catch (IOException e) {
+            throw new GATKException("Error writing output", e);
+        }
+    }
+
+    private String[] getRow(String query, String sort, String totalHits, List<Long> sortedLatencies) {
+        final double mean = sortedLatencies.stream().mapToLong(Long::longValue).average().orElse(0);
+
+        return new String[]{query, sort, totalHits, String.valueOf(sortedLatencies.size()), formatMs(mean), formatMs(getPercentile(sortedLatencies, 0.5)), formatMs(getPercentile(sortedLatencies, 0.95)), formatMs(getPercentile(sortedLatencies, 0.99)), formatMs(sortedLatencies.get(sortedLatencies.size() - 1))};
+    }
+
+    // Nearest-rank percentile of a sorted list
+    private static long getPercentile(List<Long> sortedLatencies, double percentile) {
+        int idx = (int) Math.ceil(percentile * sortedLatencies.size()) - 1;
+
+        return sortedLatencies.get(Math.max(0, Math.min(idx, sortedLatencies.size() - 1)));
+    }
+
+    private static String formatMs(double nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+}
@@ -9,6 +9,7 @@ import htsjdk.samtools.reference.ReferenceSequence;
 import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.SortingCollection;
+import org.apache.commons.lang3.tuple.Pair;
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 import org.broadinstitute.barclay.help.DocumentedFeature;
@@ -33,6 +34,12 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
 
@@ -56,6 +63,16 @@ import java.util.stream.IntStream;
  *     -I myBam.bam \
  *     -O output.txt
  * </pre>
+ * <h3>Usage example, processing many intervals (such as an amplicon panel) concurrently:</h3>
+ * <pre>
+ *  java -jar DISCVRseq.jar PrintReadBackedHaplotypes \
+ *     -R reference.fasta \
+ *     -L amplicons.intervals \
+ *     -I myBam.bam \
+ *     --threads 8 \
+ *     --in-memory-read-threshold 100000 \
+ *     -O output.txt
+ * </pre>
  *
  */
 @DocumentedFeature
@@ -86,8 +103,31 @@ public class PrintReadBackedHaplotypes extends IntervalWalker {
     @Argument(fullName = "minReadFractionToReport", shortName = "mrf", doc = "If specified, only haplotypes representing at least this fraction of total haplotypes will be reported")
     private double minReadFractionToReport = 0.0;
 
-    private SamReader bamReader = null;
-    private ReadFilter readFilter;
+    @Argument(fullName = "threads", doc = "The number of threads to use. If greater than one, intervals are processed concurrently, each using its own BAM reader. The output is always written in the order of the intervals.", optional = true, minValue = 1)
+    private int threads = 1;
+
+    @Argument(fullName = "in-memory-read-threshold", doc = "If greater than zero, the alignments for an interval will be grouped by read name in memory, rather than sorted using a disk-backed collection, unless the interval has more than this many alignments passing filters.", optional = true, minValue = 0)
+    private int inMemoryReadThreshold = 0;
+
+    /**
+     * A BAM reader and the read filters, which are used by one interval at a time
+     */
+    private static final class IntervalReader {
+        private final SamReader bamReader;
+        private final ReadFilter readFilter;
+
+        private IntervalReader(SamReader bamReader, ReadFilter readFilter) {
+            this.bamReader = bamReader;
+            this.readFilter = readFilter;
+        }
+    }
+
+    private final List<IntervalReader> allReaders = new ArrayList<>();
+    private BlockingQueue<IntervalReader> readerPool = null;
+    private SAMFileHeader sortHeader = null;
+
+    private ExecutorService executor = null;
+    private final Deque<Pair<SimpleInterval, Future<Map<ReadBackedHaplotype, Integer>>>> pendingResults = new ArrayDeque<>();
 
     @Override
     public void onTraversalStart() {
@@ -104,9 +144,20 @@ public class PrintReadBackedHaplotypes extends IntervalWalker {
 
         SamReaderFactory fact = SamReaderFactory.makeDefault();
         Path bam = readArguments.getReadPaths().get(0);
-        bamReader = fact.open(bam);
+        readerPool = new ArrayBlockingQueue<>(threads);
+        for (int i = 0; i < threads; i++) {
+            IntervalReader reader = new IntervalReader(fact.open(bam), ReadFilter.fromList(getDefaultReadFilters(), getHeaderForReads()));
+            allReaders.add(reader);
+            readerPool.add(reader);
+        }
 
-        readFilter = ReadFilter.fromList(getDefaultReadFilters(), getHeaderForReads());
+        sortHeader = getHeaderForReads().clone();
+        sortHeader.setSortOrder(SAMFileHeader.SortOrder.queryname);
+
+        if (threads > 1) {
+            logger.info("Processing intervals using " + threads + " threads");
+            executor = Executors.newFixedThreadPool(threads);
+        }
     }
 
     @Override
@@ -114,124 +165,259 @@ public class PrintReadBackedHaplotypes extends IntervalWalker {
         return true;
     }
 
-    private final Map<SimpleInterval, Map<Character[][], Integer>> resultMap = new HashMap<>();
+    private final Map<SimpleInterval, Map<ReadBackedHaplotype, Integer>> resultMap = new LinkedHashMap<>();
+
+    /**
+     * An immutable haplotype over an interval, which is used as the key when counting haplotypes. Each position holds a single base, or zero if the position lacks coverage.
+     * Insertions are rare, so these are held in a separate table, which is null if the haplotype has no insertions. The hash is computed once, upfront.
+     */
+    private static final class ReadBackedHaplotype {
+        private final byte[] bases;
+        private final byte[][] insertions;
+        private final int hash;
+
+        private ReadBackedHaplotype(byte[] bases, byte[][] insertions) {
+            this.bases = bases;
+            this.insertions = insertions;
+            this.hash = 31 * Arrays.hashCode(bases) + Arrays.deepHashCode(insertions);
+        }
+
+        public int length() {
+            return bases.length;
+        }
+
+        public boolean isCovered(int pos) {
+            return bases[pos] != 0;
+        }
+
+        public char getBase(int pos) {
+            return (char)bases[pos];
+        }
+
+        public int getInsertionLength(int pos) {
+            return insertions == null || insertions[pos] == null ? 0 : insertions[pos].length;
+        }
+
+        /**
+         * @param insertIdx The 1-based index of the inserted base following this position
+         */
+        public char getInsertedBase(int pos, int insertIdx) {
+            return (char)insertions[pos][insertIdx - 1];
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof ReadBackedHaplotype other)) {
+                return false;
+            }
 
-    private SortingCollection<SAMRecord> getSorter(SAMFileHeader header) {
+            return hash == other.hash && Arrays.equals(bases, other.bases) && Arrays.deepEquals(insertions, other.insertions);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * The mutable state used while merging the alignments for one read or read pair into a haplotype
+     */
+    private static final class HaplotypeBuilder {
+        private final byte[] bases;
+        private final int[] quals;
+        private byte[][] insertions = null;
+
+        private HaplotypeBuilder(int length) {
+            this.bases = new byte[length];
+            this.quals = new int[length];
+        }
+
+        private ReadBackedHaplotype build() {
+            return new ReadBackedHaplotype(bases, insertions);
+        }
+    }
+
+    private SortingCollection<SAMRecord> getSorter() {
         File tmpDir = IOUtil.getDefaultTmpDir();
         if (!tmpDir.exists()) {
             tmpDir.mkdirs();
         }
 
-        header.setSortOrder(SAMFileHeader.SortOrder.queryname);
-
         return SortingCollection.newInstance(
                 SAMRecord.class,
-                new BAMRecordCodec(header),
+                new BAMRecordCodec(sortHeader),
                 new SAMRecordQueryNameComparator(),
                 MAX_RECORDS_IN_RAM, tmpDir.toPath());
     }
 
     @Override
     public void apply(SimpleInterval interval, ReadsContext readsContext, ReferenceContext referenceContext, FeatureContext featureContext) {
-        Map<Character[][], Integer> results = new HashMap<>();
+        if (executor == null) {
+            resultMap.put(interval, processInterval(interval));
+            return;
+        }
+
+        pendingResults.add(Pair.of(interval, executor.submit(() -> processInterval(interval))));
+
+        // Collect any intervals already finished, which also surfaces errors from the workers early:
+        while (!pendingResults.isEmpty() && pendingResults.peek().getRight().isDone()) {
+            collectNextResult();
+        }
+    }
+
+    private void collectNextResult() {
+        Pair<SimpleInterval, Future<Map<ReadBackedHaplotype, Integer>>> pending = pendingResults.poll();
+        try {
+            resultMap.put(pending.getLeft(), pending.getRight().get());
+        }
+        catch (InterruptedException | ExecutionException e) {
+            if (e.getCause() instanceof GATKException ge) {
+                throw ge;
+            }
+
+            throw new GATKException("Error processing interval: " + pending.getLeft().toString(), e);
+        }
+    }
+
+    private Map<ReadBackedHaplotype, Integer> processInterval(SimpleInterval interval) {
+        IntervalReader reader;
+        try {
+            reader = readerPool.take();
+        }
+        catch (InterruptedException e) {
+            throw new GATKException("Interrupted while waiting for a BAM reader", e);
+        }
+
+        try {
+            return processInterval(interval, reader);
+        }
+        finally {
+            readerPool.add(reader);
+        }
+    }
+
+    private Map<ReadBackedHaplotype, Integer> processInterval(SimpleInterval interval, IntervalReader reader) {
+        Map<ReadBackedHaplotype, Integer> results = new HashMap<>();
 
-        logger.info("Starting interval: " + interval.toString() + ", total reads");
-        SortingCollection<SAMRecord> sortingCollection = queryOverlappingReads(interval);
+        logger.info("Starting interval: " + interval.toString());
 
         int alignmentsInspected = 0;
         int uniqueReads = 0;
         AtomicInteger totalDroppedForCoverage = new AtomicInteger(0);
 
-        try (CloseableIterator<SAMRecord> it = sortingCollection.iterator()) {
-            List<SAMRecord> alignmentsForRead = new ArrayList<>();
+        // Reads are grouped in memory unless the interval is too large, in which case these are sorted by name:
+        Map<String, List<SAMRecord>> readsByName = inMemoryReadThreshold > 0 ? new LinkedHashMap<>() : null;
+        SortingCollection<SAMRecord> sortingCollection = readsByName == null ? getSorter() : null;
+        try {
+            int failedFilters = 0;
+            try (SAMRecordIterator it = reader.bamReader.queryOverlapping(interval.getContig(), interval.getStart(), interval.getEnd())) {
+                while (it.hasNext()) {
+                    GATKRead read = new SAMRecordToGATKReadAdapter(it.next());
+                    if (!reader.readFilter.test(read)) {
+                        failedFilters++;
+                        continue;
+                    }
+
+                    SAMRecord rec = read.convertToSAMRecord(sortHeader);
+                    alignmentsInspected++;
+                    if (sortingCollection != null) {
+                        sortingCollection.add(rec);
+                        continue;
+                    }
+
+                    readsByName.computeIfAbsent(rec.getReadName(), x -> new ArrayList<>(2)).add(rec);
+                    if (alignmentsInspected > inMemoryReadThreshold) {
+                        logger.info("Interval " + interval.toString() + " has more than " + inMemoryReadThreshold + " alignments, sorting by name on disk");
+                        sortingCollection = getSorter();
+                        for (List<SAMRecord> alignmentsForRead : readsByName.values()) {
+                            alignmentsForRead.forEach(sortingCollection::add);
+                        }
+
+                        readsByName = null;
+                    }
+                }
+            }
+
+            logger.info("total alignments failing filters: " + failedFilters);
 
-            while (it.hasNext()) {
-                alignmentsInspected++;
-                SAMRecord rec = it.next();
+            if (sortingCollection == null) {
+                // Order the alignments for each read as the disk-backed sort would, since this determines how mates are merged:
+                SAMRecordQueryNameComparator comparator = new SAMRecordQueryNameComparator();
+                for (List<SAMRecord> alignmentsForRead : readsByName.values()) {
+                    if (alignmentsForRead.size() > 1) {
+                        alignmentsForRead.sort(comparator);
+                    }
 
-                //If this read doesnt match the prior set, process these and clear alignmentsForRead
-                if (!alignmentsForRead.isEmpty() && !alignmentsForRead.get(0).getReadName().equals(rec.getReadName())){
                     uniqueReads++;
                     processGroupAndAppendResults(results, interval, alignmentsForRead, totalDroppedForCoverage);
-                    alignmentsForRead.clear();
                 }
-
-                alignmentsForRead.add(rec);
             }
+            else {
+                try (CloseableIterator<SAMRecord> it = sortingCollection.iterator()) {
+                    List<SAMRecord> alignmentsForRead = new ArrayList<>();
+
+                    while (it.hasNext()) {
+                        SAMRecord rec = it.next();
+
+                        //If this read doesnt match the prior set, process these and clear alignmentsForRead
+                        if (!alignmentsForRead.isEmpty() && !alignmentsForRead.get(0).getReadName().equals(rec.getReadName())){
+                            uniqueReads++;
+                            processGroupAndAppendResults(results, interval, alignmentsForRead, totalDroppedForCoverage);
+                            alignmentsForRead.clear();
+                        }
+
+                        alignmentsForRead.add(rec);
+                    }
 
-            //ensure we capture final read
-            if (!alignmentsForRead.isEmpty()) {
-                uniqueReads++;
-                processGroupAndAppendResults(results, interval, alignmentsForRead, totalDroppedForCoverage);
+                    //ensure we capture final read
+                    if (!alignmentsForRead.isEmpty()) {
+                        uniqueReads++;
+                        processGroupAndAppendResults(results, interval, alignmentsForRead, totalDroppedForCoverage);
+                    }
+                }
             }
         }
         finally {
-            sortingCollection.cleanup();
+            if (sortingCollection != null) {
+                sortingCollection.cleanup();
+            }
         }
 
+        logger.info("Interval: " + interval.toString());
         logger.info("Total alignments inspected: " + alignmentsInspected);
         logger.info("Unique reads: " + uniqueReads);
         logger.info("Total reads dropped for incomplete coverage: " + totalDroppedForCoverage.get());
 
-        resultMap.put(interval, results);
+        return results;
     }
 
-    private void processGroupAndAppendResults(Map<Character[][], Integer> results, SimpleInterval interval, List<SAMRecord> reads, AtomicInteger totalDroppedForCoverage) {
-        Character[][] arr = processGroup(interval, reads, totalDroppedForCoverage);
-        if (arr == null) {
+    private void processGroupAndAppendResults(Map<ReadBackedHaplotype, Integer> results, SimpleInterval interval, List<SAMRecord> reads, AtomicInteger totalDroppedForCoverage) {
+        ReadBackedHaplotype haplotype = processGroup(interval, reads, totalDroppedForCoverage);
+        if (haplotype == null) {
             return;
         }
 
-        boolean found = false;
-        for (Character[][] val : results.keySet())
-        {
-            if (Arrays.deepEquals(val, arr))
-            {
-                results.put(val, results.get(val) + 1);
-                found = true;
-                break;
-            }
-        }
-
-        if (!found)
-        {
-            results.put(arr, 1);
-        }
-    }
-
-    private SortingCollection<SAMRecord> queryOverlappingReads(SimpleInterval interval) {
-        final SAMFileHeader header = getHeaderForReads();
-        SortingCollection<SAMRecord> sorter = getSorter(header);
-        int failedFilters = 0;
-        try (SAMRecordIterator it = bamReader.queryOverlapping(interval.getContig(), interval.getStart(), interval.getEnd())) {
-            while (it.hasNext()) {
-                GATKRead read = new SAMRecordToGATKReadAdapter(it.next());
-                if (!readFilter.test(read)){
-                    failedFilters++;
-                    continue;
-                }
-
-                sorter.add(read.convertToSAMRecord(header));
-            }
-        }
-
-        logger.info("total alignments failing filters: " + failedFilters);
-
-        return sorter;
+        results.merge(haplotype, 1, Integer::sum);
     }
 
     private static final int MAX_NON_COVER_WINDOW = 200;
 
-    private Character[][] processGroup(SimpleInterval interval, List<SAMRecord> reads, AtomicInteger totalDroppedForCoverage) {
-        Character[][] arr = new Character[interval.size()][];
-        Integer[][] qualArr = new Integer[interval.size()][];
+    private ReadBackedHaplotype processGroup(SimpleInterval interval, List<SAMRecord> reads, AtomicInteger totalDroppedForCoverage) {
+        HaplotypeBuilder builder = new HaplotypeBuilder(interval.size());
+        final byte[] bases = builder.bases;
 
-        reads.forEach(read -> processRead(read, interval, arr, qualArr));
+        reads.forEach(read -> processRead(read, interval, builder));
 
         //NOTE: for a given read group, large deletions can appear as an internal region w/o coverage
         boolean encounteredCoverage = false;
-        for (int idx = 0;idx < arr.length; idx++){
-            if (arr[idx] != null) {
+        int nextCoveredIdx = -1;
+        for (int idx = 0;idx < bases.length; idx++){
+            if (bases[idx] != 0) {
                 encounteredCoverage = true;
                 continue;
             }
@@ -240,36 +426,40 @@ public class PrintReadBackedHaplotypes extends IntervalWalker {
                 continue;
             }
 
-            int nextNotNummIndex = IntStream.range(idx + 1, Math.min(idx + MAX_NON_COVER_WINDOW, arr.length))
-                            .filter(i -> arr[i] != null)
-                            .findFirst().orElse(-1);
+            // Find the next covered position. This only considers coverage from the reads, so it can be reused until it is passed:
+            if (nextCoveredIdx <= idx) {
+                nextCoveredIdx = idx + 1;
+                while (nextCoveredIdx < bases.length && bases[nextCoveredIdx] == 0) {
+                    nextCoveredIdx++;
+                }
+            }
 
-            if (nextNotNummIndex > 0) {
-                arr[idx] = new Character[]{'-'};
+            if (nextCoveredIdx < Math.min(idx + MAX_NON_COVER_WINDOW, bases.length)) {
+                bases[idx] = '-';
             }
         }
 
         if (requiredCoverageFraction > 0) {
-            long totalCovered = IntStream.range(0, arr.length)
-                    .filter(i -> arr[i] != null)
+            long totalCovered = IntStream.range(0, bases.length)
+                    .filter(i -> bases[i] != 0)
                     .count();
 
-            double fraction = ((double)totalCovered / arr.length);
+            double fraction = ((double)totalCovered / bases.length);
             if (fraction < requiredCoverageFraction) {
                 totalDroppedForCoverage.getAndIncrement();
                 return null;
             }
         }
 
-        return arr;
+        return builder.build();
     }
 
-    private void processRead(SAMRecord r, SimpleInterval interval, Character[][] arr, Integer[][] qualArr) {
+    private void processRead(SAMRecord r, SimpleInterval interval, HaplotypeBuilder builder) {
         //add this value to a reference coordinate to find array position
         final int offset = interval.getStart() * -1;
 
         CigarPositionIterable cpi = new CigarPositionIterable(r);
-        CigarPositionIterable.CigarIterator ci = cpi.iterator();
+        CigarPositionIterable.CigarIterator ci = cpi.reusingIterator();
 
         int effectiveInsertIdx = 0;
         while (ci.hasNext())
@@ -302,51 +492,52 @@ public class PrintReadBackedHaplotypes extends IntervalWalker {
             {
                 if (pi.isDel())
                 {
-                    if (arr[arrayPos] == null)
-                    {
-                        arr[arrayPos] = new Character[]{pi.getBaseQuality() < minQual ? 'N' : '-'};
-                        qualArr[arrayPos] = new Integer[]{pi.getBaseQuality()};
-                    }
-                    else
-                    {
-                        mergePositions(arr, qualArr, arrayPos, 0, pi.getBaseQuality() < minQual ? 'N' : '-', pi.getBaseQuality(), pi);
-                    }
+                    setOrMergeBase(builder, arrayPos, pi.getBaseQuality() < minQual ? 'N' : '-', pi);
                 }
                 else if (pi.isInsertion() && pi.getBaseQuality() >= minQual)
                 {
                     effectiveInsertIdx++;
-                    Character[] posArr = arr[arrayPos];
-                    if (posArr == null)
+                    if (builder.bases[arrayPos] == 0)
                     {
                         throw new IllegalArgumentException("No previous array for position: " + pi.getRefPosition());
                     }
 
-                    Character[] newArr = Arrays.copyOf(posArr, effectiveInsertIdx + 1);
-                    newArr[effectiveInsertIdx] = (char)pi.getReadBase();
+                    if (builder.insertions == null)
+                    {
+                        builder.insertions = new byte[builder.bases.length][];
+                    }
+
+                    // NOTE: this resizes any existing insertion (i.e. from the mate) to end with this base
+                    byte[] inserted = builder.insertions[arrayPos] == null ? new byte[effectiveInsertIdx] : Arrays.copyOf(builder.insertions[arrayPos], effectiveInsertIdx);
+                    inserted[effectiveInsertIdx - 1] = (byte)pi.getReadBase();
 
-                    arr[arrayPos] = newArr;
+                    builder.insertions[arrayPos] = inserted;
                 }
             }
             else
             {
-                if (arr[arrayPos] == null)
-                {
-                    arr[arrayPos] = new Character[]{pi.getBaseQuality() < minQual ? 'N' : (char) pi.getReadBase()};
-                    qualArr[arrayPos] = new Integer[]{pi.getBaseQuality()};
-                }
-                else
-                {
-                    mergePositions(arr, qualArr, arrayPos, 0, pi.getBaseQuality() < minQual ? 'N' : (char) pi.getReadBase(), pi.getBaseQuality(), pi);
-                }
+                setOrMergeBase(builder, arrayPos, pi.getBaseQuality() < minQual ? 'N' : (char) pi.getReadBase(), pi);
             }
         }
     }
 
-    private void mergePositions(Character[][] arr, Integer[][] qualArray, int arrayPos, int idx, char base, int qual, CigarPositionIterable.PositionInfo pi) {
-        char existing = Character.toUpperCase(arr[arrayPos][idx]);
+    private void setOrMergeBase(HaplotypeBuilder builder, int arrayPos, char base, CigarPositionIterable.PositionInfo pi) {
+        if (builder.bases[arrayPos] == 0)
+        {
+            builder.bases[arrayPos] = (byte)base;
+            builder.quals[arrayPos] = pi.getBaseQuality();
+        }
+        else
+        {
+            mergePositions(builder, arrayPos, base, pi.getBaseQuality(), pi);
+        }
+    }
+
+    private void mergePositions(HaplotypeBuilder builder, int arrayPos, char base, int qual, CigarPositionIterable.PositionInfo pi) {
+        char existing = Character.toUpperCase((char)builder.bases[arrayPos]);
         if (existing == 'N')
         {
-            arr[arrayPos][idx] = base;
+            builder.bases[arrayPos] = (byte)base;
         }
         else if (base == 'N')
         {
@@ -354,15 +545,15 @@ public class PrintReadBackedHaplotypes extends IntervalWalker {
         }
         else if (existing != base)
         {
-            Integer existingQual = qualArray[arrayPos][idx];
+            int existingQual = builder.quals[arrayPos];
             if (existingQual < qual)
             {
-                arr[arrayPos][idx] = base;
+                builder.bases[arrayPos] = (byte)base;
             }
             else if (existingQual == qual)
             {
-                logger.warn("conflicting forward/reverse read bases: " + pi.getRecord().getReadName() + ", " + pi.getRefPosition() + ", " + arrayPos + ", " + idx + ", " + existing + ", " + base + ", " + qual);
-                arr[arrayPos][idx] = 'X';
+                logger.warn("conflicting forward/reverse read bases: " + pi.getRecord().getReadName() + ", " + pi.getRefPosition() + ", " + arrayPos + ", " + 0 + ", " + existing + ", " + base + ", " + qual);
+                builder.bases[arrayPos] = 'X';
             }
         }
     }
@@ -384,6 +575,10 @@ public class PrintReadBackedHaplotypes extends IntervalWalker {
 
     @Override
     public Object onTraversalSuccess() {
+        while (!pendingResults.isEmpty()) {
+            collectNextResult();
+        }
+
         try (PrintStream outputStream = outputFile != null ? new PrintStream(outputFile) : System.out) {
             for (SimpleInterval i : resultMap.keySet()) {
                 outputStream.println("*******************************************");
@@ -391,7 +586,7 @@ public class PrintReadBackedHaplotypes extends IntervalWalker {
                 outputStream.println("");
                 try (IndexedFastaSequenceFile idx = new IndexedFastaSequenceFile(referenceArguments.getReferencePath())) {
                     ReferenceSequence ref = idx.getSubsequenceAt(i.getContig(), i.getStart(), i.getEnd());
-                    Map<Character[][], Integer> haplotypes = resultMap.get(i);
+                    Map<ReadBackedHaplotype, Integer> haplotypes = resultMap.get(i);
                     haplotypes = filterHaplotypes(haplotypes);
                     Map<Integer, TreeSet<Integer>> indels = getInsertionMap(haplotypes);
                     String referenceSequence = getReferenceSequence(ref, indels);
@@ -399,7 +594,7 @@ public class PrintReadBackedHaplotypes extends IntervalWalker {
 
                     //convert to strings:
                     Map<String, Integer> stringMap = new TreeMap<>();
-                    for (Character[][] haplo : haplotypes.keySet()) {
+                    for (ReadBackedHaplotype haplo : haplotypes.keySet()) {
                         String haplotypeSequence = convertHaplotypeToString(haplo, ref.getBases(), indels);
                         if (stringMap.containsKey(haplotypeSequence)) {
                             throw new GATKException.ShouldNeverReachHereException("The map contains duplicate keys: " + haplotypeSequence);
@@ -437,14 +632,14 @@ public class PrintReadBackedHaplotypes extends IntervalWalker {
         return super.onTraversalSuccess();
     }
 
-    private Map<Character[][], Integer> filterHaplotypes(Map<Character[][], Integer> haplotypes) {
+    private Map<ReadBackedHaplotype, Integer> filterHaplotypes(Map<ReadBackedHaplotype, Integer> haplotypes) {
         AtomicInteger totalHaplotypes = new AtomicInteger();
         haplotypes.forEach((x, y) -> {totalHaplotypes.addAndGet(y);});
 
         if (minReadsToReport > 0) {
-            Map<Character[][], Integer> ret = new HashMap<>();
+            Map<ReadBackedHaplotype, Integer> ret = new HashMap<>();
             int totalDropped  = 0;
-            for (Character[][] key : haplotypes.keySet()) {
+            for (ReadBackedHaplotype key : haplotypes.keySet()) {
                 if (haplotypes.get(key) >= minReadsToReport) {
                     ret.put(key, haplotypes.get(key));
                 }
@@ -461,9 +656,9 @@ public class PrintReadBackedHaplotypes extends IntervalWalker {
         }
 
         if (minReadFractionToReport > 0) {
-            Map<Character[][], Integer> ret = new HashMap<>();
+            Map<ReadBackedHaplotype, Integer> ret = new HashMap<>();
             int totalDropped  = 0;
-            for (Character[][] key : haplotypes.keySet()) {
+            for (ReadBackedHaplotype key : haplotypes.keySet()) {
                 double val = haplotypes.get(key) / (double)totalHaplotypes.get();
                 if (val >= minReadFractionToReport) {
                     ret.put(key, haplotypes.get(key));
@@ -487,9 +682,13 @@ public class PrintReadBackedHaplotypes extends IntervalWalker {
     public void closeTool() {
         super.closeTool();
 
-        if (bamReader != null){
+        if (executor != null && !executor.isTerminated()) {
+            executor.shutdownNow();
+        }
+
+        for (IntervalReader reader : allReaders) {
             try {
-                bamReader.close();
+                reader.bamReader.close();
             }
             catch (IOException e) {
                 //ignore
@@ -497,28 +696,18 @@ public class PrintReadBackedHaplotypes extends IntervalWalker {
         }
     }
 
-    private Map<Integer, TreeSet<Integer>> getInsertionMap(Map<Character[][], Integer> combinedResults)
+    private Map<Integer, TreeSet<Integer>> getInsertionMap(Map<ReadBackedHaplotype, Integer> combinedResults)
     {
         //build list of all insertions that are present
         Map<Integer, TreeSet<Integer>> indels = new HashMap<>();
-        for (Character[][] haplotype : combinedResults.keySet())
+        for (ReadBackedHaplotype haplotype : combinedResults.keySet())
         {
-            for (int idx = 0;idx < haplotype.length;idx++)
+            for (int idx = 0;idx < haplotype.length();idx++)
             {
-                Character[] arr = haplotype[idx];
-                if (arr == null)
+                int insertionLength = haplotype.getInsertionLength(idx);
+                for (int i = 1; i <= insertionLength; i++)
                 {
-                    continue;
-                }
-
-                if (arr.length > 1)
-                {
-                    for (int i = 1; i < arr.length; i++)
-                    {
-                        TreeSet<Integer> l = indels.containsKey(idx) ? indels.get(idx) : new TreeSet<>();
-                        l.add(i);
-                        indels.put(idx, l);
-                    }
+                    indels.computeIfAbsent(idx, x -> new TreeSet<>()).add(i);
                 }
             }
         }
@@ -526,34 +715,34 @@ public class PrintReadBackedHaplotypes extends IntervalWalker {
         return indels;
     }
 
-    private String convertHaplotypeToString(Character[][] haplotype, byte[] refBases, Map<Integer, TreeSet<Integer>> indels)
+    private String convertHaplotypeToString(ReadBackedHaplotype haplotype, byte[] refBases, Map<Integer, TreeSet<Integer>> indels)
     {
         StringBuilder sb = new StringBuilder();
-        for (int idx = 0;idx < haplotype.length;idx++)
+        for (int idx = 0;idx < haplotype.length();idx++)
         {
-            Character[] arr = haplotype[idx];
             char ref = Character.toUpperCase((char)refBases[idx]);
 
-            if (arr == null)
+            if (!haplotype.isCovered(idx))
             {
                 sb.append(':');
             }
-            else if (arr[0] == ref)
+            else if (haplotype.getBase(idx) == ref)
             {
                 sb.append('.');
             }
             else
             {
-                sb.append(arr[0]);
+                sb.append(haplotype.getBase(idx));
             }
 
             if (indels.containsKey(idx))
             {
+                int insertionLength = haplotype.getInsertionLength(idx);
                 for (int insertIdx : indels.get(idx))
                 {
-                    if (arr != null && insertIdx < arr.length)
+                    if (insertIdx <= insertionLength)
                     {
-                        sb.append(arr[insertIdx]);
+                        sb.append(haplotype.getInsertedBase(idx, insertIdx));
                     }
                     else
                     {
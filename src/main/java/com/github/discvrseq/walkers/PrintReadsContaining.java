@@ -2,7 +2,8 @@ package com.github.discvrseq.walkers;
 
 import com.github.discvrseq.tools.DiscvrSeqProgramGroup;
 import com.github.discvrseq.util.CsvUtils;
-import com.github.discvrseq.util.SequenceMatcher;
+import com.github.discvrseq.util.LiteralSetMatcher;
+import com.github.discvrseq.util.MultiPatternMatcher;
 import com.opencsv.ICSVWriter;
 import htsjdk.samtools.fastq.FastqReader;
 import htsjdk.samtools.fastq.FastqRecord;
@@ -20,6 +21,15 @@ import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -86,6 +96,16 @@ import java.util.regex.Pattern;
  *     -O output_R1.fastq.gz \
  *     -O2 output_R2.fastq.gz
  * </pre>
+ * <h4>For large inputs, matching can be spread across threads. Reads are parsed on one thread, matched in batches by a pool of workers, and written in their original order:</h4>
+ * <pre>
+ *  java -jar DISCVRseq.jar PrintReadsContaining \
+ *     -FQ fastq_R1.fastq.gz \
+ *     -FQ2 fastq_R2.fastq.gz \
+ *     -e 'TACG' \
+ *     --threads 8 \
+ *     -O output_R1.fastq.gz \
+ *     -O2 output_R2.fastq.gz
+ * </pre>
  *
  */
 @DocumentedFeature
@@ -134,14 +154,45 @@ public class PrintReadsContaining extends GATKTool {
     @Argument(fullName = "editDistance", shortName = "ed", doc = "If provided, all expressions will be treated as simple strings, and must be ATGC characters.  The tool will scan each motif against the read(s) and report a match if the edit distance is less than or equal to this threshold.", optional = true)
     private int editDistance = 0;
 
+    @Argument(fullName = "threads", doc = "The number of threads to use for matching. If greater than one, a separate thread parses the FASTQ(s) into batches, which are matched by a pool of this many workers, and the matching reads are written in their original order.", optional = true, minValue = 1)
+    private int threads = 1;
+
+    @Argument(fullName = "batch-size", doc = "When running with more than one thread, reads (or read pairs) are grouped into batches of this size. Each batch is matched by a single worker.", optional = true, minValue = 1)
+    private int batchSize = 10000;
+
     private List<SeqPattern> eitherReadPatterns = new ArrayList<>();
     private List<SeqPattern> read1Patterns = new ArrayList<>();
     private List<SeqPattern> read2Patterns = new ArrayList<>();
 
+    // When an edit distance is used, each set of expressions is compiled into a single matcher, so each read is scanned once:
+    private MultiPatternMatcher eitherReadMatcher = null;
+    private MultiPatternMatcher read1Matcher = null;
+    private MultiPatternMatcher read2Matcher = null;
+
+    // Otherwise, plain strings and the literals required by regular expressions are compiled into a single automaton per set of expressions:
+    private LiteralSetMatcher eitherReadLiterals = null;
+    private LiteralSetMatcher read1Literals = null;
+    private LiteralSetMatcher read2Literals = null;
+
+    // Prefilter literals shorter than this are likely to occur in most reads, and are not used:
+    private static final int MIN_PREFILTER_LENGTH = 4;
+
+    private final LongAdder literalScanNanos = new LongAdder();
+
     public class SeqPattern {
         Pattern pattern;
         String name;
 
+        // If true, the expression is a plain string, which is matched using the literal automaton rather than the regex engine:
+        boolean isLiteral = false;
+
+        // The index in the literal automaton of either the expression itself, or a string that any match must contain. -1 if neither applies.
+        int literalIdx = -1;
+
+        final LongAdder regexNanos = new LongAdder();
+        final LongAdder regexEvaluations = new LongAdder();
+        final LongAdder prefilterSkips = new LongAdder();
+
         public SeqPattern(Pattern pattern, String name)
         {
             this.pattern = pattern;
@@ -227,6 +278,61 @@ public class PrintReadsContaining extends GATKTool {
         initializeExpressions(expressions, expressionNames, eitherReadPatterns);
         initializeExpressions(read1Expressions, read1ExpressionNames, read1Patterns);
         initializeExpressions(read2Expressions, read2ExpressionNames, read2Patterns);
+
+        if (editDistance > 0) {
+            eitherReadMatcher = compileMatcher(eitherReadPatterns);
+            read1Matcher = compileMatcher(read1Patterns);
+            read2Matcher = compileMatcher(read2Patterns);
+        }
+        else {
+            eitherReadLiterals = compileLiterals(eitherReadPatterns);
+            read1Literals = compileLiterals(read1Patterns);
+            read2Literals = compileLiterals(read2Patterns);
+        }
+    }
+
+    final Pattern literalMatch = Pattern.compile("^[A-Za-z0-9]+$");
+
+    /**
+     * Plain strings are matched entirely by the automaton. For regular expressions, the automaton finds the longest literal any match must contain,
+     * and the regular expression is only evaluated against reads containing that literal.
+     *
+     * @return The automaton, or null if no expression has a usable literal
+     */
+    @Nullable
+    private LiteralSetMatcher compileLiterals(List<SeqPattern> patterns) {
+        List<String> literals = new ArrayList<>();
+        for (SeqPattern p : patterns) {
+            String expr = p.pattern.pattern();
+            String literal = null;
+            if (literalMatch.matcher(expr).matches()) {
+                literal = expr;
+                p.isLiteral = true;
+            }
+            else {
+                String required = LiteralSetMatcher.getRequiredLiteral(expr);
+                if (required != null && required.length() >= MIN_PREFILTER_LENGTH && required.chars().allMatch(c -> c < 128)) {
+                    literal = required;
+                }
+            }
+
+            if (literal != null) {
+                int idx = literals.indexOf(literal);
+                if (idx == -1) {
+                    idx = literals.size();
+                    literals.add(literal);
+                }
+
+                p.literalIdx = idx;
+                logger.debug("Expression " + p.name + (p.isLiteral ? " will be matched as a literal" : " will be prefiltered using: " + literal));
+            }
+        }
+
+        return literals.isEmpty() ? null : new LiteralSetMatcher(literals);
+    }
+
+    private MultiPatternMatcher compileMatcher(List<SeqPattern> patterns) {
+        return new MultiPatternMatcher(patterns.stream().map(x -> x.pattern.pattern()).toList(), editDistance);
     }
 
     final Pattern ntMatch = Pattern.compile("^[ATGC]+$");
@@ -248,42 +354,93 @@ public class PrintReadsContaining extends GATKTool {
         };
     }
 
+    /**
+     * The number of reads accepted, and the number of reads matching each expression. When running with multiple threads, each batch is counted
+     * separately by the worker that matched it, and these are merged as the batches are written.
+     */
+    private static class MatchCounts {
+        private final Map<String, Long> matchCount = new HashMap<>();
+        private final Map<String, Long> matchCountR1 = new HashMap<>();
+        private final Map<String, Long> matchCountR2 = new HashMap<>();
+        private long written = 0L;
+
+        private void add(SeqPairMatch matches) {
+            written++;
+
+            appendCounts(matchCount, matches, ReadType.Any);
+            appendCounts(matchCountR1, matches, ReadType.Forward);
+            appendCounts(matchCountR2, matches, ReadType.Reverse);
+        }
+
+        private void merge(MatchCounts other) {
+            written += other.written;
+
+            other.matchCount.forEach((x, y) -> matchCount.merge(x, y, Long::sum));
+            other.matchCountR1.forEach((x, y) -> matchCountR1.merge(x, y, Long::sum));
+            other.matchCountR2.forEach((x, y) -> matchCountR2.merge(x, y, Long::sum));
+        }
+    }
+
+    /**
+     * A set of reads (or read pairs) in the order they were read. reads2 is null for single end data.
+     */
+    private static class ReadBatch {
+        private final List<FastqRecord> reads1;
+        private final List<FastqRecord> reads2;
+
+        private ReadBatch(int size, boolean paired) {
+            reads1 = new ArrayList<>(size);
+            reads2 = paired ? new ArrayList<>(size) : null;
+        }
+
+        private int size() {
+            return reads1.size();
+        }
+    }
+
+    // Passed from the reader thread once all reads have been parsed:
+    private static final ReadBatch END_OF_INPUT = new ReadBatch(0, false);
+
+    private static class MatchedBatch {
+        private final ReadBatch batch;
+        private final SeqPairMatch[] matches;
+        private final MatchCounts counts = new MatchCounts();
+
+        private MatchedBatch(ReadBatch batch) {
+            this.batch = batch;
+            this.matches = new SeqPairMatch[batch.size()];
+        }
+    }
+
+    private ExecutorService executor = null;
+
     @Override
     public void traverse() {
         FastqWriterFactory fact = new FastqWriterFactory();
         fact.setUseAsyncIo(true);
 
-        Map<String, Long> matchCount = new HashMap<>();
-        Map<String, Long> matchCountR1 = new HashMap<>();
-        Map<String, Long> matchCountR2 = new HashMap<>();
+        MatchCounts counts = new MatchCounts();
 
         long totalReads = 0L;
-        long written = 0L;
         try (FastqReader reader1 = fileToFastqReader(FASTQ); FastqReader reader2 = FASTQ2 == null ? null : fileToFastqReader(FASTQ2); FastqWriter writer1 = fact.newWriter(outputFile1); FastqWriter writer2 = FASTQ2 == null ? null : fact.newWriter(outputFile2); ICSVWriter csvWriter = SUMMARY_FILE == null ? null : CsvUtils.getTsvWriter(SUMMARY_FILE)) {
             if (csvWriter != null) {
                 csvWriter.writeNext(new String[]{"ReadName", "ReadType", "ExpressionName", "Start", "End", "TotalHitsForPair"});
             }
 
-            while(reader1.hasNext())
-            {
-                FastqRecord fq1 = reader1.next();
-                FastqRecord fq2 = reader2 == null ? null : reader2.next();
-                totalReads++;
-
-                SeqPairMatch matches = findMatches(fq1, fq2);
-                if (matches != null) {
-                    writer1.write(fq1);
-                    if (writer2 != null){
-                        writer2.write(fq2);
-                    }
-                    written++;
-
-                    appendCounts(matchCount, matches, ReadType.Any);
-                    appendCounts(matchCountR1, matches, ReadType.Forward);
-                    appendCounts(matchCountR2, matches, ReadType.Reverse);
-
-                    if (csvWriter != null) {
-                        writeMatchSummary(matches, fq1, fq2, csvWriter);
+            if (threads > 1) {
+                totalReads = traverseMultithreaded(reader1, reader2, writer1, writer2, csvWriter, counts);
+            }
+            else {
+                while(reader1.hasNext())
+                {
+                    FastqRecord fq1 = reader1.next();
+                    FastqRecord fq2 = reader2 == null ? null : reader2.next();
+                    totalReads++;
+
+                    SeqPairMatch matches = findMatches(fq1, fq2);
+                    if (matches != null) {
+                        writeMatch(fq1, fq2, matches, writer1, writer2, csvWriter);
+                        counts.add(matches);
                     }
                 }
             }
@@ -293,14 +450,189 @@ public class PrintReadsContaining extends GATKTool {
         }
 
         logger.info("total reads inspected: " + totalReads);
-        logger.info("total reads accepted: " + written);
+        logger.info("total reads accepted: " + counts.written);
         logger.info("the following counts were identified per expression.  note: each read pair can match multiple expressions, and these values represent the total matches, not total reads that were matched:");
-        for (String name : matchCount.keySet()) {
-            String perBase = " (R1: " + matchCountR1.getOrDefault(name, 0L) + " / R2: " + matchCountR2.getOrDefault(name, 0L) + ")";
-            logger.info(name + ": " + matchCount.get(name) + perBase);
+        for (String name : counts.matchCount.keySet()) {
+            String perBase = " (R1: " + counts.matchCountR1.getOrDefault(name, 0L) + " / R2: " + counts.matchCountR2.getOrDefault(name, 0L) + ")";
+            logger.info(name + ": " + counts.matchCount.get(name) + perBase);
+        }
+
+        logTiming();
+    }
+
+    private void logTiming() {
+        if (editDistance > 0) {
+            return;
+        }
+
+        logger.info("time spent per expression:");
+        if (eitherReadLiterals != null || read1Literals != null || read2Literals != null) {
+            logger.info("literal scan (shared by all literal and prefiltered expressions): " + TimeUnit.NANOSECONDS.toMillis(literalScanNanos.sum()) + " ms");
+        }
+
+        List<SeqPattern> allPatterns = new ArrayList<>(eitherReadPatterns);
+        allPatterns.addAll(read1Patterns);
+        allPatterns.addAll(read2Patterns);
+        for (SeqPattern p : allPatterns) {
+            if (p.isLiteral) {
+                logger.info(p.name + ": matched as a literal");
+            }
+            else {
+                logger.info(p.name + ": " + TimeUnit.NANOSECONDS.toMillis(p.regexNanos.sum()) + " ms over " + p.regexEvaluations.sum() + " regex evaluations" + (p.literalIdx == -1 ? "" : ", " + p.prefilterSkips.sum() + " reads skipped by literal prefilter"));
+            }
         }
     }
 
+    private void writeMatch(FastqRecord fq1, @Nullable FastqRecord fq2, SeqPairMatch matches, FastqWriter writer1, @Nullable FastqWriter writer2, @Nullable ICSVWriter csvWriter) {
+        writer1.write(fq1);
+        if (writer2 != null){
+            writer2.write(fq2);
+        }
+
+        if (csvWriter != null) {
+            writeMatchSummary(matches, fq1, fq2, csvWriter);
+        }
+    }
+
+    /**
+     * Runs parsing, matching and writing as a pipeline. A reader thread parses the FASTQ(s) into batches, which are handed to the worker pool in order.
+     * This thread writes each batch once matched, oldest first, so the output order matches the input. The number of batches held in memory is bounded.
+     *
+     * @return The total reads inspected
+     */
+    private long traverseMultithreaded(FastqReader reader1, @Nullable FastqReader reader2, FastqWriter writer1, @Nullable FastqWriter writer2, @Nullable ICSVWriter csvWriter, MatchCounts counts) {
+        logger.info("Matching reads using " + threads + " threads");
+        executor = Executors.newFixedThreadPool(threads);
+
+        final BlockingQueue<ReadBatch> parsedBatches = new ArrayBlockingQueue<>(threads * 2);
+        final AtomicReference<Throwable> readerError = new AtomicReference<>();
+        Thread readerThread = new Thread(() -> {
+            try {
+                ReadBatch batch = new ReadBatch(batchSize, reader2 != null);
+                while (reader1.hasNext()) {
+                    batch.reads1.add(reader1.next());
+                    if (reader2 != null) {
+                        batch.reads2.add(reader2.next());
+                    }
+
+                    if (batch.size() >= batchSize) {
+                        parsedBatches.put(batch);
+                        batch = new ReadBatch(batchSize, reader2 != null);
+                    }
+                }
+
+                if (batch.size() > 0) {
+                    parsedBatches.put(batch);
+                }
+            }
+            catch (InterruptedException e) {
+                // The traversal was aborted, so there is no need to signal the end of input
+                return;
+            }
+            catch (Throwable e) {
+                readerError.set(e);
+            }
+
+            try {
+                parsedBatches.put(END_OF_INPUT);
+            }
+            catch (InterruptedException e) {
+                // Ignore
+            }
+        }, "PrintReadsContaining-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+
+        long totalReads = 0L;
+        Deque<Future<MatchedBatch>> pendingBatches = new ArrayDeque<>();
+        try {
+            while (true) {
+                ReadBatch batch = parsedBatches.take();
+                if (batch == END_OF_INPUT) {
+                    break;
+                }
+
+                totalReads += batch.size();
+                pendingBatches.add(executor.submit(() -> matchBatch(batch)));
+
+                while (pendingBatches.size() > threads * 2) {
+                    writeBatch(pendingBatches.poll(), writer1, writer2, csvWriter, counts);
+                }
+            }
+
+            while (!pendingBatches.isEmpty()) {
+                writeBatch(pendingBatches.poll(), writer1, writer2, csvWriter, counts);
+            }
+        }
+        catch (InterruptedException e) {
+            throw new GATKException("Interrupted while waiting for reads", e);
+        }
+        finally {
+            readerThread.interrupt();
+            try {
+                readerThread.join();
+            }
+            catch (InterruptedException e) {
+                // Ignore
+            }
+        }
+
+        Throwable e = readerError.get();
+        if (e != null) {
+            if (e instanceof GATKException ge) {
+                throw ge;
+            }
+
+            throw new GATKException("Error reading FASTQ: " + e.getMessage(), e);
+        }
+
+        return totalReads;
+    }
+
+    private MatchedBatch matchBatch(ReadBatch batch) {
+        MatchedBatch ret = new MatchedBatch(batch);
+        for (int i = 0; i < batch.size(); i++) {
+            SeqPairMatch matches = findMatches(batch.reads1.get(i), batch.reads2 == null ? null : batch.reads2.get(i));
+            if (matches != null) {
+                ret.matches[i] = matches;
+                ret.counts.add(matches);
+            }
+        }
+
+        return ret;
+    }
+
+    private void writeBatch(Future<MatchedBatch> future, FastqWriter writer1, @Nullable FastqWriter writer2, @Nullable ICSVWriter csvWriter, MatchCounts counts) {
+        MatchedBatch matched;
+        try {
+            matched = future.get();
+        }
+        catch (InterruptedException | ExecutionException e) {
+            if (e.getCause() instanceof GATKException ge) {
+                throw ge;
+            }
+
+            throw new GATKException("Error matching reads", e);
+        }
+
+        for (int i = 0; i < matched.matches.length; i++) {
+            if (matched.matches[i] != null) {
+                writeMatch(matched.batch.reads1.get(i), matched.batch.reads2 == null ? null : matched.batch.reads2.get(i), matched.matches[i], writer1, writer2, csvWriter);
+            }
+        }
+
+        counts.merge(matched.counts);
+    }
+
+    @Override
+    public void closeTool() {
+        if (executor != null && !executor.isTerminated()) {
+            executor.shutdownNow();
+        }
+
+        super.closeTool();
+    }
+
     private void writeMatchSummary(SeqPairMatch matches, FastqRecord fq1, FastqRecord fq2, ICSVWriter csvWriter) {
         for (SeqMatch m : matches.matches) {
             String readType = m.rt.name();
@@ -312,7 +644,7 @@ public class PrintReadsContaining extends GATKTool {
         return new FastqReader(file, true);
     }
 
-    private void appendCounts(Map<String, Long> counts, SeqPairMatch match, ReadType rt) {
+    private static void appendCounts(Map<String, Long> counts, SeqPairMatch match, ReadType rt) {
         for (String name : match.getUniqueHitNames(rt)){
             long val = counts.getOrDefault(name, 0L);
             val++;
@@ -324,7 +656,7 @@ public class PrintReadsContaining extends GATKTool {
         Set<SeqMatch> matches = new HashSet<>();
 
         if (!eitherReadPatterns.isEmpty()) {
-            List<SeqMatch> matchesPair = inspect(eitherReadPatterns, read1, read2);
+            List<SeqMatch> matchesPair = inspect(eitherReadPatterns, eitherReadMatcher, eitherReadLiterals, read1, read2);
             if (!isPassing(matchesPair, eitherReadPatterns)) {
                 //NOTE: even if this fails, we might want to inspect the other expressions:
                 if (matchAllExpressions) {
@@ -337,7 +669,7 @@ public class PrintReadsContaining extends GATKTool {
         }
 
         if (!read1Patterns.isEmpty()) {
-            List<SeqMatch> matches1 = inspect(read1Patterns, read1, null);
+            List<SeqMatch> matches1 = inspect(read1Patterns, read1Matcher, read1Literals, read1, null);
             if (!isPassing(matches1, read1Patterns)) {
                 if (matchAllExpressions) {
                     return null;
@@ -353,7 +685,7 @@ public class PrintReadsContaining extends GATKTool {
                 throw new UserException.BadInput("Specified read2 expressions, but read2 not found");
             }
             else {
-                List<SeqMatch> matches2 = inspect(read2Patterns, null, read2);
+                List<SeqMatch> matches2 = inspect(read2Patterns, read2Matcher, read2Literals, null, read2);
                 if (!isPassing(matches2, read2Patterns)) {
                     if (matchAllExpressions) {
                         return null;
@@ -372,42 +704,71 @@ public class PrintReadsContaining extends GATKTool {
         return matchAllExpressions ? matches.size() == expressions.size() : !matches.isEmpty();
     }
 
-    private List<SeqMatch> inspect(List<SeqPattern> exprs, @Nullable FastqRecord read1, @Nullable FastqRecord read2) {
+    private List<SeqMatch> inspect(List<SeqPattern> exprs, @Nullable MultiPatternMatcher matcher, @Nullable LiteralSetMatcher literals, @Nullable FastqRecord read1, @Nullable FastqRecord read2) {
         List<SeqMatch> matching = new ArrayList<>();
+        if (matcher != null) {
+            int[] hits1 = read1 == null ? null : matcher.findFirst(read1.getReadString());
+            int[] hits2 = read2 == null ? null : matcher.findFirst(read2.getReadString());
+            for (int i = 0; i < exprs.size(); i++) {
+                SeqPattern expr = exprs.get(i);
+                if (hits1 != null && hits1[i] > -1)
+                    matching.add(new SeqMatch(hits1[i], expr.pattern.pattern().length(), expr.name, ReadType.Forward));
+
+                if (hits2 != null && hits2[i] > -1)
+                    matching.add(new SeqMatch(hits2[i], expr.pattern.pattern().length(), expr.name, ReadType.Reverse));
+            }
+
+            return matching;
+        }
+
+        int[] literalHits1 = literals == null || read1 == null ? null : scanLiterals(literals, read1);
+        int[] literalHits2 = literals == null || read2 == null ? null : scanLiterals(literals, read2);
         for (SeqPattern expr : exprs) {
             if (read1 != null)
-                inspectRead(expr, read1, ReadType.Forward, matching);
+                inspectRead(expr, read1, literalHits1, ReadType.Forward, matching);
 
             if (read2 != null)
-                inspectRead(expr, read2, ReadType.Reverse, matching);
+                inspectRead(expr, read2, literalHits2, ReadType.Reverse, matching);
         }
 
         return matching;
     }
 
-    private void inspectRead(SeqPattern expr, FastqRecord read, ReadType rt, List<SeqMatch> matching) {
-        if (editDistance > 0) {
-            SeqMatch match = fuzzyMatch(expr.pattern.pattern(), read, expr, rt);
-            if (match != null) {
-                matching.add(match);
+    private int[] scanLiterals(LiteralSetMatcher literals, FastqRecord read) {
+        long start = System.nanoTime();
+        int[] hits = literals.findFirst(read.getReadString());
+        literalScanNanos.add(System.nanoTime() - start);
+
+        return hits;
+    }
+
+    private void inspectRead(SeqPattern expr, FastqRecord read, @Nullable int[] literalHits, ReadType rt, List<SeqMatch> matching) {
+        if (literalHits != null && expr.literalIdx > -1) {
+            int start = literalHits[expr.literalIdx];
+            if (expr.isLiteral) {
+                if (start > -1) {
+                    matching.add(new SeqMatch(start, start + expr.pattern.pattern().length(), expr.name, rt));
+                }
+
+                return;
             }
-        }
-        else {
-            Matcher m = expr.pattern.matcher(read.getReadString());
-            if (m.find()) {
-                matching.add(new SeqMatch(m, expr.name, rt));
-                //break;  //NOTE: inspect both reads in case we have more than one hit
+            else if (start == -1) {
+                // The read lacks a literal any match must contain:
+                expr.prefilterSkips.increment();
+                return;
             }
         }
-    }
 
-    private SeqMatch fuzzyMatch(String query, FastqRecord read, SeqPattern expr, ReadType rt) {
-        Integer match = SequenceMatcher.fuzzyMatch(query, read.getReadString().toUpperCase(), editDistance);
-        if (match != null) {
-            return new PrintReadsContaining.SeqMatch(match, query.length(), expr.name, rt);
-        }
+        long start = System.nanoTime();
+        Matcher m = expr.pattern.matcher(read.getReadString());
+        boolean found = m.find();
+        expr.regexNanos.add(System.nanoTime() - start);
+        expr.regexEvaluations.increment();
 
-        return null;
+        if (found) {
+            matching.add(new SeqMatch(m, expr.name, rt));
+            //break;  //NOTE: inspect both reads in case we have more than one hit
+        }
     }
 
     private static enum ReadType {
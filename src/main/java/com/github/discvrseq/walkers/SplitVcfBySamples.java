@@ -9,6 +9,8 @@ import com.opencsv.RFC4180ParserBuilder;
 import com.opencsv.exceptions.CsvValidationException;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.variant.variantcontext.*;
+import htsjdk.variant.variantcontext.writer.AsyncVariantContextWriter;
+import htsjdk.variant.variantcontext.writer.Options;
 import htsjdk.variant.variantcontext.writer.VariantContextWriter;
 import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
 import htsjdk.variant.vcf.*;
@@ -36,6 +38,9 @@ import java.util.stream.Collectors;
  * This takes an input VCF and subsets it into new VCFs where each contains a subset of the original samples. You can either provide samplesPerVcf, in which case it will be subset based on # of samples, or you can provide a
  * TSV file listing the output VCF and sample(s) to add to each.
  *
+ * The input VCF is read once. By default, each output VCF is encoded and compressed on its own thread, fed by a bounded queue, so that writing many outputs
+ * does not serialize on the thread reading the input.
+ *
  * <h3>Usage example:</h3>
  * <pre>
  *  java -jar DISCVRseq.jar SplitVcfBySample \
@@ -86,9 +91,21 @@ public class SplitVcfBySamples extends VariantWalker {
     @Argument(fullName="original-ac-suffix", doc="If --keep-original-ac is selected, the original AC, AF, and AN values will be stored, but with this suffix (e.g., a suffix of .Orig would result in AF -> AF.Orig)", optional=true)
     public String originalChrCountsSuffix = ".Orig";
 
+    @Argument(fullName="use-async-writers", doc="If true, each output VCF is encoded and compressed on its own thread, which receives variants through a bounded queue. Otherwise, all outputs are written on the thread reading the input VCF.", optional=true)
+    public boolean useAsyncWriters = true;
+
+    @Argument(fullName="writer-queue-size", doc="When using async writers, the number of variants that can be queued for each output VCF", optional=true, minValue = 1)
+    public int writerQueueSize = AsyncVariantContextWriter.DEFAULT_QUEUE_SIZE;
+
     List<List<String>> batches = new ArrayList<>();
     List<VariantContextWriter> writers = new ArrayList<>();
 
+    // These are computed once per batch, rather than per site. The indexes are the positions of the batch's samples in the input VCF:
+    private final List<SortedSet<String>> batchSampleSets = new ArrayList<>();
+    private final List<int[]> batchSampleIndexes = new ArrayList<>();
+    private int totalInputSamples;
+    private boolean anyBatchHasAllSamples = false;
+
     @Override
     public void onTraversalStart() {
         Utils.nonNull(outFile);
@@ -109,6 +126,28 @@ public class SplitVcfBySamples extends VariantWalker {
         {
             prepareOutputsForBatches(samples, header);
         }
+
+        totalInputSamples = samples.size();
+        Map<String, Integer> sampleToIndex = new HashMap<>();
+        for (int i = 0; i < samples.size(); i++) {
+            sampleToIndex.put(samples.get(i), i);
+        }
+
+        for (List<String> batch : batches) {
+            SortedSet<String> sampleSet = new TreeSet<>(batch);
+            batchSampleSets.add(sampleSet);
+            batchSampleIndexes.add(sampleSet.stream().mapToInt(sampleToIndex::get).sorted().toArray());
+            if (sampleSet.size() == totalInputSamples) {
+                anyBatchHasAllSamples = true;
+            }
+        }
+    }
+
+    private VariantContextWriter createWriter(File outputFile) {
+        // The async wrapper is applied here, rather than using the builder's default, so the queue size can be set:
+        VariantContextWriter writer = new VariantContextWriterBuilder().setOutputFile(outputFile).setReferenceDictionary(getReferenceDictionary()).unsetOption(Options.USE_ASYNC_IO).build();
+
+        return useAsyncWriters ? new AsyncVariantContextWriter(writer, writerQueueSize) : writer;
     }
 
     private void prepareOutputsForSampleFile(List<String> samples, VCFHeader header) {
@@ -143,7 +182,7 @@ public class SplitVcfBySamples extends VariantWalker {
         }
 
         for (File outputFile : fileToSamples.keySet()) {
-            VariantContextWriter writer = new VariantContextWriterBuilder().setOutputFile(outputFile).setReferenceDictionary(getReferenceDictionary()).build();
+            VariantContextWriter writer = createWriter(outputFile);
             writers.add(writer);
             batches.add(new UnmodifiableList<>(fileToSamples.get(outputFile).stream().toList()));
 
@@ -215,7 +254,7 @@ public class SplitVcfBySamples extends VariantWalker {
             name = FilenameUtils.getBaseName(name);
 
             File output = new File(outFile.toPath().toFile(), name + "." + idx + "of" + batches.size() + ".vcf" + (isGz ? ".gz" : ""));
-            VariantContextWriter writer = new VariantContextWriterBuilder().setOutputFile(output).setReferenceDictionary(getReferenceDictionary()).build();
+            VariantContextWriter writer = createWriter(output);
             writers.add(writer);
 
             VCFHeader outputHeader = new VCFHeader(getHeaderLines(header), new ArrayList<>(batch));
@@ -225,12 +264,17 @@ public class SplitVcfBySamples extends VariantWalker {
 
     @Override
     public void apply(VariantContext variant, ReadsContext readsContext, ReferenceContext referenceContext, FeatureContext featureContext) {
-        int idx = 0;
-        for (List<String> sampleNames : batches) {
+        if (useAsyncWriters && anyBatchHasAllSamples) {
+            // The input variant will be written as-is on a writer thread, while this thread continues to read it. Genotypes are decoded and indexed lazily,
+            // which is not thread-safe, so force this here:
+            variant.getGenotypes().getSampleNames();
+            variant.getGenotypes().getSampleNamesOrderedByName();
+        }
+
+        for (int idx = 0; idx < batches.size(); idx++) {
             final VariantContextWriter writer = writers.get(idx);
-            idx++;
 
-            final VariantContext sub = subsetGenotypesBySampleNames(variant, new TreeSet<>(sampleNames), removeUnusedAlternates);
+            final VariantContext sub = subsetGenotypesBySampleNames(variant, batchSampleSets.get(idx), batchSampleIndexes.get(idx), removeUnusedAlternates);
             if (discardNonVariantSites) {
                 if (sub.getCalledChrCount() == 0) {
                     continue;
@@ -245,14 +289,20 @@ public class SplitVcfBySamples extends VariantWalker {
     }
 
     // NOTE: this is basically copied from SelectVariants. This is necessary to ensure we also subset INFO fields correctly
-    private VariantContext subsetGenotypesBySampleNames(final VariantContext vc, final SortedSet<String> samples, final boolean removeUnusedAlternates) {
+    private VariantContext subsetGenotypesBySampleNames(final VariantContext vc, final SortedSet<String> samples, final int[] sampleIndexes, final boolean removeUnusedAlternates) {
         // If no subsetting of samples or alleles happened, exit now
         if (!removeUnusedAlternates && samples.size() == vc.getNSamples()) {
             return vc;
         }
 
-        // strip out the alternate alleles that aren't being used
-        final VariantContext sub = vc.subContextFromSamples(samples, removeUnusedAlternates);
+        // strip out the alternate alleles that aren't being used. Unless alleles are removed, the genotypes can be selected by index rather than by name:
+        final VariantContext sub;
+        if (!removeUnusedAlternates && vc.getNSamples() == totalInputSamples) {
+            sub = new VariantContextBuilder(vc).genotypes(subsetGenotypes(vc.getGenotypes(), sampleIndexes)).make();
+        }
+        else {
+            sub = vc.subContextFromSamples(samples, removeUnusedAlternates);
+        }
 
         GenotypesContext newGC;
         if (sub.getNAlleles() != vc.getNAlleles()) {
@@ -293,6 +343,15 @@ public class SplitVcfBySamples extends VariantWalker {
         return removeUnusedAlternates ? GATKVariantContextUtils.trimAlleles(subset,true,true) : subset;
     }
 
+    private GenotypesContext subsetGenotypes(final GenotypesContext genotypes, final int[] sampleIndexes) {
+        final ArrayList<Genotype> ret = new ArrayList<>(sampleIndexes.length);
+        for (int idx : sampleIndexes) {
+            ret.add(genotypes.get(idx));
+        }
+
+        return GenotypesContext.create(ret);
+    }
+
     private void addAnnotations(final VariantContextBuilder builder, final VariantContext originalVC, final Set<String> selectedSampleNames) {
         if (recalculateChrCounts && keepOriginalChrCounts) {
             final int[] indexOfOriginalAlleleForNewAllele;
@@ -374,6 +433,19 @@ public class SplitVcfBySamples extends VariantWalker {
         return Arrays.stream(oldToNewIndexOrdering).mapToObj(index -> tokens[index]).collect(Collectors.toList());
     }
 
+    @Override
+    public Object onTraversalSuccess() {
+        // Close the writers here, rather than in closeTool(), so that an error on an async writer thread fails the tool:
+        Iterator<VariantContextWriter> it = writers.iterator();
+        while (it.hasNext()) {
+            VariantContextWriter writer = it.next();
+            it.remove();
+            writer.close();
+        }
+
+        return super.onTraversalSuccess();
+    }
+
     @Override
     public void closeTool() {
         super.closeTool();
@@ -2,9 +2,9 @@ package com.github.discvrseq.walkers;
 
 import com.github.discvrseq.tools.VariantManipulationProgramGroup;
 import com.github.discvrseq.util.CsvUtils;
+import com.github.discvrseq.util.SiteGenotypeEncoder;
 import com.opencsv.ICSVWriter;
 import htsjdk.samtools.util.IOUtil;
-import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.variantcontext.VariantContextBuilder;
 import htsjdk.variant.variantcontext.writer.VariantContextWriter;
@@ -86,6 +86,23 @@ public class VcfComparison extends ExtendedMultiVariantWalkerGroupedOnStart {
 
         novelSitesWriter = initializeVcfWriter(getVcfComparisonArgumentCollection().novelSitesVcf, getDrivingVariantsFeatureInputs().get(0));
         missingSitesWriter = initializeVcfWriter(getVcfComparisonArgumentCollection().missingSitesVcf, getVcfComparisonArgumentCollection().refVariants);
+
+        // Align the samples of the two VCFs once, so genotypes can be compared by index at each site:
+        samples = ((VCFHeader) getHeaderForFeatures(getDrivingVariantsFeatureInputs().get(0))).getGenotypeSamples();
+        refSamples = ((VCFHeader) getHeaderForFeatures(getVcfComparisonArgumentCollection().refVariants)).getGenotypeSamples();
+
+        Map<String, Integer> refSampleIndexes = new HashMap<>();
+        for (int i = 0; i < refSamples.size(); i++) {
+            refSampleIndexes.put(refSamples.get(i), i);
+        }
+
+        refSampleIndex = new int[samples.size()];
+        for (int i = 0; i < samples.size(); i++) {
+            refSampleIndex[i] = refSampleIndexes.getOrDefault(samples.get(i), -1);
+        }
+
+        sampleCodes = new int[samples.size()];
+        discordantGenotypesBySample = new long[samples.size()];
     }
 
     private static final String INCLUSION_REASON = "IR";
@@ -146,6 +163,18 @@ public class VcfComparison extends ExtendedMultiVariantWalkerGroupedOnStart {
     private int sampleFilteredNotRef = 0;
     private int discordantGenotypes = 0;
 
+    private List<String> samples;
+    private List<String> refSamples;
+
+    // For each sample of the input VCF, the index of that sample in the reference VCF, or -1 if absent:
+    private int[] refSampleIndex;
+
+    private final SiteGenotypeEncoder encoder = new SiteGenotypeEncoder();
+    private int[] sampleCodes;
+    private final List<int[]> refCodes = new ArrayList<>();
+
+    private long[] discordantGenotypesBySample;
+
     @Override
     public void apply(List<VariantContext> variantContexts, ReferenceContext referenceContext, List<ReadsContext> readsContexts) {
         Map<FeatureInput<VariantContext>, List<VariantContext>> variants = groupVariantsByFeatureInput(variantContexts);
@@ -190,30 +219,43 @@ public class VcfComparison extends ExtendedMultiVariantWalkerGroupedOnStart {
             return;
         }
 
+        // Genotypes from every record at this site share one encoding, so each reference record is encoded once:
+        encoder.reset();
+        for (int r = 0; r < refVariants.size(); r++) {
+            if (refCodes.size() == r) {
+                refCodes.add(new int[refSamples.size()]);
+            }
+
+            if (!refVariants.get(r).isFiltered()) {
+                encoder.encode(refVariants.get(r), refSamples, refCodes.get(r));
+            }
+        }
+
         for (VariantContext vc : sampleVariants) {
             if (vc.isFiltered()) {
                 continue;
             }
 
             int discordantGenotypesForSite = 0;
-            for (String sn : vc.getSampleNames()) {
-                Genotype g = vc.getGenotype(sn);
-                if (g.isFiltered() || g.isNoCall()) {
-                    continue;
-                }
-
-                for (VariantContext refVc : refVariants) {
-                    if (refVc.isFiltered() || !refVc.hasGenotype(sn)) {
+            if (encoder.encode(vc, samples, sampleCodes)) {
+                for (int r = 0; r < refVariants.size(); r++) {
+                    if (refVariants.get(r).isFiltered()) {
                         continue;
                     }
 
-                    Genotype rg = refVc.getGenotype(sn);
-                    if (rg == null || rg.isFiltered() || rg.isNoCall()) {
-                        continue;
-                    }
-
-                    if (!rg.sameGenotype(g)) {
-                        discordantGenotypesForSite++;
+                    int[] codes = refCodes.get(r);
+                    for (int i = 0; i < sampleCodes.length; i++) {
+                        int code = sampleCodes[i];
+                        int refIdx = refSampleIndex[i];
+                        if (code == SiteGenotypeEncoder.NOT_CALLED || refIdx == -1) {
+                            continue;
+                        }
+
+                        int refCode = codes[refIdx];
+                        if (refCode != SiteGenotypeEncoder.NOT_CALLED && refCode != code) {
+                            discordantGenotypesForSite++;
+                            discordantGenotypesBySample[i]++;
+                        }
                     }
                 }
             }
@@ -250,6 +292,11 @@ public class VcfComparison extends ExtendedMultiVariantWalkerGroupedOnStart {
             writer.writeNext(new String[]{"RefFilteredNotSample", String.valueOf(refFilteredNotSample)});
             writer.writeNext(new String[]{"SampleFilteredNotRef", String.valueOf(sampleFilteredNotRef)});
             writer.writeNext(new String[]{"DiscordantGenotypes", String.valueOf(discordantGenotypes)});
+
+            // The number of genotypes of each sample discordant with the reference, summed across sites:
+            for (int i = 0; i < samples.size(); i++) {
+                writer.writeNext(new String[]{"DiscordantGenotypes:" + samples.get(i), String.valueOf(discordantGenotypesBySample[i])});
+            }
         }
         catch (IOException e) {
             throw new GATKException(e.getMessage(), e);
@@ -2,22 +2,37 @@ package com.github.discvrseq.walkers;
 
 import com.github.discvrseq.tools.DiscvrSeqProgramGroup;
 import com.github.discvrseq.util.CsvUtils;
+import com.github.discvrseq.util.HeavyHitters;
+import com.github.discvrseq.util.HyperLogLog;
+import com.github.discvrseq.util.QuantileSketch;
 import com.opencsv.ICSVWriter;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.util.OverlapDetector;
 import htsjdk.variant.variantcontext.Allele;
 import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypesContext;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.vcf.*;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.*;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FilterMergePolicy;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.MergeTrigger;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
+import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.NumericUtils;
@@ -27,14 +42,19 @@ import org.broadinstitute.barclay.help.DocumentedFeature;
 import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
 import org.broadinstitute.hellbender.engine.*;
 import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.io.IOUtils;
 
 import javax.annotation.Nullable;
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.Callable;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
@@ -49,6 +69,31 @@ import java.util.stream.Collectors;
  *     -O /directory/for/output/
  *     -IF AF
  * </pre>
+ *
+ * <h3>Updating an existing index:</h3>
+ * With --update-existing-index, the output must be an existing index. Any documents in the regions being processed (either the -L intervals, or
+ * each contig present in the input VCF) are deleted and replaced by the sites from the input VCF. Each run records the input VCF's size and
+ * last-modified time, the indexed fields and the intervals in the index's commit data, and if these are unchanged from a prior run, indexing is skipped.
+ * The input is not checksummed, so a VCF rewritten in place with the same size and modification time would be treated as unchanged.
+ * <pre>
+ *  java -jar DISCVRseq.jar VcfToLuceneIndexer
+ *     -V chr1Reannotated.vcf.gz \
+ *     -O /directory/for/output/
+ *     -IF AF
+ *     -L chr1
+ *     --update-existing-index
+ * </pre>
+ *
+ * <h3>Sharded indexing:</h3>
+ * With --shard-by-contig, rather than walking the VCF linearly, each contig (or each -L interval) is queried independently and indexed
+ * into a temporary index, using up to --threads shards in parallel. These are then merged into the final index. Larger contigs can be split
+ * into smaller shards using --shard-size. This requires an indexed VCF. Each site is indexed by the shard containing its start position.
+ *
+ * <h3>Bulk indexing:</h3>
+ * The --index-profile BULK option tunes the IndexWriter for large, one-time loads: a large RAM buffer (--ram-buffer-mb), no compound files,
+ * and merges are deferred until indexing is complete, after which the index is force-merged to --max-segments. In this profile, the
+ * --keyword-field fields are indexed as a single lowercased term rather than being tokenized. Queries against these fields should therefore
+ * not tokenize the query text.
  */
 @DocumentedFeature
 @CommandLineProgramProperties(
@@ -59,10 +104,14 @@ import java.util.stream.Collectors;
 public class VcfToLuceneIndexer extends VariantWalker {
     public static final int MAX_VALUES_TO_PRINT = 200;
 
+    public static final int TOP_VALUES_TO_PRINT = 10;
+
+    private static final double[] QUANTILES_TO_PRINT = new double[]{0.05, 0.25, 0.5, 0.75, 0.95};
+
     @Argument(fullName = StandardArgumentDefinitions.OUTPUT_LONG_NAME, shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME, doc = "Output file (if not provided, defaults to STDOUT)", optional = true)
     GATKPath outDir;
 
-    @Argument(fullName = "index-stats", doc = "A file where a TSV of summary information about each indexed field will be written, including min/max value and a list of unique values", optional = true)
+    @Argument(fullName = "index-stats", doc = "A file where a TSV of summary information about each indexed field will be written. For numeric fields this includes the min/max and approximate quantiles. For string fields this includes the approximate number of distinct values, the most frequent values, and a list of unique values if there are fewer than " + MAX_VALUES_TO_PRINT, optional = true)
     GATKPath indexStatsPath;
 
     @Argument(doc="Info fields to index", fullName = "info-field", shortName = "IF", optional = true)
@@ -71,9 +120,38 @@ public class VcfToLuceneIndexer extends VariantWalker {
     @Argument(fullName = "threads", doc="The number of threads to use.", optional=true)
     public int threads = 1;
 
+    @Argument(fullName = "batch-size", doc="When running with more than one thread, variants are grouped into batches of this size. Each batch is converted into lucene documents and written to the index by a single worker.", optional=true, minValue = 1)
+    public int batchSize = 500;
+
     @Argument(fullName = "allow-missing-fields", doc="If true, the tool will warn, rather than fail, if a non-existent --info-field is requested.", optional=true)
     public boolean allowMissingFields = false;
 
+    @Argument(fullName = "shard-by-contig", doc="If true, each contig (or interval) will be queried and indexed independently, using up to --threads shards in parallel, and the results merged into the final index. The input VCF must be indexed.", optional=true)
+    public boolean shardByContig = false;
+
+    @Argument(fullName = "shard-size", doc="When --shard-by-contig is used, contigs or intervals larger than this many bp will be split into multiple shards. If zero, each contig/interval is one shard.", optional=true, minValue = 0)
+    public int shardSize = 0;
+
+    @Argument(fullName = "index-profile", doc="The IndexWriter tuning profile. BULK uses a large RAM buffer, no compound files, and defers merging until indexing is complete.", optional=true)
+    public IndexProfile indexProfile = IndexProfile.DEFAULT;
+
+    @Argument(fullName = "ram-buffer-mb", doc="When --index-profile is BULK, the IndexWriter RAM buffer in MB. When --shard-by-contig is used, this is divided between the concurrent shards.", optional=true, minValue = 1)
+    public double ramBufferMb = 1024;
+
+    @Argument(fullName = "max-segments", doc="When --index-profile is BULK, the index will be force-merged to at most this many segments after indexing.", optional=true, minValue = 1)
+    public int maxSegments = 1;
+
+    @Argument(fullName = "keyword-field", doc="When --index-profile is BULK, these fields will be indexed as a single lowercased term rather than being tokenized.", optional=true)
+    public List<String> keywordFields = new ArrayList<>(Arrays.asList("contig", "ref", "alt", "variableSamples", "homozygousVarSamples"));
+
+    public enum IndexProfile {
+        DEFAULT,
+        BULK
+    }
+
+    @Argument(fullName = "update-existing-index", doc="If true, the output must be an existing index. Documents in the regions being processed (the -L intervals if provided, otherwise each contig present in the VCF) will be deleted and replaced with the sites from this VCF. If this VCF (judged by its size and last-modified time) was already indexed with the same fields and intervals, indexing will be skipped.", optional=true)
+    public boolean updateExistingIndex = false;
+
     @Argument(fullName= "validation-stringency", doc = "The level of validation, either LENIENT or STRICT", common = true, optional = true)
     protected ValidationStringency stringency = ValidationStringency.STRICT;
 
@@ -90,9 +168,27 @@ public class VcfToLuceneIndexer extends VariantWalker {
         return true;
     }
 
+    private Set<String> keywordFieldSet = Collections.emptySet();
+
+    private final AtomicLong docsIndexed = new AtomicLong(0);
+
+    private final AtomicLong flushCount = new AtomicLong(0);
+
+    private final AtomicLong mergeCount = new AtomicLong(0);
+
+    private final AtomicLong mergeNanos = new AtomicLong(0);
+
+    private long startTime;
+
+    private DeferrableMergePolicy mergePolicy = null;
+
     @Override
     public void onTraversalStart() {
+        startTime = System.nanoTime();
         analyzer = new StandardAnalyzer();
+        if (indexProfile == IndexProfile.BULK) {
+            keywordFieldSet = new HashSet<>(keywordFields);
+        }
 
         try {
             index = FSDirectory.open(outDir.toPath());
@@ -101,11 +197,18 @@ public class VcfToLuceneIndexer extends VariantWalker {
             throw new GATKException(e.getMessage(), e);
         }
 
-        IndexWriterConfig config = new IndexWriterConfig(analyzer);
-        config.setIndexSort(new Sort(new SortField("genomicPosition_sort", SortField.Type.LONG, false)));
+        if (updateExistingIndex) {
+            try {
+                if (!DirectoryReader.indexExists(index)) {
+                    throw new UserException.BadInput("--update-existing-index was used, but there is no existing index in: " + outDir.toPath());
+                }
+            } catch (IOException e) {
+                throw new GATKException(e.getMessage(), e);
+            }
+        }
 
         try {
-            writer = new IndexWriter(index, config);
+            writer = new IndexWriter(index, createIndexWriterConfig());
         } catch (IOException e) {
             throw new GATKException(e.getMessage(), e);
         }
@@ -131,8 +234,10 @@ public class VcfToLuceneIndexer extends VariantWalker {
             logger.warn("The following fields were requested but not present: " + StringUtils.join(missing, ","));
         }
 
-        if (threads > 1) {
-            executor = Executors.newScheduledThreadPool(threads);
+        if (threads > 1 && !shardByContig) {
+            // The traversal thread fills batches and hands them to the workers. The queue is bounded, so if the workers
+            // fall behind the traversal thread will process the next batch itself rather than buffering the VCF in memory:
+            executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(threads * 2), new ThreadPoolExecutor.CallerRunsPolicy());
         }
 
         // populate map. Add the length of each prior contig:
@@ -148,9 +253,170 @@ public class VcfToLuceneIndexer extends VariantWalker {
             }
             genomicPositionMap.put(sr1.getSequenceName(), offset);
         }
+
+        manifestEntry = getManifestEntry();
+        if (updateExistingIndex) {
+            prepareIndexUpdate();
+        }
+    }
+
+    private IndexWriterConfig createIndexWriterConfig() {
+        return createIndexWriterConfig(false);
+    }
+
+    private IndexWriterConfig createIndexWriterConfig(boolean isShard) {
+        IndexWriterConfig config = new IndexWriterConfig(analyzer);
+        config.setIndexSort(new Sort(new SortField("genomicPosition_sort", SortField.Type.LONG, false)));
+        config.setMergeScheduler(new TimedMergeScheduler());
+
+        DeferrableMergePolicy policy = new DeferrableMergePolicy(new TieredMergePolicy());
+        if (indexProfile == IndexProfile.BULK) {
+            config.setRAMBufferSizeMB(isShard ? Math.max(IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB, ramBufferMb / threads) : ramBufferMb);
+            config.setUseCompoundFile(false);
+            policy.setNoCFSRatio(0.0);
+
+            // Shards are merged when they are added to the final index, so there is no need to merge them first:
+            policy.deferMerges = true;
+        }
+        config.setMergePolicy(policy);
+
+        if (!isShard) {
+            mergePolicy = policy;
+        }
+
+        return config;
     }
 
-    private ScheduledExecutorService executor = null;
+    /**
+     * Wraps a MergePolicy, allowing natural merges to be suspended while bulk loading. This also counts segment flushes.
+     */
+    private class DeferrableMergePolicy extends FilterMergePolicy {
+        private volatile boolean deferMerges = false;
+
+        public DeferrableMergePolicy(MergePolicy in) {
+            super(in);
+        }
+
+        @Override
+        public MergeSpecification findMerges(MergeTrigger mergeTrigger, SegmentInfos segmentInfos, MergeContext mergeContext) throws IOException {
+            if (mergeTrigger == MergeTrigger.SEGMENT_FLUSH) {
+                flushCount.incrementAndGet();
+            }
+
+            return deferMerges ? null : super.findMerges(mergeTrigger, segmentInfos, mergeContext);
+        }
+    }
+
+    private class TimedMergeScheduler extends ConcurrentMergeScheduler {
+        @Override
+        protected void doMerge(MergeSource mergeSource, MergePolicy.OneMerge merge) throws IOException {
+            final long start = System.nanoTime();
+            try {
+                super.doMerge(mergeSource, merge);
+            }
+            finally {
+                mergeCount.incrementAndGet();
+                mergeNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+    }
+
+    public static final String MANIFEST_KEY_PREFIX = "source:";
+
+    private String manifestEntry = null;
+
+    private boolean skipIndexing = false;
+
+    private OverlapDetector<SimpleInterval> updatedIntervals = null;
+
+    private final Set<String> deletedContigs = new HashSet<>();
+
+    private long sitesOutsideIntervals = 0;
+
+    private String getManifestKey() {
+        return MANIFEST_KEY_PREFIX + drivingVariantFile.getURIString();
+    }
+
+    private String getManifestEntry() {
+        List<String> fields = new ArrayList<>(stats.collectorMap.keySet());
+        Collections.sort(fields);
+
+        String intervals = hasUserSuppliedIntervals() ? getTraversalIntervals().stream().map(SimpleInterval::toString).collect(Collectors.joining(",")) : "all";
+
+        return "file=" + getFileFingerprint(drivingVariantFile) + ";fields=" + StringUtils.join(fields, ",") + ";intervals=" + intervals + ";version=" + getVersion();
+    }
+
+    /**
+     * A cheap fingerprint of the input, based on its size and last-modified time, rather than a checksum of the full file, which would double the input I/O
+     */
+    private static String getFileFingerprint(GATKPath path) {
+        try {
+            Path p = path.toPath();
+            return Files.size(p) + "-" + Files.getLastModifiedTime(p).toMillis();
+        } catch (IOException e) {
+            throw new GATKException("Unable to read the size and modification time of: " + path.getURIString(), e);
+        }
+    }
+
+    private void prepareIndexUpdate() {
+        final Map<String, String> manifest;
+        try {
+            manifest = SegmentInfos.readLatestCommit(index).getUserData();
+        } catch (IOException e) {
+            throw new GATKException(e.getMessage(), e);
+        }
+
+        if (manifestEntry.equals(manifest.get(getManifestKey()))) {
+            logger.info("This VCF has already been indexed with the same fields and intervals, skipping: " + drivingVariantFile.getURIString());
+            skipIndexing = true;
+            return;
+        }
+
+        // When intervals are provided, remove existing documents in those intervals up front. Otherwise each contig is deleted the first time a variant on it is encountered
+        if (hasUserSuppliedIntervals()) {
+            List<SimpleInterval> intervals = getTraversalIntervals();
+            Query[] toDelete = intervals.stream().map(i -> LongPoint.newRangeQuery("genomicPosition", getGenomicPosition(i.getContig(), i.getStart()), getGenomicPosition(i.getContig(), i.getEnd()))).toArray(Query[]::new);
+            try {
+                writer.deleteDocuments(toDelete);
+            } catch (IOException e) {
+                throw new GATKException(e.getMessage(), e);
+            }
+
+            updatedIntervals = OverlapDetector.create(intervals);
+        }
+    }
+
+    private void deleteContigIfNeeded(String contig) {
+        if (!deletedContigs.add(contig)) {
+            return;
+        }
+
+        logger.info("Deleting existing documents for contig: " + contig);
+        long offset = genomicPositionMap.get(contig);
+        long length = getBestAvailableSequenceDictionary().getSequence(contig).getSequenceLength();
+        try {
+            writer.deleteDocuments(LongPoint.newRangeQuery("genomicPosition", offset + 1, offset + length));
+        } catch (IOException e) {
+            throw new GATKException(e.getMessage(), e);
+        }
+    }
+
+    private ThreadPoolExecutor executor = null;
+
+    private List<VariantContext> pendingBatch = new ArrayList<>();
+
+    private final AtomicReference<Throwable> workerError = new AtomicReference<>(null);
+
+    private final List<IndexStats> workerStats = Collections.synchronizedList(new ArrayList<>());
+
+    private final ThreadLocal<IndexStats> threadStats = ThreadLocal.withInitial(() -> {
+        IndexStats ret = stats.createEmptyCopy();
+        workerStats.add(ret);
+
+        return ret;
+    });
+
+    private final ThreadLocal<GenotypeTally> threadTally = ThreadLocal.withInitial(() -> new GenotypeTally(getHeaderForVariants().getGenotypeSamples()));
 
     private long sites = 0;
 
@@ -160,34 +426,228 @@ public class VcfToLuceneIndexer extends VariantWalker {
         return start + genomicPositionMap.get(contig);
     }
 
+    @Override
+    public void traverse() {
+        if (skipIndexing) {
+            return;
+        }
+
+        if (shardByContig) {
+            traverseShards();
+        }
+        else {
+            super.traverse();
+        }
+    }
+
+    private List<SimpleInterval> getShards() {
+        final List<SimpleInterval> intervals = hasUserSuppliedIntervals() ? getTraversalIntervals() : getBestAvailableSequenceDictionary().getSequences().stream().map(sr -> new SimpleInterval(sr.getSequenceName(), 1, sr.getSequenceLength())).toList();
+        if (shardSize == 0) {
+            return intervals;
+        }
+
+        List<SimpleInterval> shards = new ArrayList<>();
+        for (SimpleInterval i : intervals) {
+            for (int start = i.getStart(); start <= i.getEnd(); start += shardSize) {
+                shards.add(new SimpleInterval(i.getContig(), start, Math.min(i.getEnd(), start + shardSize - 1)));
+            }
+        }
+
+        return shards;
+    }
+
+    private void traverseShards() {
+        final List<SimpleInterval> shards = getShards();
+        logger.info("Indexing " + shards.size() + " shards using " + threads + " threads");
+
+        final ExecutorService shardExecutor = Executors.newFixedThreadPool(threads);
+        final List<File> shardDirs = new ArrayList<>();
+        try {
+            List<Callable<Long>> tasks = new ArrayList<>();
+            for (SimpleInterval shard : shards) {
+                File shardDir = IOUtils.createTempDir("luceneShard");
+                shardDirs.add(shardDir);
+                tasks.add(() -> indexShard(shard, shardDir));
+            }
+
+            List<Future<Long>> results = shardExecutor.invokeAll(tasks);
+            for (int i = 0; i < shards.size(); i++) {
+                long shardSites = results.get(i).get();
+                sites += shardSites;
+
+                // As with the non-sharded update, only replace contigs that have at least one site in this VCF.
+                // When intervals were provided, these were already deleted in prepareIndexUpdate()
+                if (updateExistingIndex && updatedIntervals == null && shardSites > 0) {
+                    deleteContigIfNeeded(shards.get(i).getContig());
+                }
+            }
+
+            logger.info("Merging shards");
+            List<Directory> toMerge = new ArrayList<>();
+            try {
+                for (File shardDir : shardDirs) {
+                    toMerge.add(FSDirectory.open(shardDir.toPath()));
+                }
+
+                writer.addIndexes(toMerge.toArray(new Directory[0]));
+            }
+            finally {
+                for (Directory d : toMerge) {
+                    d.close();
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new IllegalStateException("Error running VcfToLuceneIndexer", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+
+            throw new GATKException("Error running VcfToLuceneIndexer", e.getCause());
+        } catch (IOException e) {
+            throw new GATKException(e.getMessage(), e);
+        } finally {
+            shardExecutor.shutdownNow();
+            for (File shardDir : shardDirs) {
+                FileUtils.deleteQuietly(shardDir);
+            }
+        }
+    }
+
+    private long indexShard(SimpleInterval shard, File shardDir) throws IOException {
+        long shardSites = 0;
+        try (FeatureDataSource<VariantContext> source = new FeatureDataSource<>(getDrivingVariantsFeatureInput(), FeatureDataSource.DEFAULT_QUERY_LOOKAHEAD_BASES, VariantContext.class);
+             FSDirectory shardIndex = FSDirectory.open(shardDir.toPath());
+             IndexWriter shardWriter = new IndexWriter(shardIndex, createIndexWriterConfig(true))) {
+
+            List<VariantContext> batch = new ArrayList<>(batchSize);
+            Iterator<VariantContext> it = source.query(shard);
+            while (it.hasNext()) {
+                VariantContext variant = it.next();
+
+                // Sites spanning a shard boundary are returned for both shards, so only index a site in the shard containing its start:
+                if (variant.getStart() < shard.getStart()) {
+                    continue;
+                }
+
+                batch.add(variant);
+                shardSites++;
+                if (batch.size() >= batchSize) {
+                    new ApplyRunner(batch, shardWriter).call();
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+
+            new ApplyRunner(batch, shardWriter).call();
+
+            // Ensure a commit exists even if this shard had no sites:
+            shardWriter.commit();
+        }
+
+        logger.info("Finished shard: " + shard.toString() + ", total sites: " + shardSites);
+
+        return shardSites;
+    }
+
     @Override
     public void apply(VariantContext variant, ReadsContext readsContext, ReferenceContext referenceContext, FeatureContext featureContext) {
+        if (updateExistingIndex) {
+            if (updatedIntervals != null) {
+                // Sites starting before the interval were not deleted, so they should not be re-added:
+                if (!updatedIntervals.overlapsAny(new SimpleInterval(variant.getContig(), variant.getStart(), variant.getStart()))) {
+                    sitesOutsideIntervals++;
+                    return;
+                }
+            }
+            else {
+                // NOTE: this must happen before any variants on this contig are submitted to the writer
+                deleteContigIfNeeded(variant.getContig());
+            }
+        }
+
         if (executor != null) {
-            try {
-                executor.invokeAll(Collections.singletonList(new ApplyRunner(variant, referenceContext)));
-            } catch (InterruptedException e) {
-                throw new IllegalStateException("Error running VcfToLuceneIndexer", e);
+            checkForWorkerError();
+
+            // NOTE: genotypes are decoded lazily by the VCF codec, which is not thread-safe. Force this to happen on the traversal thread:
+            if (variant.hasGenotypes()) {
+                variant.getGenotype(0);
+            }
+
+            pendingBatch.add(variant);
+            if (pendingBatch.size() >= batchSize) {
+                submitPendingBatch();
             }
         } else {
-            new ApplyRunner(variant, referenceContext).call();
+            new ApplyRunner(Collections.singletonList(variant), writer).call();
         }
 
         sites++;
     }
 
+    private void submitPendingBatch() {
+        if (pendingBatch.isEmpty()) {
+            return;
+        }
+
+        final ApplyRunner runner = new ApplyRunner(pendingBatch, writer);
+        pendingBatch = new ArrayList<>(batchSize);
+
+        executor.execute(() -> {
+            try {
+                runner.call();
+            }
+            catch (Throwable e) {
+                workerError.compareAndSet(null, e);
+            }
+        });
+    }
+
+    private void checkForWorkerError() {
+        Throwable e = workerError.get();
+        if (e != null) {
+            if (e instanceof GATKException ge) {
+                throw ge;
+            }
+
+            throw new GATKException("Error running VcfToLuceneIndexer", e);
+        }
+    }
+
     public class ApplyRunner implements Callable<Boolean> {
-        final VariantContext variant;
-        final ReferenceContext referenceContext;
+        final List<VariantContext> variants;
+        final IndexWriter indexWriter;
 
-        public ApplyRunner(VariantContext variant, ReferenceContext referenceContext) {
-            this.variant = variant;
-            this.referenceContext = referenceContext;
+        public ApplyRunner(List<VariantContext> variants, IndexWriter indexWriter) {
+            this.variants = variants;
+            this.indexWriter = indexWriter;
         }
 
         @Override
         public Boolean call() {
+            final IndexStats indexStats = threadStats.get();
+            final GenotypeTally tally = threadTally.get();
+            final List<Document> docs = new ArrayList<>();
+            for (VariantContext variant : variants) {
+                addDocuments(variant, indexStats, tally, docs);
+            }
+
+            try {
+                indexWriter.addDocuments(docs);
+                docsIndexed.addAndGet(docs.size());
+            } catch (IOException e) {
+                throw new GATKException(e.getMessage(), e);
+            }
+
+            return true;
+        }
+
+        private void addDocuments(VariantContext variant, IndexStats indexStats, GenotypeTally tally, List<Document> docs) {
             final VCFHeader header = getHeaderForVariants();
 
+            if (variant.hasGenotypes()) {
+                tally.tally(variant);
+            }
+
             // Index each ALT by itself:
             for (Allele alt : variant.getAlternateAlleles()) {
                 Document doc = new Document();
@@ -214,7 +674,7 @@ public class VcfToLuceneIndexer extends VariantWalker {
 
                             Object val = vals.get(altAlleleIndex);
                             if (val != null) {
-                                addFieldToDocument(doc, datatype, infoField, val);
+                                addFieldToDocument(indexStats, doc, datatype, infoField, val);
                             }
                         }
                         else if (line.getCountType() == VCFHeaderLineCount.R) {
@@ -232,24 +692,24 @@ public class VcfToLuceneIndexer extends VariantWalker {
 
                             Object val = vals.get(alleleIdx);
                             if (val != null) {
-                                addFieldToDocument(doc, datatype, infoField, val);
+                                addFieldToDocument(indexStats, doc, datatype, infoField, val);
                             }
                         }
                         else if (line.getCountType() == VCFHeaderLineCount.INTEGER || line.getCountType() == VCFHeaderLineCount.UNBOUNDED) {
                             Object val = variant.getAttribute(infoField);
-                            addFieldToDocument(doc, datatype, infoField, val);
+                            addFieldToDocument(indexStats, doc, datatype, infoField, val);
                         }
                     }
                 }
 
                 // Add standard fields
-                doc.add(new TextField("contig", variant.getContig(), Field.Store.YES));
+                addTextField(doc, "contig", variant.getContig());
                 doc.add(new SortedDocValuesField("contig_sort", new BytesRef(variant.getContig())));
 
-                doc.add(new TextField("ref", variant.getReference().getDisplayString(), Field.Store.YES));
+                addTextField(doc, "ref", variant.getReference().getDisplayString());
                 doc.add(new SortedDocValuesField("ref_sort", new BytesRef(variant.getReference().getDisplayString())));
 
-                doc.add(new TextField("alt", alt.getDisplayString(), Field.Store.YES));
+                addTextField(doc, "alt", alt.getDisplayString());
                 doc.add(new SortedDocValuesField("alt_sort", new BytesRef(alt.getDisplayString())));
 
                 final long genomicPositionStart = getGenomicPosition(variant.getContig(), variant.getStart());
@@ -267,48 +727,39 @@ public class VcfToLuceneIndexer extends VariantWalker {
                 doc.add(new NumericDocValuesField("genomicPosition_sort", genomicPositionStart));
 
                 if (variant.hasGenotypes()) {
-                    AtomicReference<String> docValue = new AtomicReference<>(null);
-
-                    variant.getGenotypes().stream().filter(g -> !g.isFiltered() && !g.isNoCall() && g.getAlleles().contains(alt)).map(Genotype::getSampleName).sorted().forEach(sample -> {
-                        doc.add(new TextField("variableSamples", sample, Field.Store.YES));
-
-                        if (docValue.get() == null) {
-                            docValue.set(sample);
-                        }
-                    });
-
-                    if (docValue.get() != null) {
-                        doc.add(new SortedDocValuesField("variableSamples_sort", new BytesRef(docValue.get())));
-                        docValue.set(null);
+                    final int nVariable = tally.getVariableSampleCount(altAlleleIndex);
+                    final String[] variableSamples = tally.getVariableSamples(altAlleleIndex);
+                    for (int i = 0; i < nVariable; i++) {
+                        addTextField(doc, "variableSamples", variableSamples[i]);
                     }
 
-                    variant.getGenotypes().stream().filter(g -> !g.isFiltered() && !g.isNoCall() && g.getAlleles().contains(alt) && g.isHomVar()).map(Genotype::getSampleName).sorted().forEach(sample -> {
-                        doc.add(new TextField("homozygousVarSamples", sample, Field.Store.YES));
+                    if (nVariable > 0) {
+                        doc.add(new SortedDocValuesField("variableSamples_sort", new BytesRef(variableSamples[0])));
+                    }
 
-                        if (docValue.get() == null) {
-                            docValue.set(sample);
-                        }
-                    });
+                    final int nHomVar = tally.getHomVarCount(altAlleleIndex);
+                    final String[] homozygousVarSamples = tally.getHomVarSamples(altAlleleIndex);
+                    for (int i = 0; i < nHomVar; i++) {
+                        addTextField(doc, "homozygousVarSamples", homozygousVarSamples[i]);
+                    }
 
-                    if (docValue.get() != null) {
-                        doc.add(new SortedDocValuesField("homozygousVarSamples_sort", new BytesRef(docValue.get())));
-                        docValue.set(null);
+                    if (nHomVar > 0) {
+                        doc.add(new SortedDocValuesField("homozygousVarSamples_sort", new BytesRef(homozygousVarSamples[0])));
                     }
 
-                    long nHet = variant.getGenotypes().stream().filter(g -> !g.isFiltered() && !g.isNoCall() && g.getAlleles().contains(alt) && g.isHet()).count();
-                    doc.add(new IntPoint("nHet", (int)nHet));
-                    doc.add(new StoredField("nHet", (int)nHet));
-                    doc.add(new NumericDocValuesField("nHet_sort", (int)nHet));
+                    final int nHet = tally.getHetCount(altAlleleIndex);
+                    doc.add(new IntPoint("nHet", nHet));
+                    doc.add(new StoredField("nHet", nHet));
+                    doc.add(new NumericDocValuesField("nHet_sort", nHet));
 
-                    long nHomVar = variant.getGenotypes().stream().filter(g -> !g.isFiltered() && !g.isNoCall() && g.getAlleles().contains(alt) && g.isHomVar()).count();
-                    doc.add(new IntPoint("nHomVar", (int)nHomVar));
-                    doc.add(new StoredField("nHomVar", (int)nHomVar));
-                    doc.add(new NumericDocValuesField("nHomVar_sort", (int)nHomVar));
+                    doc.add(new IntPoint("nHomVar", nHomVar));
+                    doc.add(new StoredField("nHomVar", nHomVar));
+                    doc.add(new NumericDocValuesField("nHomVar_sort", nHomVar));
 
-                    long nCalled = variant.getGenotypes().stream().filter(g -> !g.isFiltered() && !g.isNoCall()).count();
-                    doc.add(new IntPoint("nCalled", (int)nCalled));
-                    doc.add(new StoredField("nCalled", (int)nCalled));
-                    doc.add(new NumericDocValuesField("nCalled_sort", (int)nCalled));
+                    final int nCalled = tally.getCalledCount();
+                    doc.add(new IntPoint("nCalled", nCalled));
+                    doc.add(new StoredField("nCalled", nCalled));
+                    doc.add(new NumericDocValuesField("nCalled_sort", nCalled));
 
                     float fractionHet = (float) nHet / (float) (nHet + nHomVar);
                     doc.add(new DoublePoint("fractionHet", fractionHet));
@@ -316,14 +767,188 @@ public class VcfToLuceneIndexer extends VariantWalker {
                     doc.add(new NumericDocValuesField("fractionHet_sort", NumericUtils.doubleToSortableLong(fractionHet)));
                 }
 
-                try {
-                    writer.addDocument(doc);
-                } catch (IOException e) {
-                    throw new GATKException(e.getMessage(), e);
+                docs.add(doc);
+            }
+        }
+    }
+
+    /**
+     * Summarizes the genotypes of a site for all ALT alleles in a single pass. For each ALT this produces the
+     * (sorted) names of samples carrying that allele, the names of samples homozygous for it, and the het/hom-var counts.
+     * Sample names are visited in sorted order, using an ordering precomputed from the header, so the per-allele
+     * lists do not need to be sorted. Buffers are reused between sites, so an instance should not be shared between threads.
+     */
+    public static class GenotypeTally {
+        private final String[] sortedSamples;
+        private final int[] sortedHeaderIdx;
+
+        private int nAlts = 0;
+        private int nCalled = 0;
+        private int[] nHet = new int[0];
+        private int[] nVariable = new int[0];
+        private int[] nHomVar = new int[0];
+        private int[] lastGenotypeSeen = new int[0];
+        private String[][] variableSamples = new String[0][];
+        private String[][] homVarSamples = new String[0][];
+
+        public GenotypeTally(List<String> headerSamples) {
+            final Integer[] order = new Integer[headerSamples.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparing(headerSamples::get));
+
+            sortedSamples = new String[order.length];
+            sortedHeaderIdx = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sortedHeaderIdx[i] = order[i];
+                sortedSamples[i] = headerSamples.get(order[i]);
+            }
+        }
+
+        public void tally(VariantContext vc) {
+            final List<Allele> alleles = vc.getAlleles();
+            final GenotypesContext genotypes = vc.getGenotypes();
+            reset(alleles.size() - 1, genotypes.size());
+
+            // Genotypes decoded from a VCF follow the header order, in which case the precomputed ordering can be used directly.
+            // Otherwise, fall back to sorting this site's genotypes by name:
+            boolean inHeaderOrder = genotypes.size() == sortedSamples.length;
+            if (inHeaderOrder) {
+                for (int i = 0; i < sortedHeaderIdx.length; i++) {
+                    final Genotype g = genotypes.get(sortedHeaderIdx[i]);
+                    if (!sortedSamples[i].equals(g.getSampleName())) {
+                        inHeaderOrder = false;
+                        break;
+                    }
+
+                    inspect(alleles, g, i);
                 }
             }
 
-            return true;
+            if (!inHeaderOrder) {
+                reset(alleles.size() - 1, genotypes.size());
+
+                final List<Genotype> sorted = new ArrayList<>(genotypes);
+                sorted.sort(Comparator.comparing(Genotype::getSampleName));
+                for (int i = 0; i < sorted.size(); i++) {
+                    inspect(alleles, sorted.get(i), i);
+                }
+            }
+        }
+
+        private void reset(int nAlts, int nSamples) {
+            this.nAlts = nAlts;
+            nCalled = 0;
+
+            if (nHet.length < nAlts) {
+                nHet = new int[nAlts];
+                nVariable = new int[nAlts];
+                nHomVar = new int[nAlts];
+                lastGenotypeSeen = new int[nAlts];
+                variableSamples = new String[nAlts][];
+                homVarSamples = new String[nAlts][];
+            }
+
+            for (int i = 0; i < nAlts; i++) {
+                nHet[i] = 0;
+                nVariable[i] = 0;
+                nHomVar[i] = 0;
+                lastGenotypeSeen[i] = -1;
+                if (variableSamples[i] == null || variableSamples[i].length < nSamples) {
+                    variableSamples[i] = new String[nSamples];
+                    homVarSamples[i] = new String[nSamples];
+                }
+            }
+        }
+
+        private void inspect(List<Allele> alleles, Genotype g, int genotypeIdx) {
+            if (g.isFiltered() || g.isNoCall()) {
+                return;
+            }
+
+            nCalled++;
+            final boolean isHet = g.isHet();
+            final boolean isHomVar = g.isHomVar();
+            for (Allele a : g.getAlleles()) {
+                final int alleleIdx = getAlleleIndex(alleles, a);
+                if (alleleIdx < 1) {
+                    // REF, no-call or an allele not present at this site
+                    continue;
+                }
+
+                // Only count each ALT once per genotype:
+                final int altIdx = alleleIdx - 1;
+                if (lastGenotypeSeen[altIdx] == genotypeIdx) {
+                    continue;
+                }
+                lastGenotypeSeen[altIdx] = genotypeIdx;
+
+                variableSamples[altIdx][nVariable[altIdx]++] = g.getSampleName();
+                if (isHet) {
+                    nHet[altIdx]++;
+                }
+
+                if (isHomVar) {
+                    homVarSamples[altIdx][nHomVar[altIdx]++] = g.getSampleName();
+                }
+            }
+        }
+
+        private static int getAlleleIndex(List<Allele> alleles, Allele a) {
+            // Decoded genotypes normally share the site's Allele objects, so try an identity match first:
+            for (int i = 0; i < alleles.size(); i++) {
+                if (alleles.get(i) == a) {
+                    return i;
+                }
+            }
+
+            return alleles.indexOf(a);
+        }
+
+        public int getAltAlleleCount() {
+            return nAlts;
+        }
+
+        public int getCalledCount() {
+            return nCalled;
+        }
+
+        public int getHetCount(int altAlleleIdx) {
+            return nHet[altAlleleIdx];
+        }
+
+        public int getHomVarCount(int altAlleleIdx) {
+            return nHomVar[altAlleleIdx];
+        }
+
+        public int getVariableSampleCount(int altAlleleIdx) {
+            return nVariable[altAlleleIdx];
+        }
+
+        /**
+         * @return A buffer holding the sorted names of samples carrying this ALT. Only the first getVariableSampleCount() entries are valid.
+         */
+        public String[] getVariableSamples(int altAlleleIdx) {
+            return variableSamples[altAlleleIdx];
+        }
+
+        /**
+         * @return A buffer holding the sorted names of samples homozygous for this ALT. Only the first getHomVarCount() entries are valid.
+         */
+        public String[] getHomVarSamples(int altAlleleIdx) {
+            return homVarSamples[altAlleleIdx];
+        }
+    }
+
+    private void addTextField(Document doc, String key, String value) {
+        if (keywordFieldSet.contains(key)) {
+            // Index the whole value as one term, lowercased to match the case-insensitivity of StandardAnalyzer:
+            doc.add(new StringField(key, value.toLowerCase(Locale.ROOT), Field.Store.NO));
+            doc.add(new StoredField(key, value));
+        }
+        else {
+            doc.add(new TextField(key, value, Field.Store.YES));
         }
     }
 
@@ -370,7 +995,7 @@ public class VcfToLuceneIndexer extends VariantWalker {
         }
     }
 
-    private final Set<String> keysWithErrors = new HashSet<>();
+    private final Set<String> keysWithErrors = ConcurrentHashMap.newKeySet();
 
     private void possiblyReportBadValue(@Nullable Exception e, String key, Object fieldValue) {
         String message = "Unable to parse field: " + key + ", was: <" + fieldValue + ">. " + (e == null ? "" : e.getMessage());
@@ -378,16 +1003,15 @@ public class VcfToLuceneIndexer extends VariantWalker {
             throw new GATKException(message);
         }
         else {
-            if (!keysWithErrors.contains(key)) {
-                keysWithErrors.add(key);
+            if (keysWithErrors.add(key)) {
                 logger.warn(message);
             }
         }
     }
 
-    synchronized private void addFieldToDocument(Document doc, VCFHeaderLineType variantHeaderLineType, String key, Object fieldValue) {
+    private void addFieldToDocument(IndexStats indexStats, Document doc, VCFHeaderLineType variantHeaderLineType, String key, Object fieldValue) {
         try {
-            stats.inspectValue(key, fieldValue);
+            indexStats.inspectValue(key, fieldValue);
         }
         catch (Exception e) {
             possiblyReportBadValue(e, key, fieldValue);
@@ -461,7 +1085,7 @@ public class VcfToLuceneIndexer extends VariantWalker {
                         }
                     }
                     case String -> {
-                        doc.add(new TextField(key, String.valueOf(value), Field.Store.YES));
+                        addTextField(doc, key, String.valueOf(value));
 
                         if (indexDocValue.get()) {
                             doc.add(new SortedDocValuesField(key +"_sort", new BytesRef(String.valueOf(value))));
@@ -487,12 +1111,51 @@ public class VcfToLuceneIndexer extends VariantWalker {
         logger.info("Indexing complete, total sites indexed: " + sites);
 
         if (executor != null) {
+            submitPendingBatch();
             executor.shutdown();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    logger.info("Waiting for indexing workers to finish");
+                }
+            } catch (InterruptedException e) {
+                throw new IllegalStateException("Error running VcfToLuceneIndexer", e);
+            }
+
+            checkForWorkerError();
+        }
+
+        workerStats.forEach(stats::merge);
+
+        if (!skipIndexing && indexProfile == IndexProfile.BULK) {
+            logger.info("Merging index to at most " + maxSegments + " segments");
+            mergePolicy.deferMerges = false;
+            try {
+                writer.forceMerge(maxSegments);
+            } catch (IOException e) {
+                throw new GATKException(e.getMessage(), e);
+            }
+        }
+
+        final double elapsedSeconds = (System.nanoTime() - startTime) / 1e9;
+        logger.info("Total documents indexed: " + docsIndexed.get() + ", docs/sec: " + String.format("%.1f", docsIndexed.get() / elapsedSeconds));
+        logger.info("Total segment flushes: " + flushCount.get() + ", total merges: " + mergeCount.get() + ", total merge time (sec): " + String.format("%.1f", mergeNanos.get() / 1e9));
+
+        if (sitesOutsideIntervals > 0) {
+            logger.info("Sites skipped because they start before the intervals being updated: " + sitesOutsideIntervals);
+        }
+
+        if (!skipIndexing) {
+            final Map<String, String> manifest = new HashMap<>();
+            if (writer.getLiveCommitData() != null) {
+                writer.getLiveCommitData().forEach(e -> manifest.put(e.getKey(), e.getValue()));
+            }
+            manifest.put(getManifestKey(), manifestEntry);
+            writer.setLiveCommitData(manifest.entrySet());
         }
 
         if (indexStatsPath != null) {
             try (ICSVWriter csvWriter = CsvUtils.getTsvWriter(indexStatsPath.toPath())) {
-                csvWriter.writeNext(new String[]{"Key", "Type", "TotalIndexed", "ContainedMultiValuedRow", "MinVal", "MaxVal", "DistinctValues"});
+                csvWriter.writeNext(new String[]{"Key", "Type", "TotalIndexed", "ContainedMultiValuedRow", "MinVal", "MaxVal", "DistinctValues", "ApproxDistinct", "TopValues", "P05", "P25", "P50", "P75", "P95"});
 
                 for (String key : stats.collectorMap.keySet()) {
                     IndexStats.Collector c = stats.collectorMap.get(key);
@@ -511,6 +1174,10 @@ public class VcfToLuceneIndexer extends VariantWalker {
 
     @Override
     public void closeTool() {
+        if (executor != null && !executor.isTerminated()) {
+            executor.shutdownNow();
+        }
+
         try {
             if (writer != null) {
                 writer.close();
@@ -540,7 +1207,10 @@ public class VcfToLuceneIndexer extends VariantWalker {
     {
         private final Map<String, Collector> collectorMap = new HashMap<>();
 
+        private final List<VCFInfoHeaderLine> fields = new ArrayList<>();
+
         public void addField(VCFInfoHeaderLine line) {
+            fields.add(line);
             switch (line.getType()) {
                 case Character, String, Flag -> collectorMap.put(line.getID(), new StringCollector());
                 case Integer, Float -> collectorMap.put(line.getID(), new NumericCollector());
@@ -551,6 +1221,23 @@ public class VcfToLuceneIndexer extends VariantWalker {
             collectorMap.get(key).inspect(val);
         }
 
+        /**
+         * Returns a new IndexStats tracking the same fields as this one, with no values collected
+         */
+        public IndexStats createEmptyCopy() {
+            IndexStats ret = new IndexStats();
+            fields.forEach(ret::addField);
+
+            return ret;
+        }
+
+        /**
+         * Adds the values collected by another IndexStats, which must track the same fields, into this one
+         */
+        public void merge(IndexStats other) {
+            other.collectorMap.forEach((key, c) -> collectorMap.get(key).merge(c));
+        }
+
         public abstract static class Collector {
             protected boolean containedMultiValue = false;
             protected long totalIndexed = 0L;
@@ -572,11 +1259,20 @@ public class VcfToLuceneIndexer extends VariantWalker {
             abstract protected void inspectValue(Object val);
 
             abstract public String[] getCsvRow(String key);
+
+            public void merge(Collector other) {
+                containedMultiValue = containedMultiValue || other.containedMultiValue;
+                totalIndexed += other.totalIndexed;
+                mergeValues(other);
+            }
+
+            abstract protected void mergeValues(Collector other);
         }
 
         private static class NumericCollector extends Collector {
             Double minVal = null;
             Double maxVal = null;
+            final QuantileSketch quantiles = new QuantileSketch();
 
             @Override
             protected void inspectValue(Object val) {
@@ -595,6 +1291,7 @@ public class VcfToLuceneIndexer extends VariantWalker {
                 }
 
                 totalIndexed++;
+                quantiles.add(d);
                 if (minVal == null || d < minVal) {
                     minVal = d;
                 }
@@ -604,14 +1301,37 @@ public class VcfToLuceneIndexer extends VariantWalker {
                 }
             }
 
+            @Override
+            protected void mergeValues(Collector other) {
+                NumericCollector nc = (NumericCollector) other;
+                if (nc.minVal != null && (minVal == null || nc.minVal < minVal)) {
+                    minVal = nc.minVal;
+                }
+
+                if (nc.maxVal != null && (maxVal == null || nc.maxVal > maxVal)) {
+                    maxVal = nc.maxVal;
+                }
+
+                quantiles.merge(nc.quantiles);
+            }
+
             @Override
             public String[] getCsvRow(String key) {
-                return new String[]{key, "Numeric", String.valueOf(totalIndexed), String.valueOf(containedMultiValue), minVal == null ? "" : String.valueOf(minVal), maxVal == null ? "" : String.valueOf(maxVal), ""};
+                List<String> row = new ArrayList<>(Arrays.asList(key, "Numeric", String.valueOf(totalIndexed), String.valueOf(containedMultiValue), minVal == null ? "" : String.valueOf(minVal), maxVal == null ? "" : String.valueOf(maxVal), "", "", ""));
+                for (double q : QUANTILES_TO_PRINT) {
+                    Double val = quantiles.getQuantile(q);
+                    row.add(val == null ? "" : String.valueOf(val));
+                }
+
+                return row.toArray(new String[0]);
             }
         }
 
         private static class StringCollector extends Collector {
-            Set<Object> values = new HashSet<>();
+            // The exact set of values is only retained until it exceeds MAX_VALUES_TO_PRINT, after which the sketches are used
+            @Nullable Set<Object> values = new HashSet<>();
+            final HyperLogLog distinct = new HyperLogLog();
+            final HeavyHitters topValues = new HeavyHitters(TOP_VALUES_TO_PRINT * 10);
 
             @Override
             protected void inspectValue(Object val) {
@@ -620,12 +1340,39 @@ public class VcfToLuceneIndexer extends VariantWalker {
                 }
 
                 totalIndexed++;
-                values.add(String.valueOf(val));
+
+                final String s = String.valueOf(val);
+                distinct.add(s);
+                topValues.add(s);
+                if (values != null) {
+                    values.add(s);
+                    if (values.size() > MAX_VALUES_TO_PRINT) {
+                        values = null;
+                    }
+                }
+            }
+
+            @Override
+            protected void mergeValues(Collector other) {
+                StringCollector sc = (StringCollector) other;
+                distinct.merge(sc.distinct);
+                topValues.merge(sc.topValues);
+                if (values != null && sc.values != null) {
+                    values.addAll(sc.values);
+                    if (values.size() > MAX_VALUES_TO_PRINT) {
+                        values = null;
+                    }
+                }
+                else {
+                    values = null;
+                }
             }
 
             @Override
             public String[] getCsvRow(String key) {
-                return new String[]{key, "String", String.valueOf(totalIndexed), String.valueOf(containedMultiValue), "", "", values.size() > MAX_VALUES_TO_PRINT ? "Too many: " + values.size() : StringUtils.join(values, ", ")};
+                final String topValueString = topValues.getTopValues(TOP_VALUES_TO_PRINT).stream().map(e -> e.getKey() + ":" + e.getValue()).collect(Collectors.joining(", "));
+
+                return new String[]{key, "String", String.valueOf(totalIndexed), String.valueOf(containedMultiValue), "", "", values == null ? "Too many: " + distinct.estimate() : StringUtils.join(values, ", "), String.valueOf(distinct.estimate()), topValueString, "", "", "", "", ""};
             }
         }
     }
@@ -11,7 +11,6 @@ import org.broadinstitute.hellbender.engine.GATKPath;
 import org.broadinstitute.hellbender.engine.ReferenceContext;
 import org.broadinstitute.hellbender.tools.walkers.annotator.GenotypeAnnotation;
 import org.broadinstitute.hellbender.tools.walkers.annotator.PedigreeAnnotation;
-import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.utils.genotyper.AlleleLikelihoods;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 
@@ -65,18 +64,13 @@ public class GenotypeConcordance extends PedigreeAnnotation implements GenotypeA
             return;
         }
 
-        List<VariantContext> referenceVCs = args.featureManager.getFeatures(args.referenceVcf, new SimpleInterval(vc.getContig(), vc.getStart(), vc.getStart())).stream().filter(refVC -> refVC.getStart() == vc.getStart()).toList();
-        if (referenceVCs.isEmpty()){
+        ReferenceGenotypeCache.ReferenceSite site = args.getReferenceGenotypeCache().getSite(vc);
+        if (site == null){
             return;
         }
 
-        if (referenceVCs.size() > 1) {
-            throw new IllegalArgumentException("More than one reference found for site: " + vc.getContig() + "-" + vc.getStart());
-        }
-
-        VariantContext c = referenceVCs.get(0);
-        Genotype refGenotype = c.getGenotype(g.getSampleName());
-        if (refGenotype != null && !refGenotype.isFiltered() && !refGenotype.isNoCall()) {
+        Genotype refGenotype = site.getCalledGenotype(g.getSampleName());
+        if (refGenotype != null) {
             if (!refGenotype.sameGenotype(g)) {
                 gb.attribute(KEY, "1");
                 String gt = refGenotype.getGenotypeString();
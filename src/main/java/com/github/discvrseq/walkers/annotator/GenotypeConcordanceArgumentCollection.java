@@ -27,4 +27,15 @@ public class GenotypeConcordanceArgumentCollection implements Serializable {
     }
 
     public transient FeatureManager featureManager = null;
+
+    // Shared by all annotations using this collection, so the reference VCF is queried once per site:
+    private transient ReferenceGenotypeCache referenceGenotypeCache = null;
+
+    public ReferenceGenotypeCache getReferenceGenotypeCache() {
+        if (referenceGenotypeCache == null) {
+            referenceGenotypeCache = new ReferenceGenotypeCache(featureManager, referenceVcf);
+        }
+
+        return referenceGenotypeCache;
+    }
 }
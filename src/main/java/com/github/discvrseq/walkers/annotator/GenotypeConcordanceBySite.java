@@ -10,12 +10,10 @@ import org.broadinstitute.hellbender.engine.GATKPath;
 import org.broadinstitute.hellbender.engine.ReferenceContext;
 import org.broadinstitute.hellbender.tools.walkers.annotator.InfoFieldAnnotation;
 import org.broadinstitute.hellbender.tools.walkers.annotator.PedigreeAnnotation;
-import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.utils.genotyper.AlleleLikelihoods;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by bimber on 4/20/2017.
@@ -57,37 +55,30 @@ public class GenotypeConcordanceBySite extends PedigreeAnnotation implements Inf
             throw new IllegalArgumentException("Must provide a VCF with reference genotypes!");
         }
 
-        List<VariantContext> referenceVCs = args.featureManager.getFeatures(args.referenceVcf, new SimpleInterval(vc.getContig(), vc.getStart(), vc.getStart())).stream().filter(refVC -> refVC.getStart() == vc.getStart()).toList();
-        if (referenceVCs.isEmpty()){
+        ReferenceGenotypeCache.ReferenceSite site = args.getReferenceGenotypeCache().getSite(vc);
+        if (site == null){
             return null;
         }
 
-        if (referenceVCs.size() > 1) {
-            throw new IllegalArgumentException("More than one reference found for site: " + vc.getContig() + "-" + vc.getStart());
-        }
-
-        VariantContext refVC  = referenceVCs.get(0);
-
-        AtomicInteger discord = new AtomicInteger(0);
-        AtomicInteger concord = new AtomicInteger(0);
-        Iterator<Genotype> it = vc.getGenotypes().iterator();
-        it.forEachRemaining(g -> {
+        int discord = 0;
+        int concord = 0;
+        for (Genotype g : vc.getGenotypes()) {
             if (!g.isFiltered() && !g.isNoCall()) {
-                Genotype refGenotype = refVC.getGenotype(g.getSampleName());
-                if (refGenotype != null && !refGenotype.isFiltered() && !refGenotype.isNoCall()) {
+                Genotype refGenotype = site.getCalledGenotype(g.getSampleName());
+                if (refGenotype != null) {
                     if (!refGenotype.sameGenotype(g)) {
-                        discord.getAndIncrement();
+                        discord++;
                     }
                     else {
-                        concord.getAndIncrement();
+                        concord++;
                     }
                 }
             }
-        });
+        }
 
         Map<String,Object> attributeMap = new HashMap<>(2);
-        attributeMap.put(DISCORD_KEY, discord.get());
-        attributeMap.put(CONCORD_KEY, concord.get());
+        attributeMap.put(DISCORD_KEY, discord);
+        attributeMap.put(CONCORD_KEY, concord);
 
         return attributeMap;
     }
@@ -0,0 +1,113 @@
+package com.github.discvrseq.walkers.annotator;
+
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypesContext;
+import htsjdk.variant.variantcontext.VariantContext;
+import org.broadinstitute.hellbender.engine.FeatureInput;
+import org.broadinstitute.hellbender.engine.FeatureManager;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds the reference VCF record for the site currently being annotated, so that annotations such as GenotypeConcordance, which are called once per sample,
+ * query the reference VCF once per site rather than once per genotype. The cache is keyed on contig and start, and is replaced when the traversal moves to
+ * a new site.
+ *
+ * The reference genotypes of each site are held in an array indexed by sample, and only called, unfiltered genotypes are retained.
+ * This is not thread-safe, which matches the single-threaded traversal of VariantAnnotator.
+ */
+public class ReferenceGenotypeCache {
+    private final FeatureManager featureManager;
+    private final FeatureInput<VariantContext> referenceVcf;
+
+    // Built from the first reference record, since every record of a VCF shares the same samples:
+    private Map<String, Integer> sampleIndex = null;
+
+    private String currentContig = null;
+    private int currentStart = -1;
+    private ReferenceSite currentSite = null;
+
+    public ReferenceGenotypeCache(FeatureManager featureManager, FeatureInput<VariantContext> referenceVcf) {
+        this.featureManager = featureManager;
+        this.referenceVcf = referenceVcf;
+    }
+
+    /**
+     * @return The reference genotypes for the site of this variant, or null if the reference VCF has no record starting at this position
+     */
+    @Nullable
+    public ReferenceSite getSite(VariantContext vc) {
+        if (vc.getStart() == currentStart && vc.getContig().equals(currentContig)) {
+            return currentSite;
+        }
+
+        List<VariantContext> referenceVCs = featureManager.getFeatures(referenceVcf, new SimpleInterval(vc.getContig(), vc.getStart(), vc.getStart())).stream().filter(refVC -> refVC.getStart() == vc.getStart()).toList();
+        if (referenceVCs.size() > 1) {
+            throw new IllegalArgumentException("More than one reference found for site: " + vc.getContig() + "-" + vc.getStart());
+        }
+
+        currentContig = vc.getContig();
+        currentStart = vc.getStart();
+        currentSite = referenceVCs.isEmpty() ? null : new ReferenceSite(referenceVCs.get(0));
+
+        return currentSite;
+    }
+
+    private void initSampleIndex(VariantContext refVC) {
+        List<String> names = refVC.getSampleNamesOrderedByName();
+        sampleIndex = new HashMap<>(names.size() * 2);
+        for (String name : names) {
+            sampleIndex.put(name, sampleIndex.size());
+        }
+    }
+
+    public class ReferenceSite {
+        private final Genotype[] calledGenotypes;
+
+        private ReferenceSite(VariantContext refVC) {
+            if (sampleIndex == null) {
+                initSampleIndex(refVC);
+            }
+
+            calledGenotypes = new Genotype[sampleIndex.size()];
+            GenotypesContext genotypes = refVC.getGenotypes();
+            for (int i = 0; i < genotypes.size(); i++) {
+                Genotype g = genotypes.get(i);
+                if (g.isFiltered() || g.isNoCall()) {
+                    continue;
+                }
+
+                Integer idx = sampleIndex.get(g.getSampleName());
+                if (idx != null) {
+                    calledGenotypes[idx] = g;
+                }
+            }
+        }
+
+        /**
+         * @return The index of this sample in the reference VCF, or -1 if it is not present. This can be used with getCalledGenotype(int) for repeated lookups.
+         */
+        public int getSampleIndex(String sampleName) {
+            Integer idx = sampleIndex.get(sampleName);
+
+            return idx == null ? -1 : idx;
+        }
+
+        /**
+         * @return The reference genotype for this sample, or null if the sample is absent, not called or filtered
+         */
+        @Nullable
+        public Genotype getCalledGenotype(int sampleIdx) {
+            return sampleIdx < 0 ? null : calledGenotypes[sampleIdx];
+        }
+
+        @Nullable
+        public Genotype getCalledGenotype(String sampleName) {
+            return getCalledGenotype(getSampleIndex(sampleName));
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.discvrseq.walkers.tagpcr;
 
+import com.github.discvrseq.util.MultiPatternMatcher;
 import htsjdk.samtools.util.SequenceUtil;
 
 import java.util.ArrayList;
@@ -18,6 +19,8 @@ public class InsertDescriptor {
 
     private List<InsertJunctionDescriptor> junctions;
 
+    private volatile MultiPatternMatcher backboneMatcher = null;
+
     public InsertDescriptor() {
 
     }
@@ -59,6 +62,7 @@ public class InsertDescriptor {
 
     public void setBackboneSearchEditDistance(int backboneSearchEditDistance) {
         this.backboneSearchEditDistance = backboneSearchEditDistance;
+        this.backboneMatcher = null;
     }
 
     public List<String> getAllBackboneSearchStrings() {
@@ -79,11 +83,37 @@ public class InsertDescriptor {
         return ret;
     }
 
+    /**
+     * @return True if the read contains any backbone search string, in either orientation, within the backbone search edit distance
+     */
+    public boolean matchesBackbone(String readSeq) {
+        return getBackboneMatcher().matchesAny(readSeq);
+    }
+
+    // The matcher is immutable and shared by all workers, so it is created once using double-checked locking, which avoids taking a lock for every read.
+    // If there are no backbone search strings, this matcher has no patterns and never matches:
+    private MultiPatternMatcher getBackboneMatcher() {
+        MultiPatternMatcher ret = backboneMatcher;
+        if (ret == null) {
+            synchronized (this) {
+                ret = backboneMatcher;
+                if (ret == null) {
+                    ret = new MultiPatternMatcher(getAllBackboneSearchStrings().stream().map(String::toUpperCase).toList(), backboneSearchEditDistance);
+                    backboneMatcher = ret;
+                }
+            }
+        }
+
+        return ret;
+    }
+
     public List<String> getBackboneSearchStrings() {
         return backboneSearchStrings;
     }
 
     public void setBackboneSearchStrings(List<String> backboneSearchStrings) {
         this.backboneSearchStrings = backboneSearchStrings;
+        this.backboneSearchStringsRC = null;
+        this.backboneMatcher = null;
     }
 }
@@ -1,6 +1,6 @@
 package com.github.discvrseq.walkers.tagpcr;
 
-import com.github.discvrseq.util.SequenceMatcher;
+import com.github.discvrseq.util.MultiPatternMatcher;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.util.SequenceUtil;
 import org.apache.logging.log4j.Logger;
@@ -20,12 +20,15 @@ public class InsertJunctionDescriptor {
 
     private int offset = 0;
 
+    private volatile MultiPatternMatcher matcher = null;
+
     public InsertJunctionDescriptor() {
 
     }
 
     public void setMismatchesAllowed(int mismatchesAllowed) {
         this.mismatchesAllowed = mismatchesAllowed;
+        this.matcher = null;
     }
 
     private List<String> getSearchStrings(boolean reverseComplement) {
@@ -43,15 +46,48 @@ public class InsertJunctionDescriptor {
         return searchStrings;
     }
 
+    // Forward search strings are followed by their reverse complements. The matcher is immutable and shared by all workers, so it is
+    // created once using double-checked locking, which avoids taking a lock for every read:
+    private MultiPatternMatcher getMatcher() {
+        MultiPatternMatcher ret = matcher;
+        if (ret == null) {
+            synchronized (this) {
+                ret = matcher;
+                if (ret == null) {
+                    List<String> queries = new ArrayList<>(getSearchStrings(false));
+                    queries.addAll(getSearchStrings(true));
+                    ret = new MultiPatternMatcher(queries, mismatchesAllowed);
+                    matcher = ret;
+                }
+            }
+        }
+
+        return ret;
+    }
+
     public Map<String, IntegrationSiteMapper.JunctionMatch> getMatches(SAMRecord rec, InsertDescriptor id, Logger log, int maxRecordsToStore) {
+        return getMatches(rec, rec.getReadString(), id, log, maxRecordsToStore);
+    }
+
+    /**
+     * @param readString The read sequence, which callers inspecting the same record repeatedly can retrieve once and reuse
+     */
+    public Map<String, IntegrationSiteMapper.JunctionMatch> getMatches(SAMRecord rec, String readString, InsertDescriptor id, Logger log, int maxRecordsToStore) {
         Map<String, IntegrationSiteMapper.JunctionMatch> matches = new HashMap<>();
 
+        final MultiPatternMatcher matcher = getMatcher();
+        final int[] hits = new int[matcher.getPatternCount()];
+        if (matcher.findFirst(readString, hits) == 0) {
+            return matches;
+        }
+
         //Forward orientation.
-        for (String query : getSearchStrings(false)) {
-            Integer match0 = SequenceMatcher.fuzzyMatch(query, rec.getReadString().toUpperCase(), mismatchesAllowed);
-            if (match0 != null) {
+        List<String> forwardQueries = getSearchStrings(false);
+        for (int queryIdx = 0; queryIdx < forwardQueries.size(); queryIdx++) {
+            final int match0 = hits[queryIdx];
+            if (match0 > -1) {
                 //this is equal to one base after the 1-based end, adjusted by the offset
-                final int start = match0 + query.length() + 2 + offset;
+                final int start = match0 + forwardQueries.get(queryIdx).length() + 2 + offset;
                 int pos = rec.getReferencePositionAtReadPosition(start);
 
                 int i = 1;
@@ -67,10 +103,11 @@ public class InsertJunctionDescriptor {
             }
         }
 
-        //Reverse:
-        for (String query : getSearchStrings(true)) {
-            Integer match0 = SequenceMatcher.fuzzyMatch(query, rec.getReadString().toUpperCase(), mismatchesAllowed);
-            if (match0 != null) {
+        //Reverse. The reverse complements were built with the matcher, and follow the forward queries:
+        final int reverseQueries = hits.length - forwardQueries.size();
+        for (int queryIdx = 0; queryIdx < reverseQueries; queryIdx++) {
+            final int match0 = hits[forwardQueries.size() + queryIdx];
+            if (match0 > -1) {
                 //this is equal to one base prior to the 1-based start, adjusted by the offset
                 final int start = match0 - offset;
                 int pos = rec.getReferencePositionAtReadPosition(start);
@@ -105,6 +142,7 @@ public class InsertJunctionDescriptor {
 
     public void setSearchStrings(List<String> searchStrings) {
         this.searchStrings = searchStrings;
+        this.matcher = null;
     }
 
     public List<String> getSearchStringsRC() {
@@ -113,6 +151,7 @@ public class InsertJunctionDescriptor {
 
     public void setSearchStringsRC(List<String> searchStringsRC) {
         this.searchStringsRC = searchStringsRC;
+        this.matcher = null;
     }
 
     public int getMismatchesAllowed() {
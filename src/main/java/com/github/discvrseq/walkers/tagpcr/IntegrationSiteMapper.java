@@ -5,8 +5,8 @@ import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.github.discvrseq.tools.DiscvrSeqProgramGroup;
 import com.github.discvrseq.util.CsvUtils;
 import com.github.discvrseq.util.NaturalSortComparator;
+import com.github.discvrseq.util.ReadNameGrouper;
 import com.github.discvrseq.util.SamUtils;
-import com.github.discvrseq.util.SequenceMatcher;
 import com.opencsv.CSVReader;
 import com.opencsv.ICSVWriter;
 import com.opencsv.exceptions.CsvValidationException;
@@ -48,6 +48,10 @@ import java.io.*;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -59,7 +63,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * It provides a very detailed output, but makes some assumptions and requires specific inputs:
  *
  * <ul>
- *     <li>The BAM is queryName sorted and the alignments per read inspected.  The tool assumes the genome is the reference for that organism. It is possible for this to also contain the transgene and/or delivery vector but this is not necessarily needed and can be more complicated to maintain</li>
+ *     <li>The alignments for each read are inspected together. If the BAM is not queryName sorted, alignments are grouped by read name in memory, or partitioned into temporary files for large inputs (see --max-reads-in-ram).  The tool assumes the genome is the reference for that organism. It is possible for this to also contain the transgene and/or delivery vector but this is not necessarily needed and can be more complicated to maintain</li>
  *     <li>Only first-mate reads are considered.  Reverse are ignored.</li>
  *     <li>Each alignment is inspected (including cropped bases) for the presence of a short sequence expected to be at the insert/genome junction</li>
  *     <li>*IMPORTANT* The orientation of each hit is used to determine the orientation of the transgene in the genome.  Each query sequence is associated with one end of the transgene</li>
@@ -253,6 +257,18 @@ public class IntegrationSiteMapper extends GATKTool {
     @Argument(doc="If provided, this tool will scan reads for the presence of any of these strings (perfect match-only, but also inspecting for reverse-complement). If found, the read will be counted as overlapping the backbone. This can be useful if the delivery system is a vector, and would allow detection of non-integrated vector", fullName = "backbone-sequences", shortName = "bs", optional = true)
     public List<String> supplementalBackboneSearchStrings = null;
 
+    @Argument(fullName = "max-reads-in-ram", doc="Unless the input BAM is queryname sorted, alignments are grouped by read name in memory. If the input has more than this many alignments, they will instead be partitioned by read name into temporary files, and each partition grouped in memory in turn.", optional=true, minValue = 1)
+    public int maxReadsInRam = 500000;
+
+    @Argument(fullName = "sort-input", doc="If true, input that is not queryname sorted will be rewritten to a temporary queryname-sorted BAM, rather than grouped by read name as it is read. See --max-reads-in-ram", optional=true)
+    public boolean sortInput = false;
+
+    @Argument(fullName = "threads", doc="The number of threads to use. If greater than one, the alignments for each read are grouped into batches and inspected for junctions by a pool of workers.", optional=true, minValue = 1)
+    public int threads = 1;
+
+    @Argument(fullName = "read-batch-size", doc="When running with more than one thread, reads (including all alignments for that read) are grouped into batches of this size. Each batch is inspected by a single worker.", optional=true, minValue = 1)
+    public int readBatchSize = 1000;
+
     @Override
     public boolean requiresReference() {
         return !validateDescriptorsOnly;
@@ -431,38 +447,109 @@ public class IntegrationSiteMapper extends GATKTool {
         return (blastDatabase != null && primerPairTable != null) || outputGenbank != null;
     }
 
-    private Map<String, Integer> primaryAlignmentsMatchingInsert = new HashMap<>();
-    private Map<String, Integer> secondaryAlignmentsMatchingInsert = new HashMap<>();
-    private Map<String, Integer> unmappedMatchingInsert = new HashMap<>();
+    /**
+     * Holds the junction matches and backbone counts for a set of reads. Each worker fills its own instance, and these are merged
+     * into the totals on the traversal thread in the order the reads were read, so the output does not depend on the number of threads.
+     */
+    private static class ReadBatchResult {
+        private final Map<String, JunctionMatch> matches = new HashMap<>();
+        private final Map<String, Integer> primaryAlignmentsMatchingInsert = new HashMap<>();
+        private final Map<String, Integer> secondaryAlignmentsMatchingInsert = new HashMap<>();
+        private final Map<String, Integer> unmappedMatchingInsert = new HashMap<>();
+        private int readsSpanningJunction = 0;
+
+        private void merge(ReadBatchResult other) {
+            other.matches.forEach((x, y) -> {
+                if (matches.containsKey(x)) {
+                    matches.get(x).merge(y);
+                }
+                else {
+                    matches.put(x, y);
+                }
+            });
 
-    private void inspectForInsert(SAMRecord rec) {
-        final String read = rec.getReadString().toUpperCase();
-        INSERT_DESCRIPTORS.forEach(id -> {
-            for (String ss : id.getAllBackboneSearchStrings()) {
-                Integer isMatch = SequenceMatcher.fuzzyMatch(ss.toUpperCase(), read, id.getBackboneSearchEditDistance());
-                if (isMatch != null) {
-                    if (rec.getReadUnmappedFlag()) {
-                        int total = unmappedMatchingInsert.getOrDefault(id.getName(), 0);
-                        total++;
-                        unmappedMatchingInsert.put(id.getName(), total);
-                    }
-                    else if (rec.isSecondaryOrSupplementary()) {
-                        int total = secondaryAlignmentsMatchingInsert.getOrDefault(id.getName(), 0);
-                        total++;
-                        secondaryAlignmentsMatchingInsert.put(id.getName(), total);
-                    }
-                    else {
-                        int total = primaryAlignmentsMatchingInsert.getOrDefault(id.getName(), 0);
-                        total++;
-                        primaryAlignmentsMatchingInsert.put(id.getName(), total);
-                    }
+            other.primaryAlignmentsMatchingInsert.forEach((x, y) -> primaryAlignmentsMatchingInsert.merge(x, y, Integer::sum));
+            other.secondaryAlignmentsMatchingInsert.forEach((x, y) -> secondaryAlignmentsMatchingInsert.merge(x, y, Integer::sum));
+            other.unmappedMatchingInsert.forEach((x, y) -> unmappedMatchingInsert.merge(x, y, Integer::sum));
+            readsSpanningJunction += other.readsSpanningJunction;
+        }
+    }
 
-                    break;
+    private final ReadBatchResult totals = new ReadBatchResult();
+
+    private ExecutorService executor = null;
+    private List<List<SAMRecord>> pendingBatch = new ArrayList<>();
+    private final Deque<Future<ReadBatchResult>> pendingResults = new ArrayDeque<>();
+
+    private void inspectForInsert(SAMRecord rec, String read, ReadBatchResult result) {
+        INSERT_DESCRIPTORS.forEach(id -> {
+            if (id.matchesBackbone(read)) {
+                if (rec.getReadUnmappedFlag()) {
+                    result.unmappedMatchingInsert.merge(id.getName(), 1, Integer::sum);
+                }
+                else if (rec.isSecondaryOrSupplementary()) {
+                    result.secondaryAlignmentsMatchingInsert.merge(id.getName(), 1, Integer::sum);
+                }
+                else {
+                    result.primaryAlignmentsMatchingInsert.merge(id.getName(), 1, Integer::sum);
                 }
             }
         });
     }
 
+    private void submitRead(List<SAMRecord> alignmentsForRead) {
+        if (executor == null) {
+            processAlignmentsForRead(alignmentsForRead, totals);
+            return;
+        }
+
+        pendingBatch.add(alignmentsForRead);
+        if (pendingBatch.size() >= readBatchSize) {
+            submitPendingBatch();
+        }
+    }
+
+    private void submitPendingBatch() {
+        if (pendingBatch.isEmpty()) {
+            return;
+        }
+
+        final List<List<SAMRecord>> batch = pendingBatch;
+        pendingBatch = new ArrayList<>(readBatchSize);
+
+        pendingResults.add(executor.submit(() -> {
+            ReadBatchResult result = new ReadBatchResult();
+            batch.forEach(alignmentsForRead -> processAlignmentsForRead(alignmentsForRead, result));
+
+            return result;
+        }));
+
+        // Bound the number of batches held in memory:
+        while (pendingResults.size() > threads * 2) {
+            mergeNextResult();
+        }
+    }
+
+    private void mergeNextResult() {
+        try {
+            totals.merge(pendingResults.poll().get());
+        }
+        catch (InterruptedException | ExecutionException e) {
+            if (e.getCause() instanceof GATKException ge) {
+                throw ge;
+            }
+
+            throw new GATKException("Error inspecting reads", e);
+        }
+    }
+
+    private void finishPendingBatches() {
+        submitPendingBatch();
+        while (!pendingResults.isEmpty()) {
+            mergeNextResult();
+        }
+    }
+
     @Override
     public void traverse() {
         if (exitWithoutRunning()) {
@@ -479,11 +566,10 @@ public class IntegrationSiteMapper extends GATKTool {
         int totalAlignments = 0;
         int totalPassingAlignments = 0;
         int uniqueReads = 0;
-        int numReadsSpanningJunction = 0;
         int splitAlignments = 0;
-        File bam = SamUtils.ensureQuerySorted(inputBam, referenceArguments.getReferencePath(), logger);
+        File bam = sortInput ? SamUtils.ensureQuerySorted(inputBam, referenceArguments.getReferencePath(), logger) : inputBam;
 
-        Map<String, JunctionMatch> totalMatches = new HashMap<>();
+        Map<String, JunctionMatch> totalMatches = totals.matches;
         Map<String, Object> metricsMap = new HashMap<>();
 
         int reverseReadsSkipped = 0;
@@ -491,84 +577,96 @@ public class IntegrationSiteMapper extends GATKTool {
         int totalMapq0Skipped = 0;
         int lowMapq = 0;
 
-        try (SamReader bamReader = fact.open(bam); SAMRecordIterator it = bamReader.iterator()) {
+        if (threads > 1) {
+            logger.info("Inspecting reads using " + threads + " threads");
+            executor = Executors.newFixedThreadPool(threads);
+        }
 
-            List<SAMRecord> alignmentsForRead = new ArrayList<>();
+        try (ReadNameGrouper it = new ReadNameGrouper(fact, bam, maxReadsInRam, logger)) {
             while (it.hasNext()) {
-                SAMRecord rec = it.next();
-                if (rec.getReadUnmappedFlag()) {
-                    inspectForInsert(rec);
-                    continue;
-                }
+                List<SAMRecord> alignmentsForRead = new ArrayList<>();
+                for (SAMRecord rec : it.next()) {
+                    if (rec.getReadUnmappedFlag()) {
+                        inspectForInsert(rec, rec.getReadString(), totals);
+                        continue;
+                    }
 
-                // Skip reverse reads
-                if (!includeReverseReads && rec.getReadPairedFlag() && rec.getSecondOfPairFlag()) {
-                    reverseReadsSkipped++;
-                    continue;
-                }
+                    // Skip reverse reads
+                    if (!includeReverseReads && rec.getReadPairedFlag() && rec.getSecondOfPairFlag()) {
+                        reverseReadsSkipped++;
+                        continue;
+                    }
 
-                totalAlignments++;
+                    totalAlignments++;
 
-                // NOTE: MAPQ=0 is used by BWA to denote multi-mapping reads
-                if (rec.getMappingQuality() == 0) {
-                    totalMapq0++;
+                    // NOTE: MAPQ=0 is used by BWA to denote multi-mapping reads
+                    if (rec.getMappingQuality() == 0) {
+                        totalMapq0++;
 
-                    if (!ALLOW_MAPQ_ZERO) {
-                        totalMapq0Skipped++;
+                        if (!ALLOW_MAPQ_ZERO) {
+                            totalMapq0Skipped++;
+                            continue;
+                        }
+                    }
+                    else if (rec.getMappingQuality() < MIN_MAPQ)
+                    {
+                        lowMapq++;
                         continue;
                     }
-                }
-                else if (rec.getMappingQuality() < MIN_MAPQ)
-                {
-                    lowMapq++;
-                    continue;
-                }
-
-                //If this read doesnt match the prior set, process these and clear alignmentsForRead
-                if (!alignmentsForRead.isEmpty() && !alignmentsForRead.get(0).getReadName().equals(rec.getReadName())){
-                    uniqueReads++;
-                    numReadsSpanningJunction += processAlignmentsForRead(alignmentsForRead, totalMatches);
-                }
 
-                totalPassingAlignments++;
-                alignmentsForRead.add(rec);
+                    totalPassingAlignments++;
+                    alignmentsForRead.add(rec);
 
-                if (includeSupplementalAlignments && rec.hasAttribute("SA")) {
-                    String sa = StringUtils.trimToNull(rec.getStringAttribute("SA"));
-                    if (sa != null)
-                    {
-                        for (String alignment : sa.split(";"))
+                    if (includeSupplementalAlignments && rec.hasAttribute("SA")) {
+                        String sa = StringUtils.trimToNull(rec.getStringAttribute("SA"));
+                        if (sa != null)
                         {
-                            String[] parts = alignment.split(",");
-                            SAMRecord newRec = rec.deepCopy();
-                            newRec.setReferenceIndex(rec.getHeader().getSequenceIndex(parts[0]));
-                            newRec.setAlignmentStart(Integer.parseInt(parts[1]));
-                            newRec.setReadNegativeStrandFlag("-".equals(parts[2]));
-                            if (rec.getReadNegativeStrandFlag() != newRec.getReadNegativeStrandFlag()) {
-                                newRec.reverseComplement();
+                            for (String alignment : sa.split(";"))
+                            {
+                                String[] parts = alignment.split(",");
+                                SAMRecord newRec = rec.deepCopy();
+                                newRec.setReferenceIndex(rec.getHeader().getSequenceIndex(parts[0]));
+                                newRec.setAlignmentStart(Integer.parseInt(parts[1]));
+                                newRec.setReadNegativeStrandFlag("-".equals(parts[2]));
+                                if (rec.getReadNegativeStrandFlag() != newRec.getReadNegativeStrandFlag()) {
+                                    newRec.reverseComplement();
+                                }
+                                newRec.setCigar(TextCigarCodec.decode(parts[3]));
+                                newRec.setMappingQuality(Integer.parseInt(parts[4]));
+
+                                alignmentsForRead.add(newRec);
+                                splitAlignments++;
                             }
-                            newRec.setCigar(TextCigarCodec.decode(parts[3]));
-                            newRec.setMappingQuality(Integer.parseInt(parts[4]));
-
-                            alignmentsForRead.add(newRec);
-                            splitAlignments++;
                         }
                     }
                 }
+
+                if (!alignmentsForRead.isEmpty()) {
+                    uniqueReads++;
+                    submitRead(alignmentsForRead);
+                }
             }
 
-            //ensure we capture final read
-            if (!alignmentsForRead.isEmpty()) {
-                uniqueReads++;
-                numReadsSpanningJunction += processAlignmentsForRead(alignmentsForRead, totalMatches);
+            if (executor != null) {
+                finishPendingBatches();
+            }
 
+            if (it.getPeakRecordsInRam() > 0) {
+                logger.info("Peak alignments held in memory while grouping by read name: " + it.getPeakRecordsInRam() + ", JVM heap in use: " + (it.getPeakHeapBytes() / (1024 * 1024)) + " MB");
             }
         }
-        catch (IOException e)
-        {
-            throw new GATKException(e.getMessage(), e);
+        finally {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
         }
 
+        final int numReadsSpanningJunction = totals.readsSpanningJunction;
+        final Map<String, Integer> primaryAlignmentsMatchingInsert = totals.primaryAlignmentsMatchingInsert;
+        final Map<String, Integer> secondaryAlignmentsMatchingInsert = totals.secondaryAlignmentsMatchingInsert;
+        final Map<String, Integer> unmappedMatchingInsert = totals.unmappedMatchingInsert;
+
         double pct = uniqueReads == 0 ? 0 : numReadsSpanningJunction / (double)uniqueReads;
         logger.info("Total reads spanning a junction: " + numReadsSpanningJunction + " of " + uniqueReads + " (" + pf.format(pct) + ")");
 
@@ -732,37 +830,35 @@ public class IntegrationSiteMapper extends GATKTool {
         }
     }
 
-    private int processAlignmentsForRead(List<SAMRecord> alignmentsForRead, Map<String, JunctionMatch> totalMatches) {
+    private void processAlignmentsForRead(List<SAMRecord> alignmentsForRead, ReadBatchResult result) {
         Map<String, JunctionMatch> matches = new HashMap<>();
         alignmentsForRead.forEach(rec -> {
             if (rec.isSecondaryOrSupplementary() && !includeSupplementalAlignments) {
                 return;
             }
 
+            final String readString = rec.getReadString();
             for (InsertDescriptor id : INSERT_DESCRIPTORS) {
                 for (InsertJunctionDescriptor jd : id.getJunctions()) {
-                    Map<String, JunctionMatch> hits = jd.getMatches(rec, id, logger, READS_PER_SITE);
+                    Map<String, JunctionMatch> hits = jd.getMatches(rec, readString, id, logger, READS_PER_SITE);
                     matches.putAll(hits);
                 }
             }
 
-            inspectForInsert(rec);
+            inspectForInsert(rec, readString, result);
         });
 
-        alignmentsForRead.clear();
         if (!matches.isEmpty()) {
             matches.forEach((x, y) -> {
-                if (totalMatches.containsKey(x)) {
-                    totalMatches.get(x).addRead(y.representativeRecords);
+                if (result.matches.containsKey(x)) {
+                    result.matches.get(x).addRead(y.representativeRecords);
                 }
                 else {
-                    totalMatches.put(x, y);
+                    result.matches.put(x, y);
                 }
             });
 
-            return 1;
-        } else {
-            return 0;
+            result.readsSpanningJunction++;
         }
     }
 
@@ -807,6 +903,18 @@ public class IntegrationSiteMapper extends GATKTool {
             }
         }
 
+        // Combines the reads from another match for the same site, where that match was accumulated over a later set of reads
+        public void merge(JunctionMatch other) {
+            totalReads += other.totalReads;
+            for (SAMRecord rec : other.representativeRecords) {
+                if (representativeRecords.size() >= maxRecordsToStore) {
+                    break;
+                }
+
+                representativeRecords.add(rec);
+            }
+        }
+
         public boolean isTransgeneInverted()
         {
             if (hitOrientationReversed) {
@@ -0,0 +1,138 @@
+package com.github.discvrseq.walkers.variantqc;
+
+import com.github.discvrseq.tools.VariantManipulationProgramGroup;
+import htsjdk.samtools.util.IOUtil;
+import org.broadinstitute.barclay.argparser.Argument;
+import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
+import org.broadinstitute.barclay.help.DocumentedFeature;
+import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
+import org.broadinstitute.hellbender.engine.GATKPath;
+import org.broadinstitute.hellbender.engine.GATKTool;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.report.GATKReportTable;
+import org.broadinstitute.hellbender.utils.samples.PedigreeValidationType;
+import org.broadinstitute.hellbender.utils.samples.SampleDB;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * This merges the output of VariantQC runs over different intervals of the same VCF(s), which were run using --shard-state-output, and produces the same HTML/JSON report
+ * as VariantQC would for all intervals combined. This allows VariantQC to be scattered across non-overlapping intervals of a large VCF, and then gathered.
+ * The counts from each shard are summed, and rates and ratios are recalculated from these.
+ *
+ * Note: several columns of the SNP/Indel Summary (SNP_het_to_hom_ratio, indel_het_to_hom_ratio, ratio_of_1_and_2_to_3_bp_insertions, ratio_of_1_and_2_to_3_bp_deletions,
+ * and percent_of_sites_with_more_than_2_alleles when multiallelic sites are present) are based on counts that VariantEval does not report, and cannot be recalculated.
+ * These are reported as NA unless every shard has the same value.
+ *
+ * <h3>Usage example:</h3>
+ * <pre>
+ * java -jar DISCVRSeq.jar VariantQC \
+ *     -R human_g1k_v37.fasta \
+ *     -V input.vcf.gz \
+ *     -L 1 \
+ *     --shard-state-output shard1.variantqc.gz \
+ *     -O shard1.html
+ *
+ * java -jar DISCVRSeq.jar VariantQC \
+ *     -R human_g1k_v37.fasta \
+ *     -V input.vcf.gz \
+ *     -L 2 \
+ *     --shard-state-output shard2.variantqc.gz \
+ *     -O shard2.html
+ *
+ * java -jar DISCVRSeq.jar GatherVariantQC \
+ *     -I shard1.variantqc.gz \
+ *     -I shard2.variantqc.gz \
+ *     -O output.html
+ * </pre>
+ */
+@DocumentedFeature
+@CommandLineProgramProperties(
+        summary = "This will merge the output of VariantQC runs over different intervals of the same VCF, producing a single HTML summary report.",
+        oneLineSummary = "Merge scattered VariantQC runs into one HTML report",
+        programGroup = VariantManipulationProgramGroup.class
+)
+public class GatherVariantQC extends GATKTool {
+    @Argument(fullName = StandardArgumentDefinitions.INPUT_LONG_NAME, shortName = StandardArgumentDefinitions.INPUT_SHORT_NAME, doc = "The files written by VariantQC using --shard-state-output", optional = false)
+    public List<File> shardStates = new ArrayList<>();
+
+    @Argument(fullName = StandardArgumentDefinitions.PEDIGREE_FILE_LONG_NAME, shortName = StandardArgumentDefinitions.PEDIGREE_FILE_SHORT_NAME, doc="Pedigree file, which is used to display gender", optional=true)
+    private GATKPath pedigreeFile;
+
+    @Argument(fullName = "pedigreeValidationType", shortName = "pedValidationType", doc="The strictness for validating the pedigree.  Can be either STRICT or SILENT.  Default is STRICT", optional=true)
+    private PedigreeValidationType pedigreeValidationType = PedigreeValidationType.STRICT;
+
+    @Argument(doc="File to which the report should be written", fullName = StandardArgumentDefinitions.OUTPUT_LONG_NAME, shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME, optional = false)
+    public File outFile = null;
+
+    @Argument(doc="File to which the raw data will be written as JSON", fullName = "rawData", shortName = "rd", optional = true)
+    public File jsonFile = null;
+
+    @Override
+    public void onTraversalStart() {
+        super.onTraversalStart();
+
+        if (shardStates.isEmpty()) {
+            throw new UserException.BadInput("Must provide at least one VariantQC shard state");
+        }
+
+        shardStates.forEach(IOUtil::assertFileIsReadable);
+        IOUtil.assertFileIsWritable(outFile);
+        if (jsonFile != null) {
+            IOUtil.assertFileIsWritable(jsonFile);
+        }
+    }
+
+    @Override
+    public void traverse() {
+        List<VariantQCShardState> states = new ArrayList<>();
+        for (File f : shardStates) {
+            VariantQCShardState state = VariantQCShardState.read(f);
+            if (!states.isEmpty()) {
+                states.get(0).validateCompatible(state, f);
+            }
+
+            states.add(state);
+        }
+
+        // The shards share the same configuration, so the first is used to create the reports:
+        VariantQCShardState first = states.get(0);
+        List<VariantQC.ReportConfig> configs = new ArrayList<>(VariantQC.getStandardWrappers(!first.getSamples().isEmpty(), first.isMultiVcf()));
+        configs.addAll(VariantQC.getAdditionalReportConfigs(first.getAdditionalReports(), first.isMultiVcf()));
+        Collection<VariantQC.VariantEvalWrapper> wrappers = VariantQC.createWrappers(configs);
+
+        ReportTableMerger merger = new ReportTableMerger();
+        List<List<GATKReportTable>> tablesByWrapper = new ArrayList<>();
+        for (VariantQC.VariantEvalWrapper wrapper : wrappers) {
+            List<List<GATKReportTable>> tablesByShard = new ArrayList<>();
+            for (VariantQCShardState state : states) {
+                tablesByShard.add(wrapper.parseReportTables(state.getReportLines(wrapper.getWrapperKey())));
+            }
+
+            List<GATKReportTable> merged = new ArrayList<>();
+            for (int tableIdx = 0; tableIdx < tablesByShard.get(0).size(); tableIdx++) {
+                List<GATKReportTable> toMerge = new ArrayList<>();
+                for (List<GATKReportTable> shardTables : tablesByShard) {
+                    if (shardTables.size() != tablesByShard.get(0).size()) {
+                        throw new GATKException("The shards do not contain the same number of tables for the stratification: " + wrapper.getWrapperKey());
+                    }
+
+                    toMerge.add(shardTables.get(tableIdx));
+                }
+
+                merged.add(merger.merge(toMerge, wrapper.getStratifications()));
+            }
+
+            tablesByWrapper.add(merged);
+        }
+
+        logger.info("Merged " + states.size() + " VariantQC shards");
+
+        SampleDB sampleDB = VariantQC.createSampleDB(pedigreeValidationType, pedigreeFile, first.getSamples());
+        VariantQC.writeReport(wrappers, tablesByWrapper, sampleDB, outFile, jsonFile);
+    }
+}
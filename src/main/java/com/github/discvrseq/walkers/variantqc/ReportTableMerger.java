@@ -0,0 +1,262 @@
+package com.github.discvrseq.walkers.variantqc;
+
+import htsjdk.samtools.util.StringUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.report.GATKReportColumn;
+import org.broadinstitute.hellbender.utils.report.GATKReportTable;
+
+import java.util.*;
+import java.util.function.ToLongFunction;
+
+/**
+ * Merges the VariantEval tables produced for the same stratifications over different intervals (i.e. the shards of a scatter/gather run) into the table
+ * a single run over all intervals would produce. Rows are matched on the stratification columns. Count columns are summed, and columns derived from these counts
+ * (rates and ratios) are recalculated from the merged counts, using the same formulas as the evaluators.
+ *
+ * A small number of IndelSummary columns are derived from counts that the evaluator does not report, and therefore cannot be recalculated.
+ * These retain their value if all shards agree, and otherwise are reported as NA.
+ */
+public class ReportTableMerger {
+    private static final Logger logger = LogManager.getLogger(ReportTableMerger.class);
+
+    private static final String NA = "NA";
+    private static final String EMPTY_INFO_VALUE = "Empty/Blank";
+
+    private interface DerivedValue {
+        /**
+         * @return The value, which is either a Double or a pre-formatted String, or null if it cannot be calculated from the merged counts
+         */
+        Object calculate(ToLongFunction<String> counts);
+    }
+
+    private static final Map<String, Map<String, DerivedValue>> DERIVED_COLUMNS = new HashMap<>();
+    static {
+        Map<String, DerivedValue> countVariants = new HashMap<>();
+        countVariants.put("variantRate", c -> rate(c.applyAsLong("nVariantLoci"), c.applyAsLong("nProcessedLoci")));
+        countVariants.put("variantRatePerBp", c -> inverseRate(c.applyAsLong("nVariantLoci"), c.applyAsLong("nProcessedLoci")));
+        countVariants.put("heterozygosity", c -> rate(c.applyAsLong("nHets"), c.applyAsLong("nProcessedLoci")));
+        countVariants.put("heterozygosityPerBp", c -> inverseRate(c.applyAsLong("nHets"), c.applyAsLong("nProcessedLoci")));
+        countVariants.put("hetHomRatio", c -> rate(c.applyAsLong("nHets"), c.applyAsLong("nHomVar")));
+        countVariants.put("indelRate", c -> rate(getIndels(c), c.applyAsLong("nProcessedLoci")));
+        countVariants.put("indelRatePerBp", c -> inverseRate(getIndels(c), c.applyAsLong("nProcessedLoci")));
+        countVariants.put("insertionDeletionRatio", c -> rate(c.applyAsLong("nInsertions"), c.applyAsLong("nDeletions")));
+        DERIVED_COLUMNS.put("CountVariants", countVariants);
+
+        Map<String, DerivedValue> tiTv = new HashMap<>();
+        tiTv.put("tiTvRatio", c -> rate(c.applyAsLong("nTi"), c.applyAsLong("nTv")));
+        tiTv.put("TiTvRatioStandard", c -> rate(c.applyAsLong("nTiInComp"), c.applyAsLong("nTvInComp")));
+        tiTv.put("tiTvDerivedRatio", c -> rate(c.applyAsLong("nTiDerived"), c.applyAsLong("nTvDerived")));
+        DERIVED_COLUMNS.put("TiTvVariantEvaluator", tiTv);
+
+        Map<String, DerivedValue> indelSummary = new HashMap<>();
+        indelSummary.put("gold_standard_matching_rate", c -> formattedPercent(c.applyAsLong("n_indels_matching_gold_standard"), c.applyAsLong("n_indels")));
+        indelSummary.put("SNP_to_indel_ratio", c -> formattedRatio(c.applyAsLong("n_SNPs"), c.applyAsLong("n_indels")));
+        indelSummary.put("SNP_to_indel_ratio_for_singletons", c -> formattedRatio(c.applyAsLong("n_singleton_SNPs"), c.applyAsLong("n_singleton_indels")));
+        indelSummary.put("indel_novelty_rate", c -> formattedPercent(c.applyAsLong("n_novel_indels"), c.applyAsLong("n_indels")));
+        indelSummary.put("insertion_to_deletion_ratio", c -> formattedRatio(c.applyAsLong("n_insertions"), c.applyAsLong("n_deletions")));
+        indelSummary.put("insertion_to_deletion_ratio_for_large_indels", c -> formattedRatio(c.applyAsLong("n_large_insertions"), c.applyAsLong("n_large_deletions")));
+        indelSummary.put("frameshift_rate_for_coding_indels", c -> formattedPercent(c.applyAsLong("n_coding_indels_frameshifting"), c.applyAsLong("n_coding_indels_in_frame") + c.applyAsLong("n_coding_indels_frameshifting")));
+
+        // The denominator is the number of indel sites, which is not reported. Without multiallelic sites, this equals the number of indels:
+        indelSummary.put("percent_of_sites_with_more_than_2_alleles", c -> c.applyAsLong("n_multiallelic_indel_sites") == 0 ? formattedPercent(0, c.applyAsLong("n_indels")) : null);
+
+        // These are based on genotype and indel length counts that are not reported:
+        indelSummary.put("SNP_het_to_hom_ratio", c -> null);
+        indelSummary.put("indel_het_to_hom_ratio", c -> null);
+        indelSummary.put("ratio_of_1_and_2_to_3_bp_insertions", c -> null);
+        indelSummary.put("ratio_of_1_and_2_to_3_bp_deletions", c -> null);
+        DERIVED_COLUMNS.put("IndelSummary", indelSummary);
+    }
+
+    // These mirror the helpers used by VariantEvaluator:
+    private static double rate(long n, long d) {
+        return n / (1.0 * Math.max(d, 1));
+    }
+
+    private static double inverseRate(long n, long d) {
+        return n == 0 ? 0 : d / Math.max(n, 1);
+    }
+
+    private static long getIndels(ToLongFunction<String> counts) {
+        return counts.applyAsLong("nInsertions") + counts.applyAsLong("nDeletions") + counts.applyAsLong("nComplex");
+    }
+
+    private static String formattedRatio(long num, long denom) {
+        return denom == 0 ? NA : String.format("%.2f", num / (1.0 * denom));
+    }
+
+    private static String formattedPercent(long x, long total) {
+        return total == 0 ? NA : String.format("%.2f", (100.0 * x) / total);
+    }
+
+    private final Set<String> warnedColumns = new HashSet<>();
+
+    /**
+     * @param tables The same table from each shard. These must have identical columns.
+     * @param stratifications The stratifications used to produce these tables. These, and the evaluator name column, identify a row.
+     * @return A new table with one row per distinct stratum, in the order these are first encountered
+     */
+    public GATKReportTable merge(List<GATKReportTable> tables, List<String> stratifications) {
+        if (tables.isEmpty()) {
+            throw new GATKException("No tables provided");
+        }
+
+        GATKReportTable first = tables.get(0);
+        final String tableName = first.getTableName();
+        final boolean isInfoField = tableName.startsWith(InfoFieldEvaluator.class.getSimpleName() + "-");
+        final String evalModule = isInfoField ? InfoFieldEvaluator.class.getSimpleName() : tableName;
+
+        List<GATKReportColumn> columns = new ArrayList<>(first.getColumnInfo());
+        List<String> keyColumns = new ArrayList<>();
+        List<Integer> keyColumnIdxs = new ArrayList<>();
+        int valueIdx = -1;
+        for (int i = 0; i < columns.size(); i++) {
+            String colName = columns.get(i).getColumnName();
+            if (isInfoField && "Value".equals(colName)) {
+                valueIdx = i;
+            }
+
+            if (i == 0 || stratifications.contains(colName) || i == valueIdx) {
+                keyColumns.add(colName);
+                keyColumnIdxs.add(i);
+            }
+        }
+
+        // Collect the values for each stratum. Rows are held as strings, which is how GATKReportTable stores values parsed from a report:
+        Map<String, List<String[]>> rowsByKey = new LinkedHashMap<>();
+        for (GATKReportTable table : tables) {
+            if (!tableName.equals(table.getTableName()) || table.getColumnInfo().size() != columns.size()) {
+                throw new GATKException("The shards do not contain the same tables for: " + tableName);
+            }
+
+            for (int rowIdx = 0; rowIdx < table.getNumRows(); rowIdx++) {
+                String[] row = new String[columns.size()];
+                for (int colIdx = 0; colIdx < columns.size(); colIdx++) {
+                    row[colIdx] = String.valueOf(table.get(rowIdx, columns.get(colIdx).getColumnName()));
+                }
+
+                List<String> key = new ArrayList<>();
+                keyColumnIdxs.forEach(idx -> key.add(row[idx]));
+
+                rowsByKey.computeIfAbsent(StringUtil.join(";", key), k -> new ArrayList<>()).add(row);
+            }
+        }
+
+        if (valueIdx > -1) {
+            removeEmptyInfoFieldRows(rowsByKey, valueIdx, keyColumnIdxs);
+        }
+
+        Map<String, DerivedValue> derivedColumns = DERIVED_COLUMNS.getOrDefault(evalModule, Collections.emptyMap());
+        GATKReportTable ret = new GATKReportTable(tableName, first.getTableDescription(), columns.size());
+        for (GATKReportColumn col : columns) {
+            ret.addColumn(col.getColumnName(), col.getFormat());
+        }
+
+        int rowIdx = 0;
+        for (List<String[]> rows : rowsByKey.values()) {
+            Map<String, Long> counts = new HashMap<>();
+            for (int colIdx = 0; colIdx < columns.size(); colIdx++) {
+                GATKReportColumn col = columns.get(colIdx);
+                if (keyColumns.contains(col.getColumnName())) {
+                    ret.set(rowIdx, col.getColumnName(), rows.get(0)[colIdx]);
+                }
+                else if (!derivedColumns.containsKey(col.getColumnName())) {
+                    long total = sumColumn(rows, colIdx, tableName, col.getColumnName());
+                    counts.put(col.getColumnName(), total);
+                    ret.set(rowIdx, col.getColumnName(), formatValue(col.getFormat(), total));
+                }
+            }
+
+            for (int colIdx = 0; colIdx < columns.size(); colIdx++) {
+                GATKReportColumn col = columns.get(colIdx);
+                DerivedValue dv = derivedColumns.get(col.getColumnName());
+                if (dv == null || keyColumns.contains(col.getColumnName())) {
+                    continue;
+                }
+
+                Object val = dv.calculate(colName -> {
+                    Long count = counts.get(colName);
+                    if (count == null) {
+                        throw new GATKException("Table " + tableName + " lacks the column: " + colName);
+                    }
+
+                    return count;
+                });
+
+                ret.set(rowIdx, col.getColumnName(), val == null ? getAgreedValue(rows, colIdx, tableName, col.getColumnName()) : formatValue(col.getFormat(), val));
+            }
+
+            rowIdx++;
+        }
+
+        return ret;
+    }
+
+    private static long sumColumn(List<String[]> rows, int colIdx, String tableName, String colName) {
+        long total = 0;
+        for (String[] row : rows) {
+            try {
+                total += Long.parseLong(row[colIdx]);
+            }
+            catch (NumberFormatException e) {
+                throw new GATKException("Unable to merge the column " + colName + " of table " + tableName + " across shards, expected an integer count but found: " + row[colIdx]);
+            }
+        }
+
+        return total;
+    }
+
+    private String getAgreedValue(List<String[]> rows, int colIdx, String tableName, String colName) {
+        String val = rows.get(0)[colIdx];
+        for (String[] row : rows) {
+            if (!val.equals(row[colIdx])) {
+                if (warnedColumns.add(tableName + "." + colName)) {
+                    logger.warn("The column " + colName + " of table " + tableName + " cannot be recalculated from the merged counts, and differs between shards. It will be reported as " + NA);
+                }
+
+                return NA;
+            }
+        }
+
+        return val;
+    }
+
+    private static String formatValue(String format, Object val) {
+        if (val instanceof String) {
+            return (String)val;
+        }
+
+        Number n = (Number)val;
+        if (format.endsWith("d") || (format.endsWith("s") && val instanceof Long)) {
+            return String.format(format, n.longValue());
+        }
+
+        return String.format(format, n.doubleValue());
+    }
+
+    /**
+     * InfoFieldEvaluator reports a single Empty/Blank row for a stratum only if no values were found. After merging, drop this row from any stratum that has values.
+     */
+    private static void removeEmptyInfoFieldRows(Map<String, List<String[]>> rowsByKey, int valueIdx, List<Integer> keyColumnIdxs) {
+        List<Integer> strataIdxs = new ArrayList<>(keyColumnIdxs);
+        strataIdxs.remove(Integer.valueOf(valueIdx));
+
+        Set<String> strataWithValues = new HashSet<>();
+        Map<String, String> strataByKey = new HashMap<>();
+        for (Map.Entry<String, List<String[]>> e : rowsByKey.entrySet()) {
+            String[] row = e.getValue().get(0);
+            List<String> strata = new ArrayList<>();
+            strataIdxs.forEach(i -> strata.add(row[i]));
+            String strataKey = StringUtil.join(";", strata);
+            strataByKey.put(e.getKey(), strataKey);
+
+            if (!EMPTY_INFO_VALUE.equals(row[valueIdx])) {
+                strataWithValues.add(strataKey);
+            }
+        }
+
+        rowsByKey.entrySet().removeIf(e -> EMPTY_INFO_VALUE.equals(e.getValue().get(0)[valueIdx]) && strataWithValues.contains(strataByKey.get(e.getKey())));
+    }
+}
@@ -35,15 +35,22 @@ import org.broadinstitute.hellbender.utils.samples.PedigreeValidationType;
 import org.broadinstitute.hellbender.utils.samples.SampleDB;
 import org.broadinstitute.hellbender.utils.samples.SampleDBBuilder;
 
+import javax.annotation.Nullable;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.StringReader;
 import java.lang.reflect.Field;
 import java.util.*;
-import java.util.concurrent.Callable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 /**
@@ -136,6 +143,22 @@ import java.util.stream.Collectors;
  * By Contig	Example Report2	Sample,Contig	PURPOSE
  * </pre>
  *
+ * <h4>Scatter/gather across intervals:</h4>
+ * For large VCFs, VariantQC can be run separately on non-overlapping intervals using --shard-state-output, and the results merged into one report using GatherVariantQC:
+ * <pre>
+ * java -jar DISCVRSeq.jar VariantQC \
+ *     -R human_g1k_v37.fasta \
+ *     -V input.vcf.gz \
+ *     -L 1 \
+ *     --shard-state-output shard1.variantqc.gz \
+ *     -O shard1.html
+ *
+ * java -jar DISCVRSeq.jar GatherVariantQC \
+ *     -I shard1.variantqc.gz \
+ *     -I shard2.variantqc.gz \
+ *     -O output.html
+ * </pre>
+ *
  * <h4>Other Usage Suggestions:</h4>
  * Upstream processing of your VCF can enhance the value of the VariantQC report for your data. Our group routinely performs quality filtering on our VCFs, which saves information about the filter type in the FILTER field (<a href="https://software.broadinstitute.org/gatk/documentation/tooldocs/3.8-0/org_broadinstitute_gatk_tools_walkers_filters_VariantFiltration.php"></a>see VariantFiltration</a>).  FilterType is used to stratify data in VariantQC, allowing us to view sample, VCF, or chromosome differences.
  * <br><br>
@@ -181,12 +204,18 @@ public class VariantQC extends MultiVariantWalkerGroupedOnStart {
     @Argument(fullName = "contigsToRetain", doc="If --maxContigs is used, the first X contigs, are retained, sorted by length and preferentially retaining the longest contigs. This can be used to specify one or more additional contigs that are retained, even if they would otherwise be removed.", optional=true)
     public List<String> contigsToRetain = new ArrayList<>(Collections.singletonList("MT"));
 
-    @Argument(fullName = "threads", doc="The number of threads to use.", optional=true)
+    @Argument(fullName = "raw-report-dir", doc="This is intended for debugging. If provided, the GATKReport produced by each internal VariantEval instance will be written to this directory and retained. Without it, each report is still written to a temp file and parsed back, since VariantEval only exposes its results as a file.", optional=true)
+    public File rawReportDir = null;
+
+    @Argument(fullName = "threads", doc="The number of threads to use. If greater than one, the VariantEval instances are divided between this many workers, each of which evaluates every site for its own instances.", optional=true)
     public int threads = 1;
 
+    @Argument(fullName = "shard-state-output", doc="If provided, the data for this run will also be written to this file, which can be merged with the output of other runs using GatherVariantQC. This is intended to scatter VariantQC across non-overlapping intervals (-L) of the same VCF(s). A .gz extension is recommended, which will compress the output.", optional=true)
+    public File shardStateOutput = null;
+
     private SampleDB sampleDB = null;
 
-    private List<ReportConfig> getStandardWrappers(boolean hasSamples, boolean isMultiVcf) {
+    static List<ReportConfig> getStandardWrappers(boolean hasSamples, boolean isMultiVcf) {
         PivotingTransformer transformer1 = new PivotingTransformer("CountVariants", Arrays.asList("Sample"), isMultiVcf, Arrays.asList(new PivotingTransformer.Pivot("FilterType", "nVariantLoci", null)));
         PivotingTransformer transformer2 = new PivotingTransformer("CountVariants", Arrays.asList("Sample"), isMultiVcf, Arrays.asList(new PivotingTransformer.Pivot("Contig", "nVariantLoci", null)), true);
         PivotingTransformer transformer3 = new PivotingTransformer("CountVariants", Arrays.asList("Contig"), isMultiVcf, Arrays.asList(new PivotingTransformer.Pivot("FilterType", "nVariantLoci", null)));
@@ -231,6 +260,7 @@ public class VariantQC extends MultiVariantWalkerGroupedOnStart {
     }
 
     private Collection<VariantEvalWrapper> wrappers = new ArrayList<>();
+    private List<List<String>> additionalReports = new ArrayList<>();
 
     private Collection<VariantEvalWrapper> initializeReports()  {
         List<ReportConfig> configs = new ArrayList<>();
@@ -239,9 +269,14 @@ public class VariantQC extends MultiVariantWalkerGroupedOnStart {
         if (additionalReportFile != null) {
             IOUtil.assertFileIsReadable(additionalReportFile);
 
-            configs.addAll(parseReportFile(additionalReportFile));
+            additionalReports = parseReportFile(additionalReportFile);
+            configs.addAll(getAdditionalReportConfigs(additionalReports, isMultiVcf()));
         }
 
+        return createWrappers(configs);
+    }
+
+    static Collection<VariantEvalWrapper> createWrappers(List<ReportConfig> configs) {
         //preserve order to make resulting JSON consistent for test purposes
         Map<String, VariantEvalWrapper> reports = new LinkedHashMap<>();
         for (ReportConfig rc : configs) {
@@ -259,8 +294,12 @@ public class VariantQC extends MultiVariantWalkerGroupedOnStart {
         return getDrivingVariantsFeatureInputs().size() > 1;
     }
 
-    private List<ReportConfig> parseReportFile(File input) {
-        List<ReportConfig> ret = new ArrayList<>();
+    /**
+     * Parses and validates the additional report file.
+     * @return One row per report, holding the section label, report label, comma-separated stratifications and INFO field
+     */
+    private List<List<String>> parseReportFile(File input) {
+        List<List<String>> ret = new ArrayList<>();
 
         VCFHeader header = getHeaderForVariants();
         Map<String, Class<? extends VariantStratifier>> classMap = new HashMap<>(VariantEvalEngine.getStratifierClasses());
@@ -297,7 +336,6 @@ public class VariantQC extends MultiVariantWalkerGroupedOnStart {
                     throw new UserException.BadInput("Field " + infoField + " was not a supported type (line " + i + " of report config file).  Currently supported types are Character, String and Integer");
                 }
 
-                TableReportDescriptor rd = new TableReportDescriptor.InfoFieldTableReportDescriptor(reportLabel, sectionLabel, isMultiVcf(), infoField);
                 List<String> stratList = new ArrayList<>(Arrays.asList(stratifiers.split(",")));
 
                 //allow user-friendly translation:
@@ -320,7 +358,7 @@ public class VariantQC extends MultiVariantWalkerGroupedOnStart {
                     }
                 }
 
-                ret.add(new ReportConfig(stratList, rd));
+                ret.add(Arrays.asList(sectionLabel, reportLabel, StringUtils.join(stratList, ","), infoField));
             }
         }
         catch (CsvValidationException | IOException e) {
@@ -330,6 +368,16 @@ public class VariantQC extends MultiVariantWalkerGroupedOnStart {
         return ret;
     }
 
+    static List<ReportConfig> getAdditionalReportConfigs(List<List<String>> additionalReports, boolean isMultiVcf) {
+        List<ReportConfig> ret = new ArrayList<>();
+        for (List<String> row : additionalReports) {
+            TableReportDescriptor rd = new TableReportDescriptor.InfoFieldTableReportDescriptor(row.get(1), row.get(0), isMultiVcf, row.get(3));
+            ret.add(new ReportConfig(Arrays.asList(row.get(2).split(",")), rd));
+        }
+
+        return ret;
+    }
+
     public static class ReportConfig {
         ArrayList<String> stratifiers;
         ReportDescriptor rd;
@@ -355,7 +403,15 @@ public class VariantQC extends MultiVariantWalkerGroupedOnStart {
             IOUtil.assertFileIsWritable(json);
         }
 
-        sampleDB = initializeSampleDB();
+        if (rawReportDir != null) {
+            IOUtil.assertDirectoryIsWritable(rawReportDir);
+        }
+
+        if (shardStateOutput != null) {
+            IOUtil.assertFileIsWritable(shardStateOutput);
+        }
+
+        sampleDB = createSampleDB(pedigreeValidationType, pedigreeFile, getSamplesForVariants());
 
         if (isMultiVcf()) {
             Set<String> unique = new HashSet<>();
@@ -381,25 +437,100 @@ public class VariantQC extends MultiVariantWalkerGroupedOnStart {
         }
 
         if (threads > 1) {
-            executor = Executors.newScheduledThreadPool(threads);
+            int totalWorkers = Math.min(threads, this.wrappers.size());
+            logger.info("Evaluating variants using " + totalWorkers + " workers");
+
+            executor = Executors.newFixedThreadPool(totalWorkers);
+            workers = new ArrayList<>();
+            for (int i = 0; i < totalWorkers; i++) {
+                workers.add(new EvalWorker());
+            }
+
+            // Assign VariantEval instances round-robin. Each is only ever used by one worker:
+            int i = 0;
+            for (VariantEvalWrapper wrapper : this.wrappers) {
+                workers.get(i % totalWorkers).wrappers.add(wrapper);
+                i++;
+            }
+
+            workers.forEach(executor::execute);
         }
     }
 
-    ScheduledExecutorService executor = null;
+    // Sites are handed to workers in small batches, and each worker's queue is bounded, so the traversal stays at most a few batches ahead of the slowest worker:
+    private static final int SITES_PER_BATCH = 10;
+    private static final int BATCHES_PER_QUEUE = 4;
 
-    @Override
-    public void apply(final List<VariantContext> list, final ReferenceContext referenceContext, final List<ReadsContext> readsContexts) {
-        if (executor != null) {
-            List<ApplyRunner> toRun = new ArrayList<>();
-            for (final VariantEvalWrapper wrapper : this.wrappers) {
-                toRun.add(new ApplyRunner(list, referenceContext, wrapper));
-            }
+    private ExecutorService executor = null;
+    private List<EvalWorker> workers = null;
+    private List<EvalSite> pendingBatch = new ArrayList<>(SITES_PER_BATCH);
+    private final AtomicReference<Throwable> workerError = new AtomicReference<>(null);
+
+    private static final List<EvalSite> END_OF_INPUT = new ArrayList<>();
+
+    private static class EvalSite {
+        final List<VariantContext> variants;
+        final ReferenceContext referenceContext;
 
+        public EvalSite(List<VariantContext> variants, ReferenceContext referenceContext) {
+            this.variants = variants;
+            this.referenceContext = referenceContext;
+        }
+    }
+
+    /**
+     * Owns a fixed subset of the VariantEval instances, and applies every site to these, in order. Since no engine is shared between workers,
+     * workers do not wait on each other, and a slow instance only delays the worker that owns it.
+     */
+    private class EvalWorker implements Runnable {
+        private final List<VariantEvalWrapper> wrappers = new ArrayList<>();
+        private final BlockingQueue<List<EvalSite>> queue = new ArrayBlockingQueue<>(BATCHES_PER_QUEUE);
+
+        @Override
+        public void run() {
             try {
-                executor.invokeAll(toRun);
+                List<EvalSite> batch;
+                while ((batch = queue.take()) != END_OF_INPUT) {
+                    // After an error, continue draining the queue so the traversal does not block:
+                    if (workerError.get() != null) {
+                        continue;
+                    }
+
+                    try {
+                        for (EvalSite site : batch) {
+                            for (VariantEvalWrapper wrapper : wrappers) {
+                                wrapper.engine.apply(site.variants, site.referenceContext);
+                            }
+                        }
+                    }
+                    catch (Throwable e) {
+                        workerError.compareAndSet(null, e);
+                    }
+                }
             }
             catch (InterruptedException e) {
-                throw new IllegalStateException("Error running VariantQC", e);
+                workerError.compareAndSet(null, e);
+            }
+        }
+    }
+
+    @Override
+    public void apply(final List<VariantContext> list, final ReferenceContext referenceContext, final List<ReadsContext> readsContexts) {
+        if (executor != null) {
+            checkForWorkerError();
+
+            // NOTE: ensureAnnotations() mutates the VC and decodes its genotypes, which is not thread-safe, so call this one time, upfront.
+            // The result does not depend on the engine, so it is shared by all workers:
+            VariantEvalEngine engine = this.wrappers.iterator().next().engine;
+            List<VariantContext> annotated = list.stream().map(vc -> engine.ensureAnnotations(vc, vc)).collect(Collectors.toList());
+
+            // The engine's ReferenceContext is reused for the next site, so copy it, and read the bases here rather than from the worker threads:
+            ReferenceContext siteReference = new ReferenceContext(referenceContext, referenceContext.getInterval());
+            siteReference.getBases();
+
+            pendingBatch.add(new EvalSite(annotated, siteReference));
+            if (pendingBatch.size() >= SITES_PER_BATCH) {
+                submitPendingBatch();
             }
         }
         else {
@@ -409,80 +540,130 @@ public class VariantQC extends MultiVariantWalkerGroupedOnStart {
         }
     }
 
-    public static class ApplyRunner implements Callable<Boolean> {
-        final List<VariantContext> list;
-        final ReferenceContext referenceContext;
-        final VariantEvalWrapper wrapper;
+    private void submitPendingBatch() {
+        if (pendingBatch.isEmpty()) {
+            return;
+        }
 
-        public ApplyRunner(final List<VariantContext> list, final ReferenceContext referenceContext, final VariantEvalWrapper wrapper) {
-            // NOTE: ensureAnnotations() mutates the VC, so call this one time, upfront:
-            this.list = list.stream().map(vc -> wrapper.engine.ensureAnnotations(vc, vc)).collect(Collectors.toList());
-            this.referenceContext = new ReferenceContext(referenceContext, referenceContext.getInterval());
-            this.wrapper = wrapper;
+        // The same batch is shared by all workers, and is not modified after this point:
+        final List<EvalSite> batch = Collections.unmodifiableList(pendingBatch);
+        pendingBatch = new ArrayList<>(SITES_PER_BATCH);
+        for (EvalWorker worker : workers) {
+            putBatch(worker, batch);
         }
+    }
 
-        @Override
-        public Boolean call() throws Exception {
-            wrapper.engine.apply(list, referenceContext);
+    private void putBatch(EvalWorker worker, List<EvalSite> batch) {
+        try {
+            worker.queue.put(batch);
+        }
+        catch (InterruptedException e) {
+            throw new IllegalStateException("Error running VariantQC", e);
+        }
+    }
 
-            return true;
+    private void checkForWorkerError() {
+        Throwable e = workerError.get();
+        if (e != null) {
+            if (e instanceof GATKException ge) {
+                throw ge;
+            }
+
+            throw new GATKException("Error running VariantQC", e);
         }
     }
 
     @Override
     public Object onTraversalSuccess() {
         if (executor != null) {
+            submitPendingBatch();
+            workers.forEach(worker -> putBatch(worker, END_OF_INPUT));
             executor.shutdown();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    logger.info("Waiting for VariantEval workers to finish");
+                }
+            }
+            catch (InterruptedException e) {
+                throw new IllegalStateException("Error running VariantQC", e);
+            }
+
+            checkForWorkerError();
         }
 
-        //TODO: option to write to disk
-        for (VariantEvalWrapper wrapper : this.wrappers){
-            wrapper.engine.finalizeReport(wrapper.getOutFile());
+        List<File> reportFiles = finalizeReports();
+        List<List<GATKReportTable>> tablesByWrapper = new ArrayList<>();
+        try {
+            // Only the shard state needs the text of each report, so it is only held in memory in that case:
+            if (shardStateOutput != null) {
+                Map<String, List<String>> reportLinesByKey = new LinkedHashMap<>();
+                int wrapperIdx = 0;
+                for (VariantEvalWrapper wrapper : this.wrappers) {
+                    reportLinesByKey.put(wrapper.getWrapperKey(), readReportLines(reportFiles.get(wrapperIdx)));
+                    wrapperIdx++;
+                }
+
+                logger.info("Writing shard state to: " + shardStateOutput.getPath());
+                new VariantQCShardState(isMultiVcf(), new ArrayList<>(getSamplesForVariants()), additionalReports, reportLinesByKey).write(shardStateOutput);
+            }
+
+            int wrapperIdx = 0;
+            for (VariantEvalWrapper wrapper : this.wrappers) {
+                tablesByWrapper.add(wrapper.parseReportTables(reportFiles.get(wrapperIdx)));
+                wrapperIdx++;
+            }
         }
+        finally {
+            if (rawReportDir == null) {
+                reportFiles.forEach(File::delete);
+            }
+        }
+
+        writeReport(this.wrappers, tablesByWrapper, sampleDB, new File(outFile), jsonFile == null ? null : new File(jsonFile));
 
+        return super.onTraversalSuccess();
+    }
+
+    /**
+     * Renders the HTML report, and optionally the JSON, from the tables produced by each VariantEval instance. The tables are in the same order as the wrappers.
+     */
+    static void writeReport(Collection<VariantEvalWrapper> wrappers, List<List<GATKReportTable>> tablesByWrapper, SampleDB sampleDB, File outFile, @Nullable File jsonFile) {
         Map<String, SectionJsonDescriptor> sectionMap = new LinkedHashMap<>();
         Map<String, Class<? extends VariantEvaluator>> classMap = VariantEvalEngine.getEvaluatorClasses();
 
-        for (VariantEvalWrapper wrapper : this.wrappers) {
-            try (BufferedReader sampleReader = IOUtil.openFileForBufferedUtf8Reading(wrapper.outFile)) {
-                sampleReader.readLine(); //read first GATKReport line
+        int wrapperIdx = 0;
+        for (VariantEvalWrapper wrapper : wrappers) {
+            for (GATKReportTable table : tablesByWrapper.get(wrapperIdx)) {
+                List<ReportDescriptor> rds = wrapper.getReportsForModule(table.getTableName());
+                Map<String, String> descriptionMap = new HashMap<>();
+                Class<? extends VariantEvaluator> evalClass = classMap.get(table.getTableName());
 
-                for (int i=0; i<wrapper.getEvaluationModules().size(); i++){
-                    //NOTE: this output will have one table per eval module. Iterate
-                    GATKReportTable table = new GATKReportTable(sampleReader, GATKReportVersion.V1_1);
-                    List<ReportDescriptor> rds = wrapper.getReportsForModule(table.getTableName());
-                    Map<String, String> descriptionMap = new HashMap<>();
-                    Class<? extends VariantEvaluator> evalClass = classMap.get(table.getTableName());
+                //TODO improve this when refactoring VariantEvalEngine
+                if (evalClass == null && table.getTableName().startsWith(InfoFieldEvaluator.class.getSimpleName() + "-")) {
+                    evalClass = InfoFieldEvaluator.class;
+                }
 
-                    //TODO improve this when refactoring VariantEvalEngine
-                    if (evalClass == null && table.getTableName().startsWith(InfoFieldEvaluator.class.getSimpleName() + "-")) {
-                        evalClass = InfoFieldEvaluator.class;
+                if (evalClass != null){
+                    AnalysisModuleScanner scanner = new AnalysisModuleScanner(evalClass);
+                    Map<Field, DataPoint> fieldDataPointMap = scanner.getData();
+                    for (Field f : fieldDataPointMap.keySet()){
+                        descriptionMap.put(f.getName(), fieldDataPointMap.get(f).description());
                     }
+                }
+                if (rds.isEmpty()){
+                    throw new GATKException("No report registered for GATK table: " + table.getTableName());
+                }
 
-                    if (evalClass != null){
-                        AnalysisModuleScanner scanner = new AnalysisModuleScanner(evalClass);
-                        Map<Field, DataPoint> fieldDataPointMap = scanner.getData();
-                        for (Field f : fieldDataPointMap.keySet()){
-                            descriptionMap.put(f.getName(), fieldDataPointMap.get(f).description());
-                        }
-                    }
-                    if (rds.isEmpty()){
-                        throw new GATKException("No report registered for GATK table: " + table.getTableName());
+                for (ReportDescriptor rd : rds){
+                    if (!sectionMap.containsKey(rd.sectionLabel)){
+                        sectionMap.put(rd.sectionLabel, new SectionJsonDescriptor(rd.sectionLabel, wrapper.stratifications));
                     }
 
-                    for (ReportDescriptor rd : rds){
-                        if (!sectionMap.containsKey(rd.sectionLabel)){
-                            sectionMap.put(rd.sectionLabel, new SectionJsonDescriptor(rd.sectionLabel, wrapper.stratifications));
-                        }
-
-                        sectionMap.get(rd.sectionLabel).addReportDescriptor(rd, table, descriptionMap, sampleDB);
-                    }
+                    sectionMap.get(rd.sectionLabel).addReportDescriptor(rd, table, descriptionMap, sampleDB);
                 }
-            } catch (IOException e) {
-                throw new GATKException(e.getMessage(), e);
             }
 
-            wrapper.outFile.delete();
+            wrapperIdx++;
         }
 
         try {
@@ -490,7 +671,7 @@ public class VariantQC extends MultiVariantWalkerGroupedOnStart {
 
             sectionMap.keySet().forEach(key -> sections.add(sectionMap.get(key)));
 
-            try (PrintWriter writer = new PrintWriter(IOUtil.openFileForBufferedUtf8Writing(new File(outFile))); PrintWriter jsonWriter = (jsonFile == null ? null : new PrintWriter(IOUtil.openFileForBufferedUtf8Writing(new File(jsonFile))))) {
+            try (PrintWriter writer = new PrintWriter(IOUtil.openFileForBufferedUtf8Writing(outFile)); PrintWriter jsonWriter = (jsonFile == null ? null : new PrintWriter(IOUtil.openFileForBufferedUtf8Writing(jsonFile)))) {
                 HtmlGenerator generator = new HtmlGenerator();
                 generator.generateHtml(sections, writer, jsonWriter);
             }
@@ -498,21 +679,78 @@ public class VariantQC extends MultiVariantWalkerGroupedOnStart {
         catch (IOException e){
             throw new GATKException(e.getMessage(), e);
         }
+    }
 
-        return super.onTraversalSuccess();
+    /**
+     * Finalizes each VariantEval instance and returns the file holding its GATKReport, in the same order as the wrappers. Since the instances are independent,
+     * this runs in parallel when more than one thread is used.
+     */
+    private List<File> finalizeReports() {
+        if (threads == 1) {
+            return this.wrappers.stream().map(wrapper -> wrapper.finalizeReport(rawReportDir)).collect(Collectors.toList());
+        }
+
+        ExecutorService reportExecutor = Executors.newFixedThreadPool(Math.min(threads, this.wrappers.size()));
+        try {
+            List<Future<File>> futures = new ArrayList<>();
+            for (VariantEvalWrapper wrapper : this.wrappers) {
+                futures.add(reportExecutor.submit(() -> wrapper.finalizeReport(rawReportDir)));
+            }
+
+            List<File> ret = new ArrayList<>();
+            for (Future<File> future : futures) {
+                ret.add(future.get());
+            }
+
+            return ret;
+        }
+        catch (InterruptedException | ExecutionException e) {
+            if (e.getCause() instanceof GATKException ge) {
+                throw ge;
+            }
+
+            throw new GATKException("Error generating VariantQC reports", e);
+        }
+        finally {
+            reportExecutor.shutdownNow();
+        }
+    }
+
+    private static List<String> readReportLines(File reportFile) {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = IOUtil.openFileForBufferedUtf8Reading(reportFile)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        catch (IOException e) {
+            throw new GATKException(e.getMessage(), e);
+        }
+
+        return lines;
+    }
+
+    @Override
+    public void closeTool() {
+        if (executor != null && !executor.isTerminated()) {
+            executor.shutdownNow();
+        }
+
+        super.closeTool();
     }
 
     public static class VariantEvalWrapper {
         private VariantEvalEngine engine;
-        //private ByteArrayOutputStream out = new ByteArrayOutputStream();
-        private File outFile = IOUtils.createTempFile("variantQC_data", ".txt");
 
+        private final String wrapperKey;
         private List<String> stratifications;
         private Set<String> evaluationModules = new HashSet<>();
         private List<String> infoFields = new ArrayList<>();
         private List<ReportDescriptor> reportDescriptors = new ArrayList<>();
 
         public VariantEvalWrapper(List<String> stratifications) {
+            this.wrapperKey = StringUtils.join(stratifications, ";");
             this.stratifications = new ArrayList<>();
             this.stratifications.add("Filter");
             this.stratifications.addAll(stratifications);
@@ -529,6 +767,14 @@ public class VariantQC extends MultiVariantWalkerGroupedOnStart {
             }
         }
 
+        public String getWrapperKey() {
+            return wrapperKey;
+        }
+
+        public List<String> getStratifications() {
+            return Collections.unmodifiableList(stratifications);
+        }
+
         public Set<String> getEvaluationModules() {
             Set<String> ret = new TreeSet<>(evaluationModules);
             infoFields.forEach(x -> ret.add(TableReportDescriptor.InfoFieldTableReportDescriptor.getEvalModuleSimpleName(x)));
@@ -547,10 +793,54 @@ public class VariantQC extends MultiVariantWalkerGroupedOnStart {
             return ret;
         }
 
-        public File getOutFile() {
+        /**
+         * Finalizes the engine and returns the file holding its GATKReport. The tables are not handed over in memory: VariantEvalEngine only exposes
+         * its results through finalizeReport(File), and VariantEvalReportWriter keeps its GATKReport private. The text report is therefore the transport,
+         * and is written to a temp file, which the caller should delete after parsing it. If rawReportDir is provided, the GATKReport is written there and retained.
+         */
+        public File finalizeReport(@Nullable File rawReportDir) {
+            File outFile = rawReportDir == null ? IOUtils.createTempFile("variantQC_data", ".txt") : new File(rawReportDir, "variantQC_" + StringUtils.join(stratifications, "_") + ".gatkreport.txt");
+            engine.finalizeReport(outFile);
+
             return outFile;
         }
 
+        /**
+         * @return One table per evaluation module, parsed from the GATKReport file
+         */
+        public List<GATKReportTable> parseReportTables(File reportFile) {
+            try (BufferedReader sampleReader = IOUtil.openFileForBufferedUtf8Reading(reportFile)) {
+                return parseReportTables(sampleReader);
+            }
+            catch (IOException e) {
+                throw new GATKException(e.getMessage(), e);
+            }
+        }
+
+        /**
+         * @return One table per evaluation module, parsed from the lines of the GATKReport
+         */
+        public List<GATKReportTable> parseReportTables(List<String> reportLines) {
+            try (BufferedReader sampleReader = new BufferedReader(new StringReader(StringUtils.join(reportLines, "\n") + "\n"))) {
+                return parseReportTables(sampleReader);
+            }
+            catch (IOException e) {
+                throw new GATKException(e.getMessage(), e);
+            }
+        }
+
+        private List<GATKReportTable> parseReportTables(BufferedReader sampleReader) throws IOException {
+            List<GATKReportTable> tables = new ArrayList<>();
+            sampleReader.readLine(); //read first GATKReport line
+
+            for (int i = 0; i < getEvaluationModules().size(); i++) {
+                //NOTE: this output will have one table per eval module. Iterate
+                tables.add(new GATKReportTable(sampleReader, GATKReportVersion.V1_1));
+            }
+
+            return tables;
+        }
+
         public void configureEngine(VariantQC variantQC) {
 
             VariantEvalArgumentCollection args = new VariantEvalArgumentCollection();
@@ -571,12 +861,11 @@ public class VariantQC extends MultiVariantWalkerGroupedOnStart {
         }
     }
 
-    private SampleDB initializeSampleDB() {
+    static SampleDB createSampleDB(PedigreeValidationType pedigreeValidationType, @Nullable GATKPath pedigreeFile, @Nullable Collection<String> samples) {
         final SampleDBBuilder sampleDBBuilder = new SampleDBBuilder(pedigreeValidationType);
         if (pedigreeFile != null)
             sampleDBBuilder.addSamplesFromPedigreeFiles(Collections.singletonList(pedigreeFile));
 
-        Collection<String> samples = getSamplesForVariants();
         if (samples != null) {
             sampleDBBuilder.addSamplesFromSampleNames(samples);
         }
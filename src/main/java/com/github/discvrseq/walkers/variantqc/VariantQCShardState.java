@@ -0,0 +1,156 @@
+package com.github.discvrseq.walkers.variantqc;
+
+import htsjdk.samtools.util.IOUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.exceptions.UserException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * The output of one VariantQC shard, which can be merged with the other shards of a scatter/gather run by {@link GatherVariantQC}.
+ * This holds the report configuration, and the GATKReport produced by each internal VariantEval instance over the shard's intervals.
+ *
+ * This is written as a text file, gzipped if the filename ends in .gz, with the configuration on lines beginning with '#', followed by each GATKReport:
+ * <pre>
+ * #VariantQCShardState	1
+ * #MultiVcf	false
+ * #Samples	Sample1	Sample2
+ * #AdditionalReport	SectionLabel	ReportLabel	Strat1,Strat2	INFO_FIELD
+ * #VariantEval	Filter;Sample	[number of lines]
+ * [GATKReport lines]
+ * </pre>
+ */
+public class VariantQCShardState {
+    private static final String HEADER = "#VariantQCShardState";
+    private static final String VERSION = "1";
+    private static final String MULTI_VCF = "#MultiVcf";
+    private static final String SAMPLES = "#Samples";
+    private static final String ADDITIONAL_REPORT = "#AdditionalReport";
+    private static final String VARIANT_EVAL = "#VariantEval";
+
+    private final boolean isMultiVcf;
+    private final List<String> samples;
+    private final List<List<String>> additionalReports;
+    private final Map<String, List<String>> reportLinesByWrapper;
+
+    public VariantQCShardState(boolean isMultiVcf, List<String> samples, List<List<String>> additionalReports, Map<String, List<String>> reportLinesByWrapper) {
+        this.isMultiVcf = isMultiVcf;
+        this.samples = samples;
+        this.additionalReports = additionalReports;
+        this.reportLinesByWrapper = reportLinesByWrapper;
+    }
+
+    public boolean isMultiVcf() {
+        return isMultiVcf;
+    }
+
+    public List<String> getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return The validated rows of the --additionalReportFile, each with the section label, report label, comma-separated stratifications and INFO field
+     */
+    public List<List<String>> getAdditionalReports() {
+        return additionalReports;
+    }
+
+    public List<String> getReportLines(String wrapperKey) {
+        List<String> lines = reportLinesByWrapper.get(wrapperKey);
+        if (lines == null) {
+            throw new UserException.BadInput("The VariantQC shard state lacks data for the stratification: " + wrapperKey);
+        }
+
+        return lines;
+    }
+
+    /**
+     * @return The configuration lines, which must be identical for all shards of a run
+     */
+    private List<String> getConfigLines() {
+        List<String> ret = new ArrayList<>();
+        ret.add(HEADER + "\t" + VERSION);
+        ret.add(MULTI_VCF + "\t" + isMultiVcf);
+        ret.add(SAMPLES + (samples.isEmpty() ? "" : "\t" + StringUtils.join(samples, "\t")));
+        for (List<String> row : additionalReports) {
+            ret.add(ADDITIONAL_REPORT + "\t" + StringUtils.join(row, "\t"));
+        }
+
+        return ret;
+    }
+
+    public void write(File output) {
+        try (PrintWriter writer = new PrintWriter(IOUtil.openFileForBufferedUtf8Writing(output))) {
+            getConfigLines().forEach(writer::println);
+
+            for (Map.Entry<String, List<String>> e : reportLinesByWrapper.entrySet()) {
+                writer.println(VARIANT_EVAL + "\t" + e.getKey() + "\t" + e.getValue().size());
+                e.getValue().forEach(writer::println);
+            }
+        }
+    }
+
+    public static VariantQCShardState read(File input) {
+        IOUtil.assertFileIsReadable(input);
+
+        boolean isMultiVcf = false;
+        List<String> samples = new ArrayList<>();
+        List<List<String>> additionalReports = new ArrayList<>();
+        Map<String, List<String>> reportLinesByWrapper = new LinkedHashMap<>();
+        try (BufferedReader reader = IOUtil.openFileForBufferedUtf8Reading(input)) {
+            String line = reader.readLine();
+            if (line == null || !line.equals(HEADER + "\t" + VERSION)) {
+                throw new UserException.BadInput("Not a VariantQC shard state file, or the file was written by an incompatible version: " + input.getPath());
+            }
+
+            while ((line = reader.readLine()) != null) {
+                String[] tokens = line.split("\t", -1);
+                if (MULTI_VCF.equals(tokens[0])) {
+                    isMultiVcf = Boolean.parseBoolean(tokens[1]);
+                }
+                else if (SAMPLES.equals(tokens[0])) {
+                    samples.addAll(Arrays.asList(tokens).subList(1, tokens.length));
+                }
+                else if (ADDITIONAL_REPORT.equals(tokens[0])) {
+                    additionalReports.add(Arrays.asList(tokens).subList(1, tokens.length));
+                }
+                else if (VARIANT_EVAL.equals(tokens[0])) {
+                    int totalLines = Integer.parseInt(tokens[2]);
+                    List<String> reportLines = new ArrayList<>(totalLines);
+                    for (int i = 0; i < totalLines; i++) {
+                        String reportLine = reader.readLine();
+                        if (reportLine == null) {
+                            throw new UserException.BadInput("The VariantQC shard state file is truncated: " + input.getPath());
+                        }
+
+                        reportLines.add(reportLine);
+                    }
+
+                    reportLinesByWrapper.put(tokens[1], reportLines);
+                }
+                else {
+                    throw new UserException.BadInput("Unexpected line in VariantQC shard state file " + input.getPath() + ": " + line);
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new GATKException(e.getMessage(), e);
+        }
+
+        return new VariantQCShardState(isMultiVcf, samples, additionalReports, reportLinesByWrapper);
+    }
+
+    /**
+     * Verifies that the other shard was produced from the same VCF(s) and report configuration as this one
+     */
+    public void validateCompatible(VariantQCShardState other, File otherFile) {
+        if (!getConfigLines().equals(other.getConfigLines()) || !reportLinesByWrapper.keySet().equals(other.reportLinesByWrapper.keySet())) {
+            throw new UserException.BadInput("The VariantQC shard state " + otherFile.getPath() + " was not produced with the same inputs and reports as the other shards");
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.github.discvrseq.util;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.SortingCollection;
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.GenotypeBuilder;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextBuilder;
+import htsjdk.variant.vcf.VCFEncoder;
+import htsjdk.variant.vcf.VCFFormatHeaderLine;
+import htsjdk.variant.vcf.VCFHeader;
+import htsjdk.variant.vcf.VCFHeaderLine;
+import htsjdk.variant.vcf.VCFHeaderLineCount;
+import htsjdk.variant.vcf.VCFHeaderLineType;
+import htsjdk.variant.vcf.VCFInfoHeaderLine;
+import htsjdk.variant.vcf.VCFStandardHeaderLines;
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class BinaryVariantContextCodecUnitTest {
+    private static final Allele REF = Allele.create("A", true);
+    private static final Allele ALT = Allele.create("G", false);
+    private static final Allele DEL = Allele.create("<DEL>", false);
+
+    private static VCFHeader getHeader() {
+        Set<VCFHeaderLine> lines = new LinkedHashSet<>();
+        lines.add(new VCFInfoHeaderLine("AF", VCFHeaderLineCount.A, VCFHeaderLineType.Float, "Allele frequency"));
+        lines.add(new VCFInfoHeaderLine("DB", 0, VCFHeaderLineType.Flag, "dbSNP"));
+        lines.add(new VCFInfoHeaderLine("NAME", 1, VCFHeaderLineType.String, "Name"));
+        lines.add(VCFStandardHeaderLines.getFormatLine("GT"));
+        lines.add(VCFStandardHeaderLines.getFormatLine("GQ"));
+        lines.add(VCFStandardHeaderLines.getFormatLine("DP"));
+        lines.add(VCFStandardHeaderLines.getFormatLine("AD"));
+        lines.add(VCFStandardHeaderLines.getFormatLine("PL"));
+        lines.add(VCFStandardHeaderLines.getFormatLine("FT"));
+        lines.add(new VCFFormatHeaderLine("XX", 1, VCFHeaderLineType.String, "Custom"));
+
+        VCFHeader header = new VCFHeader(lines, Arrays.asList("s1", "s2", "s3"));
+        header.setSequenceDictionary(new SAMSequenceDictionary(Arrays.asList(new SAMSequenceRecord("1", 10000), new SAMSequenceRecord("2", 10000))));
+
+        return header;
+    }
+
+    private static List<VariantContext> getVariants() {
+        List<VariantContext> ret = new ArrayList<>();
+
+        ret.add(new VariantContextBuilder("test", "2", 500, 500, Arrays.asList(REF, ALT))
+                .id("rs1")
+                .log10PError(-5.5)
+                .passFilters()
+                .attribute("AF", "0.123456789")
+                .attribute("DB", true)
+                .attribute("NAME", Arrays.asList("a", "b"))
+                .attribute("NotInHeader", 5)
+                .genotypes(
+                        new GenotypeBuilder("s1", Arrays.asList(REF, ALT)).GQ(50).DP(10).AD(new int[]{5, 5}).PL(new int[]{100, 0, 100}).attribute("XX", "foo").make(),
+                        new GenotypeBuilder("s2", Arrays.asList(ALT, ALT)).phased(true).filter("LowGQ").attribute("YY", 2.5).make(),
+                        new GenotypeBuilder("s3", Arrays.asList(Allele.NO_CALL, Allele.NO_CALL)).make()
+                ).make());
+
+        ret.add(new VariantContextBuilder("test", "1", 100, 200, Arrays.asList(REF, DEL))
+                .filters(new HashSet<>(Arrays.asList("LowQual")))
+                .attribute("END", 200)
+                .attribute("AF", 0.5)
+                .genotypes(
+                        new GenotypeBuilder("s3", Arrays.asList(REF, DEL)).make(),
+                        new GenotypeBuilder("s1", Arrays.asList(Allele.NO_CALL, DEL)).make()
+                ).make());
+
+        // A sites-only record on a contig absent from the dictionary:
+        ret.add(new VariantContextBuilder("test", "chrUn", 1, 1, Arrays.asList(REF, ALT)).unfiltered().make());
+
+        return ret;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        VCFHeader header = getHeader();
+        VCFEncoder encoder = new VCFEncoder(header, true, false);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        SortingCollection.Codec<VariantContext> codec = new BinaryVariantContextCodec(header);
+        codec.setOutputStream(os);
+        for (VariantContext vc : getVariants()) {
+            codec.encode(vc);
+        }
+
+        SortingCollection.Codec<VariantContext> decoder = codec.clone();
+        decoder.setInputStream(new ByteArrayInputStream(os.toByteArray()));
+        for (VariantContext vc : getVariants()) {
+            VariantContext decoded = decoder.decode();
+            Assert.assertNotNull(decoded);
+            Assert.assertEquals(encoder.encode(decoded), encoder.encode(vc));
+            Assert.assertEquals(decoded.getAttribute("AF").getClass(), vc.getAttribute("AF").getClass());
+        }
+
+        Assert.assertNull(decoder.decode());
+    }
+
+    @Test
+    public void testMaxRecordsInRam() {
+        VCFHeader header = getHeader();
+        Assert.assertEquals(BinaryVariantContextCodec.getMaxRecordsInRam(header, 1024L), BinaryVariantContextCodec.MIN_RECORDS_IN_RAM);
+        Assert.assertEquals(BinaryVariantContextCodec.getMaxRecordsInRam(header, (1024L + 3 * 256) * 100000), 100000);
+    }
+
+    @Test
+    public void testMaxRecordsInRamWithManySamples() {
+        List<String> samples = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            samples.add("Sample" + i);
+        }
+
+        VCFHeader header = new VCFHeader(new LinkedHashSet<>(List.of(VCFStandardHeaderLines.getFormatLine("GT"))), samples);
+        long bytesPerRecord = 1024L + 5000L * 256;
+
+        // Budgets large enough for the minimum are respected:
+        for (long budget : new long[]{1024L * 1024 * 1024, 4096L * 1024 * 1024}) {
+            int records = BinaryVariantContextCodec.getMaxRecordsInRam(header, budget);
+            Assert.assertTrue(records >= BinaryVariantContextCodec.MIN_RECORDS_IN_RAM);
+            Assert.assertTrue(records * bytesPerRecord <= budget, "Records exceed the RAM budget: " + records);
+        }
+        Assert.assertEquals(BinaryVariantContextCodec.getMaxRecordsInRam(header, 1024L * 1024 * 1024), 838);
+
+        // Smaller budgets are raised to the minimum, rather than spilling a handful of records per file:
+        Assert.assertEquals(BinaryVariantContextCodec.getMaxRecordsInRam(header, 1024L * 1024), BinaryVariantContextCodec.MIN_RECORDS_IN_RAM);
+    }
+
+    @Test
+    public void testSpillAtMinimum() throws Exception {
+        VCFHeader header = getHeader();
+        final int totalRecords = BinaryVariantContextCodec.MIN_RECORDS_IN_RAM * 3 + 7;
+
+        // Add records in shuffled order, with a budget small enough that every MIN_RECORDS_IN_RAM records are spilled:
+        List<VariantContext> expected = new ArrayList<>();
+        for (int i = 0; i < totalRecords; i++) {
+            String contig = i % 2 == 0 ? "1" : "2";
+            int start = 1 + (i / 2);
+            expected.add(new VariantContextBuilder("test", contig, start, start, Arrays.asList(REF, ALT))
+                    .attribute("AF", 0.5)
+                    .genotypes(
+                            new GenotypeBuilder("s1", Arrays.asList(REF, ALT)).GQ(i % 99).make(),
+                            new GenotypeBuilder("s2", Arrays.asList(ALT, ALT)).make(),
+                            new GenotypeBuilder("s3", Arrays.asList(REF, REF)).make()
+                    ).make());
+        }
+
+        List<VariantContext> shuffled = new ArrayList<>(expected);
+        Collections.shuffle(shuffled, new Random(1234));
+
+        Path tmpDir = Files.createTempDirectory("binaryCodecSpill");
+        SortingCollection<VariantContext> sorter = BinaryVariantContextCodec.createSortingCollection(header, 1L, tmpDir, LogManager.getLogger(BinaryVariantContextCodecUnitTest.class));
+        try {
+            shuffled.forEach(sorter::add);
+            sorter.doneAdding();
+
+            expected.sort(header.getVCFRecordComparator());
+            VCFEncoder encoder = new VCFEncoder(header, true, false);
+            int idx = 0;
+            try (CloseableIterator<VariantContext> it = sorter.iterator()) {
+                while (it.hasNext()) {
+                    Assert.assertEquals(encoder.encode(it.next()), encoder.encode(expected.get(idx)));
+                    idx++;
+                }
+            }
+
+            Assert.assertEquals(idx, totalRecords);
+        }
+        finally {
+            sorter.cleanup();
+            FileUtils.deleteDirectory(tmpDir.toFile());
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.github.discvrseq.util;
+
+import htsjdk.samtools.CigarOperator;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.TextCigarCodec;
+import htsjdk.samtools.util.CigarUtil;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class CigarPositionIterableUnitTest {
+    // The previous implementation, which exploded the CIGAR into one character per position and scanned backwards for indels.
+    // Each row holds: readPos, refPos, indel, lastReadPos, lastRefPos
+    private static List<int[]> referencePositions(SAMRecord rec) {
+        char[] ops = CigarUtil.cigarArrayFromString(rec.getCigar().toString());
+        int[] readPositions = new int[ops.length];
+        int[] refPositions = new int[ops.length];
+        int readPos = 0;
+        int refPos = rec.getAlignmentStart() - 1;
+        for (int i = 0; i < ops.length; i++) {
+            CigarOperator op = CigarOperator.characterToEnum(ops[i]);
+            readPositions[i] = op.consumesReadBases() ? readPos++ : -1;
+            refPositions[i] = op.consumesReferenceBases() ? refPos++ : -1;
+        }
+
+        List<int[]> ret = new ArrayList<>();
+        for (int pos = 0; pos < ops.length; pos++) {
+            int indel = 0;
+            int lastReadPos = 0;
+            int lastRefPos = 0;
+            if (readPositions[pos] > -1) {
+                lastReadPos = readPositions[pos];
+            }
+            else {
+                for (int i = pos; i >= 0; i--) {
+                    if (readPositions[i] > -1) {
+                        lastReadPos = readPositions[i];
+                        indel = i - pos;
+                        break;
+                    }
+                }
+            }
+
+            if (refPositions[pos] > -1) {
+                lastRefPos = refPositions[pos];
+            }
+            else {
+                for (int i = pos; i >= 0; i--) {
+                    if (refPositions[i] > -1) {
+                        lastRefPos = refPositions[i];
+                        indel = pos - i;
+                        break;
+                    }
+                }
+            }
+
+            ret.add(new int[]{readPositions[pos], refPositions[pos], indel, lastReadPos, lastRefPos});
+        }
+
+        return ret;
+    }
+
+    private static SAMRecord createRecord(String cigar) {
+        SAMRecord rec = new SAMRecord(new SAMFileHeader());
+        rec.setReadName("read1");
+        rec.setAlignmentStart(100);
+        rec.setCigar(TextCigarCodec.decode(cigar));
+
+        int readLength = rec.getCigar().getReadLength();
+        byte[] bases = new byte[readLength];
+        byte[] quals = new byte[readLength];
+        for (int i = 0; i < readLength; i++) {
+            bases[i] = (byte)"ACGT".charAt(i % 4);
+            quals[i] = (byte)(i % 40);
+        }
+        rec.setReadBases(bases);
+        rec.setBaseQualities(quals);
+
+        return rec;
+    }
+
+    @DataProvider(name = "cigars")
+    public Object[][] getCigars() {
+        return new Object[][]{
+                {"150M"},
+                {"300M"},
+                {"10S140M"},
+                {"5H10S120M15S5H"},
+                {"50M2I98M"},
+                {"50M3D100M"},
+                {"20M1I1D30M2D3I95M"},
+                {"3I147M"},
+                {"2D150M"},
+                {"60M500N90M"},
+                {"40M0I110M"},
+                {"100M4P50M"},
+                {"30=2X118="},
+                {"120M30S"}
+        };
+    }
+
+    @Test(dataProvider = "cigars")
+    public void testMatchesPreviousImplementation(String cigar) {
+        SAMRecord rec = createRecord(cigar);
+        List<int[]> expected = referencePositions(rec);
+
+        for (boolean reuse : new boolean[]{false, true}) {
+            CigarPositionIterable cpi = new CigarPositionIterable(rec);
+            CigarPositionIterable.CigarIterator it = reuse ? cpi.reusingIterator() : cpi.iterator();
+            CigarPositionIterable.PositionInfo previous = null;
+            int idx = 0;
+            while (it.hasNext()) {
+                CigarPositionIterable.PositionInfo pi = it.next();
+                if (previous != null) {
+                    Assert.assertEquals(pi == previous, reuse, "Unexpected PositionInfo reuse");
+                }
+                previous = pi;
+
+                Assert.assertTrue(idx < expected.size(), "More positions than expected for: " + cigar);
+                int[] row = expected.get(idx);
+                String msg = cigar + ", position " + idx + ", reuse: " + reuse;
+                Assert.assertEquals(pi.getReadPosition(), row[0], msg);
+                Assert.assertEquals(pi.getRefPosition(), row[1], msg);
+                Assert.assertEquals(pi.getIndel(), row[2], msg);
+                Assert.assertEquals(pi.getLastReadPosition(), row[3], msg);
+                Assert.assertEquals(pi.getLastRefPosition(), row[4], msg);
+                Assert.assertEquals(pi.getBaseQuality(), rec.getBaseQualities()[row[3]], msg);
+                if (row[0] > -1) {
+                    Assert.assertEquals(pi.getReadBase(), rec.getReadBases()[row[0]], msg);
+                }
+                else if (pi.isDel()) {
+                    Assert.assertEquals(pi.getReadBase(), CigarPositionIterable.INDEL_CHARACTER, msg);
+                }
+
+                idx++;
+            }
+
+            Assert.assertEquals(idx, expected.size(), "Incorrect number of positions for: " + cigar);
+            Assert.assertNull(it.next());
+        }
+    }
+
+    @Test
+    public void testOperators() {
+        SAMRecord rec = createRecord("2S2M1I1D2M");
+        List<CigarOperator> ops = new ArrayList<>();
+        for (CigarPositionIterable.PositionInfo pi : new CigarPositionIterable(rec)) {
+            ops.add(pi.getCigarOperator());
+        }
+
+        Assert.assertEquals(ops, Arrays.asList(CigarOperator.S, CigarOperator.S, CigarOperator.M, CigarOperator.M, CigarOperator.I, CigarOperator.D, CigarOperator.M, CigarOperator.M));
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.discvrseq.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class HeavyHittersUnitTest {
+    private static final int CAPACITY = 10;
+
+    // A skewed stream: three values above N / (CAPACITY + 1), one just below it, and a long tail of rare values
+    private static List<String> getStream() {
+        List<String> values = new ArrayList<>();
+        addCopies(values, "A", 20000);
+        addCopies(values, "B", 15000);
+        addCopies(values, "C", 10000);
+        addCopies(values, "D", 8000);
+
+        Random random = new Random(1234);
+        for (int i = 0; i < 47000; i++) {
+            values.add("rare" + random.nextInt(5000));
+        }
+
+        Collections.shuffle(values, new Random(5678));
+
+        return values;
+    }
+
+    private static void addCopies(List<String> values, String value, int copies) {
+        for (int i = 0; i < copies; i++) {
+            values.add(value);
+        }
+    }
+
+    private static void assertMisraGriesGuarantee(HeavyHitters hh, List<String> stream) {
+        Map<String, Long> trueCounts = new HashMap<>();
+        stream.forEach(v -> trueCounts.merge(v, 1L, Long::sum));
+
+        Map<String, Long> retained = new HashMap<>();
+        hh.getTopValues(Integer.MAX_VALUE).forEach(e -> retained.put(e.getKey(), e.getValue()));
+        Assert.assertTrue(retained.size() <= CAPACITY);
+
+        final double maxError = stream.size() / (double) (CAPACITY + 1);
+        for (Map.Entry<String, Long> e : trueCounts.entrySet()) {
+            if (e.getValue() > maxError) {
+                Assert.assertTrue(retained.containsKey(e.getKey()), "Frequent value was not retained: " + e.getKey());
+            }
+        }
+
+        for (Map.Entry<String, Long> e : retained.entrySet()) {
+            long trueCount = trueCounts.get(e.getKey());
+            Assert.assertTrue(e.getValue() <= trueCount, "Count overestimated for: " + e.getKey());
+            Assert.assertTrue(trueCount - e.getValue() <= maxError, "Count underestimated by more than N / (k + 1) for: " + e.getKey());
+        }
+    }
+
+    @Test
+    public void testExactBelowCapacity() {
+        HeavyHitters hh = new HeavyHitters(CAPACITY);
+        for (int i = 0; i < CAPACITY; i++) {
+            for (int j = 0; j <= i; j++) {
+                hh.add("value" + i);
+            }
+        }
+
+        List<Map.Entry<String, Long>> top = hh.getTopValues(3);
+        Assert.assertEquals(top.size(), 3);
+        Assert.assertEquals(top.get(0).getKey(), "value9");
+        Assert.assertEquals(top.get(0).getValue().longValue(), 10L);
+        Assert.assertEquals(top.get(2).getKey(), "value7");
+        Assert.assertEquals(top.get(2).getValue().longValue(), 8L);
+    }
+
+    @Test
+    public void testSingleInstance() {
+        List<String> stream = getStream();
+        HeavyHitters hh = new HeavyHitters(CAPACITY);
+        stream.forEach(hh::add);
+
+        assertMisraGriesGuarantee(hh, stream);
+        Assert.assertEquals(hh.getTopValues(1).get(0).getKey(), "A");
+    }
+
+    @Test
+    public void testMerge() {
+        List<String> stream = getStream();
+
+        // Partition unevenly, so the merged instances have seen different numbers of values:
+        int[] boundaries = new int[]{0, 5000, 30000, 70000, stream.size()};
+        HeavyHitters merged = null;
+        for (int i = 0; i < boundaries.length - 1; i++) {
+            HeavyHitters hh = new HeavyHitters(CAPACITY);
+            stream.subList(boundaries[i], boundaries[i + 1]).forEach(hh::add);
+            if (merged == null) {
+                merged = hh;
+            }
+            else {
+                merged.merge(hh);
+            }
+        }
+
+        assertMisraGriesGuarantee(merged, stream);
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.discvrseq.util;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class HyperLogLogUnitTest {
+    @Test
+    public void testSmallCardinalityIsExact() {
+        HyperLogLog hll = new HyperLogLog();
+        for (int i = 0; i < 100; i++) {
+            // Duplicates should not be counted:
+            hll.add("value" + i);
+            hll.add("value" + i);
+        }
+
+        Assert.assertEquals(hll.estimate(), 100L);
+    }
+
+    @DataProvider(name = "cardinalities")
+    public Object[][] getCardinalities() {
+        return new Object[][]{
+                {100000},
+                {500000},
+                {1000000}
+        };
+    }
+
+    @Test(dataProvider = "cardinalities")
+    public void testRelativeError(int distinct) {
+        // With the default precision the standard error is ~0.8%, so this allows for >3 standard errors:
+        HyperLogLog hll = new HyperLogLog();
+        for (int i = 0; i < distinct; i++) {
+            hll.add("chr1:" + i);
+        }
+
+        double error = Math.abs(hll.estimate() - distinct) / (double) distinct;
+        Assert.assertTrue(error < 0.03, "Relative error too high: " + error + ", estimate: " + hll.estimate());
+    }
+
+    @Test
+    public void testMergeEqualsUnion() {
+        // Two overlapping sets, with 300,000 distinct values in total:
+        HyperLogLog a = new HyperLogLog();
+        HyperLogLog b = new HyperLogLog();
+        HyperLogLog union = new HyperLogLog();
+        for (int i = 0; i < 300000; i++) {
+            String value = "value" + i;
+            if (i < 200000) {
+                a.add(value);
+            }
+
+            if (i >= 100000) {
+                b.add(value);
+            }
+
+            union.add(value);
+        }
+
+        a.merge(b);
+        Assert.assertEquals(a.estimate(), union.estimate());
+
+        double error = Math.abs(a.estimate() - 300000) / 300000.0;
+        Assert.assertTrue(error < 0.03, "Relative error too high: " + error);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMergeDifferentPrecision() {
+        new HyperLogLog(12).merge(new HyperLogLog(14));
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.discvrseq.util;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+public class LiteralSetMatcherUnitTest {
+    private static final char[] BASES = new char[]{'A', 'C', 'G', 'T'};
+
+    private static String randomSequence(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(BASES[random.nextInt(BASES.length)]);
+        }
+
+        return sb.toString();
+    }
+
+    @Test
+    public void testMatchesIndexOf() {
+        Random random = new Random(1234);
+        for (int trial = 0; trial < 200; trial++) {
+            List<String> literals = new ArrayList<>();
+            int totalLiterals = 1 + random.nextInt(20);
+            for (int i = 0; i < totalLiterals; i++) {
+                literals.add(randomSequence(random, 1 + random.nextInt(8)));
+            }
+
+            LiteralSetMatcher matcher = new LiteralSetMatcher(literals);
+            for (int j = 0; j < 20; j++) {
+                String read = randomSequence(random, random.nextInt(150));
+                int[] hits = matcher.findFirst(read);
+                int expectedFound = 0;
+                for (int i = 0; i < literals.size(); i++) {
+                    int expected = read.indexOf(literals.get(i));
+                    Assert.assertEquals(hits[i], expected, "Literal: " + literals.get(i) + ", read: " + read);
+                    if (expected > -1) {
+                        expectedFound++;
+                    }
+                }
+
+                Assert.assertEquals(matcher.findFirst(read, new int[literals.size()]), expectedFound);
+            }
+        }
+    }
+
+    @Test
+    public void testOverlappingAndDuplicateLiterals() {
+        LiteralSetMatcher matcher = new LiteralSetMatcher(Arrays.asList("ACGT", "CG", "GTA", "ACGT", "TTTT", "acgt"));
+        Assert.assertEquals(matcher.findFirst("TACGTACGTTTTT"), new int[]{1, 2, 3, 1, 8, -1});
+
+        // Characters outside of ASCII never match, and reset the automaton:
+        Assert.assertEquals(matcher.findFirst("AC\u00e9GTACGT"), new int[]{5, 6, 3, 5, -1, -1});
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testEmptyLiteral() {
+        new LiteralSetMatcher(Arrays.asList("ACGT", ""));
+    }
+
+    @DataProvider(name = "requiredLiterals")
+    public Object[][] getRequiredLiterals() {
+        return new Object[][]{
+                {"ACGTACGT", "ACGTACGT"},
+                {"^CTTATCCTGTGGCTGCTTGA$", "CTTATCCTGTGGCTGCTTGA"},
+                {"^[AT]+$", null},
+                {"ACG.TTTTT", "TTTTT"},
+                {"ACGTTT?GG", "ACGTT"},
+                {"ACGTTT*GGGGGGG", "GGGGGGG"},
+                {"ACGT+GG", "ACGT"},
+                {"ACGT{2,3}GG", "ACG"},
+                {"ACG(TT|CC)GGGGA", "GGGGA"},
+                {"(ACGTACGT)?GG", "GG"},
+                {"ACGT|GGGG", null},
+                {"(?i)ACGTACGT", null},
+                {"ACG[TC]AAAA[^]G]CC", "AAAA"},
+                {"AC\\.GTAC", "AC.GTAC"},
+                {"AC\\dGTACG", "GTACG"},
+                {"AC\\p{Alpha}GTACG", null},
+                {"\\QACGT\\E", null},
+                {"ACGT+?GGGGG", "GGGGG"},
+                {"[ACGT]{10,}", null}
+        };
+    }
+
+    @Test(dataProvider = "requiredLiterals")
+    public void testGetRequiredLiteral(String regex, String expected) {
+        Assert.assertEquals(LiteralSetMatcher.getRequiredLiteral(regex), expected, regex);
+    }
+
+    @Test(dataProvider = "requiredLiterals")
+    public void testRequiredLiteralIsNecessary(String regex, String expected) {
+        String literal = LiteralSetMatcher.getRequiredLiteral(regex);
+        if (literal == null) {
+            return;
+        }
+
+        Pattern pattern = Pattern.compile(regex);
+        Random random = new Random(5678);
+        for (int i = 0; i < 2000; i++) {
+            // Embed the literal in some reads, so a portion of these match the expression:
+            String read = randomSequence(random, 20 + random.nextInt(40));
+            if (random.nextBoolean()) {
+                int pos = random.nextInt(read.length());
+                read = read.substring(0, pos) + regex.replaceAll("[^ACGT]", "") + read.substring(pos);
+            }
+
+            if (pattern.matcher(read).find()) {
+                Assert.assertTrue(read.contains(literal), "Read matches " + regex + " but lacks " + literal + ": " + read);
+            }
+        }
+    }
+}
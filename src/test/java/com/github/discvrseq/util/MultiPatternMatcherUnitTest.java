@@ -0,0 +1,95 @@
+package com.github.discvrseq.util;
+
+import org.apache.commons.text.similarity.HammingDistance;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class MultiPatternMatcherUnitTest {
+    private static final char[] BASES = new char[]{'A', 'C', 'G', 'T', 'N'};
+
+    // The original per-window implementation, used as the reference:
+    private static Integer referenceMatch(String query, String readSeq, int editDistance) {
+        HammingDistance hd = new HammingDistance();
+        int windows = readSeq.length() - query.length();
+        for (int i = 0; i < windows; i++) {
+            if (hd.apply(query, readSeq.subSequence(i, i + query.length())) <= editDistance) {
+                return i;
+            }
+        }
+
+        return null;
+    }
+
+    private static String randomSequence(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(BASES[random.nextInt(random.nextInt(20) == 0 ? 5 : 4)]);
+        }
+
+        return sb.toString();
+    }
+
+    private static String mutate(Random random, String seq, int mismatches) {
+        char[] chars = seq.toCharArray();
+        for (int i = 0; i < mismatches; i++) {
+            chars[random.nextInt(chars.length)] = BASES[random.nextInt(4)];
+        }
+
+        return new String(chars);
+    }
+
+    @Test
+    public void testAgainstReference() {
+        Random random = new Random(1234);
+        for (int mismatches = 0; mismatches <= 4; mismatches++) {
+            // Lengths are chosen so patterns span more than one word, including some longer than a single word:
+            List<String> patterns = new ArrayList<>();
+            for (int length : new int[]{8, 12, 20, 25, 30, 40, 64, 70}) {
+                patterns.add(randomSequence(random, length));
+            }
+
+            MultiPatternMatcher matcher = new MultiPatternMatcher(patterns, mismatches);
+            int[] positions = new int[patterns.size()];
+            for (int i = 0; i < 2000; i++) {
+                String read = randomSequence(random, 50 + random.nextInt(150));
+
+                // Embed a mutated copy of some patterns, including at the ends of the read:
+                for (String pattern : patterns) {
+                    if (pattern.length() < read.length() && random.nextBoolean()) {
+                        int start = random.nextInt(4) == 0 ? read.length() - pattern.length() - random.nextInt(2) : random.nextInt(read.length() - pattern.length() + 1);
+                        read = read.substring(0, start) + mutate(random, pattern, random.nextInt(mismatches + 2)) + read.substring(start + pattern.length());
+                    }
+                }
+
+                int found = matcher.findFirst(read, positions);
+                int expectedFound = 0;
+                for (int patternIdx = 0; patternIdx < patterns.size(); patternIdx++) {
+                    Integer expected = referenceMatch(patterns.get(patternIdx), read, mismatches);
+                    Assert.assertEquals(positions[patternIdx], expected == null ? -1 : expected.intValue(), "Pattern: " + patterns.get(patternIdx) + ", read: " + read);
+                    Assert.assertEquals(SequenceMatcher.fuzzyMatch(patterns.get(patternIdx), read, mismatches), expected);
+                    if (expected != null) {
+                        expectedFound++;
+                    }
+                }
+
+                Assert.assertEquals(found, expectedFound);
+                Assert.assertEquals(matcher.matchesAny(read), expectedFound > 0);
+            }
+        }
+    }
+
+    @Test
+    public void testReadCase() {
+        MultiPatternMatcher matcher = new MultiPatternMatcher(Arrays.asList("ACGTACGT", "TTTTGGGG"), 1);
+        Assert.assertEquals(matcher.findFirst("nnacgtacgtnnttttgggann"), new int[]{2, 12});
+
+        // The pattern cannot end on the final base of the read:
+        Assert.assertEquals(matcher.findFirst("NNACGTACGT"), new int[]{-1, -1});
+        Assert.assertFalse(matcher.matchesAny(""));
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.discvrseq.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class QuantileSketchUnitTest {
+    private static final double[] QUANTILES = new double[]{0.01, 0.05, 0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99};
+
+    private static final int TOTAL_VALUES = 1000000;
+
+    // The allowed difference between the requested quantile and the true rank of the returned value
+    private static final double MAX_RANK_ERROR = 0.01;
+
+    // The values 0 to N-1 in random order, so the true rank of a value is (value + 1) / N
+    private static List<Double> getValues() {
+        List<Double> values = new ArrayList<>(TOTAL_VALUES);
+        for (int i = 0; i < TOTAL_VALUES; i++) {
+            values.add((double) i);
+        }
+        Collections.shuffle(values, new Random(1234));
+
+        return values;
+    }
+
+    private static void assertRankError(QuantileSketch sketch) {
+        for (double q : QUANTILES) {
+            double rank = (sketch.getQuantile(q) + 1) / TOTAL_VALUES;
+            Assert.assertTrue(Math.abs(rank - q) <= MAX_RANK_ERROR, "Rank error too high for quantile " + q + ": " + rank);
+        }
+    }
+
+    @Test
+    public void testExactBeforeCompaction() {
+        QuantileSketch sketch = new QuantileSketch();
+        Assert.assertTrue(sketch.isEmpty());
+        Assert.assertNull(sketch.getQuantile(0.5));
+
+        for (int i = 100; i >= 1; i--) {
+            sketch.add(i);
+        }
+
+        Assert.assertFalse(sketch.isEmpty());
+        Assert.assertEquals(sketch.getQuantile(0.05).doubleValue(), 5.0, 0.0);
+        Assert.assertEquals(sketch.getQuantile(0.5).doubleValue(), 50.0, 0.0);
+        Assert.assertEquals(sketch.getQuantile(1.0).doubleValue(), 100.0, 0.0);
+    }
+
+    @Test
+    public void testRankErrorAfterCompaction() {
+        QuantileSketch sketch = new QuantileSketch();
+        getValues().forEach(sketch::add);
+
+        assertRankError(sketch);
+    }
+
+    @Test
+    public void testRankErrorSortedInput() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < TOTAL_VALUES; i++) {
+            sketch.add(i);
+        }
+
+        assertRankError(sketch);
+    }
+
+    @Test
+    public void testMergeAcrossThreads() throws Exception {
+        final List<Double> values = getValues();
+        final int threads = 4;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            // Each thread builds its own sketch over an uneven share of the values, as the workers of VcfToLuceneIndexer do:
+            int[] boundaries = new int[]{0, 100000, 350000, 800000, TOTAL_VALUES};
+            List<Callable<QuantileSketch>> tasks = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                final List<Double> subset = values.subList(boundaries[i], boundaries[i + 1]);
+                tasks.add(() -> {
+                    QuantileSketch sketch = new QuantileSketch();
+                    subset.forEach(sketch::add);
+
+                    return sketch;
+                });
+            }
+
+            QuantileSketch merged = new QuantileSketch();
+            for (Future<QuantileSketch> f : executor.invokeAll(tasks)) {
+                merged.merge(f.get());
+            }
+
+            assertRankError(merged);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}
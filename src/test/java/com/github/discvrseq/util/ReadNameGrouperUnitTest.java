@@ -0,0 +1,114 @@
+package com.github.discvrseq.util;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordSetBuilder;
+import htsjdk.samtools.SamReaderFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.utils.io.IOUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ReadNameGrouperUnitTest {
+    private static final Logger logger = LogManager.getLogger(ReadNameGrouperUnitTest.class);
+
+    private static File writeBam(SAMRecordSetBuilder builder) {
+        File bam = IOUtils.createTempFile("readNameGrouper", ".bam");
+        try (SAMFileWriter writer = new SAMFileWriterFactory().makeBAMWriter(builder.getHeader(), false, bam)) {
+            for (SAMRecord rec : builder) {
+                writer.addAlignment(rec);
+            }
+        }
+
+        return bam;
+    }
+
+    private static Map<String, Integer> groupAll(ReadNameGrouper grouper) {
+        Map<String, Integer> groupSizes = new HashMap<>();
+        while (grouper.hasNext()) {
+            List<SAMRecord> group = grouper.next();
+            String readName = group.get(0).getReadName();
+            for (SAMRecord rec : group) {
+                Assert.assertEquals(rec.getReadName(), readName);
+            }
+
+            Assert.assertNull(groupSizes.put(readName, group.size()), "Read returned in more than one group: " + readName);
+        }
+
+        return groupSizes;
+    }
+
+    @Test
+    public void testGroupInMemory() {
+        SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate);
+        for (int i = 0; i < 50; i++) {
+            builder.addPair("read" + i, 0, 1000 - (i * 10), 2000 + (i * 10));
+        }
+
+        File bam = writeBam(builder);
+        try (ReadNameGrouper grouper = new ReadNameGrouper(SamReaderFactory.makeDefault(), bam, 1000, logger)) {
+            Map<String, Integer> groupSizes = groupAll(grouper);
+            Assert.assertEquals(groupSizes.size(), 50);
+            groupSizes.values().forEach(size -> Assert.assertEquals(size.intValue(), 2));
+            Assert.assertEquals(grouper.getPeakRecordsInRam(), 100);
+        }
+        finally {
+            bam.delete();
+        }
+    }
+
+    @Test
+    public void testOversizedPartitionsAreSplit() {
+        // With 64 initial partitions, ~4000 alignments will place ~60 in each partition, which exceeds the limit:
+        SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate);
+        for (int i = 0; i < 2000; i++) {
+            builder.addPair("read" + i, i % 2, 1 + (i * 10) % 50000, 100 + (i * 10) % 50000);
+        }
+
+        final int maxRecordsInRam = 20;
+        File bam = writeBam(builder);
+        try (ReadNameGrouper grouper = new ReadNameGrouper(SamReaderFactory.makeDefault(), bam, maxRecordsInRam, logger)) {
+            Map<String, Integer> groupSizes = groupAll(grouper);
+            Assert.assertEquals(groupSizes.size(), 2000);
+            groupSizes.values().forEach(size -> Assert.assertEquals(size.intValue(), 2));
+
+            Assert.assertTrue(grouper.getPeakRecordsInRam() > 0);
+            Assert.assertTrue(grouper.getPeakRecordsInRam() <= maxRecordsInRam, "Peak records in RAM exceeded the limit: " + grouper.getPeakRecordsInRam());
+        }
+        finally {
+            bam.delete();
+        }
+    }
+
+    @Test
+    public void testReadExceedingLimit() {
+        // A single read with more alignments than the limit cannot be split, but should still be returned as one group:
+        SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate);
+        for (int i = 0; i < 500; i++) {
+            builder.addPair("read" + i, 0, 1 + i * 10, 100 + i * 10);
+        }
+
+        for (int i = 0; i < 30; i++) {
+            builder.addFrag("multiMapped", 1, 1 + i * 100, false);
+        }
+
+        File bam = writeBam(builder);
+        try (ReadNameGrouper grouper = new ReadNameGrouper(SamReaderFactory.makeDefault(), bam, 20, logger)) {
+            Map<String, Integer> groupSizes = groupAll(grouper);
+            Assert.assertEquals(groupSizes.size(), 501);
+            Assert.assertEquals(groupSizes.get("multiMapped").intValue(), 30);
+            Assert.assertEquals(groupSizes.get("read0").intValue(), 2);
+        }
+        finally {
+            bam.delete();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.discvrseq.util;
+
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypeBuilder;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextBuilder;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class SiteGenotypeEncoderUnitTest {
+    private static final Allele REF = Allele.create("A", true);
+    private static final Allele ALT = Allele.create("G", false);
+    private static final Allele ALT2 = Allele.create("T", false);
+
+    private static Genotype genotype(String sampleName, Allele... alleles) {
+        return new GenotypeBuilder(sampleName, Arrays.asList(alleles)).make();
+    }
+
+    @Test
+    public void testCodesMatchSameGenotype() {
+        List<Genotype> genotypes = Arrays.asList(
+                genotype("s1", REF, REF),
+                genotype("s2", REF, ALT),
+                genotype("s3", ALT, REF),
+                genotype("s4", ALT, ALT),
+                genotype("s5", REF, ALT2),
+                genotype("s6", ALT),
+                genotype("s7", Allele.NO_CALL, ALT),
+                new GenotypeBuilder("s8", Arrays.asList(REF, ALT)).phased(true).make(),
+                new GenotypeBuilder("s9", Arrays.asList(REF, ALT)).filter("LowQual").make(),
+                genotype("s10", Allele.NO_CALL, Allele.NO_CALL)
+        );
+
+        SiteGenotypeEncoder encoder = new SiteGenotypeEncoder();
+        int[] codes = genotypes.stream().mapToInt(encoder::encode).toArray();
+        for (int i = 0; i < genotypes.size(); i++) {
+            Genotype g1 = genotypes.get(i);
+            if (g1.isFiltered() || g1.isNoCall()) {
+                Assert.assertEquals(codes[i], SiteGenotypeEncoder.NOT_CALLED, g1.toString());
+                continue;
+            }
+
+            for (int j = 0; j < genotypes.size(); j++) {
+                Genotype g2 = genotypes.get(j);
+                if (g2.isFiltered() || g2.isNoCall()) {
+                    continue;
+                }
+
+                Assert.assertEquals(codes[i] == codes[j], g1.sameGenotype(g2), g1 + " / " + g2);
+            }
+        }
+
+        Assert.assertEquals(encoder.encode(null), SiteGenotypeEncoder.NOT_CALLED);
+    }
+
+    @Test
+    public void testEncodeVariant() {
+        VariantContext vc = new VariantContextBuilder("test", "1", 100, 100, Arrays.asList(REF, ALT)).genotypes(
+                genotype("s1", REF, REF),
+                genotype("s2", REF, ALT),
+                genotype("s3", Allele.NO_CALL, Allele.NO_CALL)
+        ).make();
+
+        SiteGenotypeEncoder encoder = new SiteGenotypeEncoder();
+
+        // In the order of the record:
+        int[] codes = new int[3];
+        Assert.assertTrue(encoder.encode(vc, Arrays.asList("s1", "s2", "s3"), codes));
+        Assert.assertEquals(codes, new int[]{0, 1, SiteGenotypeEncoder.NOT_CALLED});
+
+        // A different order, and a sample absent from the record:
+        codes = new int[4];
+        Assert.assertTrue(encoder.encode(vc, Arrays.asList("s2", "s4", "s1", "s3"), codes));
+        Assert.assertEquals(codes, new int[]{1, SiteGenotypeEncoder.NOT_CALLED, 0, SiteGenotypeEncoder.NOT_CALLED});
+
+        codes = new int[1];
+        Assert.assertFalse(encoder.encode(vc, Arrays.asList("s3"), codes));
+
+        // After a reset, codes are assigned in the order genotypes are first seen:
+        encoder.reset();
+        codes = new int[2];
+        encoder.encode(vc, Arrays.asList("s2", "s1"), codes);
+        Assert.assertEquals(codes, new int[]{0, 1});
+    }
+}
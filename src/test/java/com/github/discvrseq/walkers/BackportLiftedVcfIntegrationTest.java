@@ -1,6 +1,7 @@
 package com.github.discvrseq.walkers;
 
 import htsjdk.samtools.util.IOUtil;
+import org.broadinstitute.hellbender.testutils.ArgumentsBuilder;
 import org.broadinstitute.hellbender.testutils.IntegrationTestSpec;
 import org.broadinstitute.hellbender.utils.io.IOUtils;
 import org.testng.annotations.Test;
@@ -58,6 +59,72 @@ public class BackportLiftedVcfIntegrationTest extends BaseIntegrationTest {
         }
     }
 
+    @Test
+    public void doStreamingTest() throws Exception {
+        File fasta = getHg19Micro();
+
+        IntegrationTestSpec spec = new IntegrationTestSpec(
+                " -R " + normalizePath(fasta) +
+                        " -V " + normalizePath(getInputVcf()) +
+                        " --targetFasta " + normalizePath(fasta) +
+                        " --reorderWindowSize 1" +
+                        " -O " + "%s" +
+                        " --tmp-dir " + getTmpDir(),
+                Arrays.asList(testBaseDir + "/backportLiftedOutput.vcf"));
+
+        spec.executeTest("doStreamingTest", this);
+    }
+
+    @Test
+    public void doStreamingWithFallbackTest() throws Exception {
+        File fasta = getHg19Micro();
+
+        // Reorder the original positions, and add a third record, so that the last record falls outside a window of one record:
+        File tempVcf = IOUtils.createTempFile("backportLiftedStreaming", ".vcf");
+        try (BufferedReader reader = IOUtil.openFileForBufferedUtf8Reading(getInputVcf()); PrintWriter writer = new PrintWriter(IOUtil.openFileForBufferedUtf8Writing(tempVcf))) {
+            String line;
+            String lastLine = null;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("#")) {
+                    line = line.replaceAll(BackportLiftedVcf.ORIGINAL_START + "=1;", BackportLiftedVcf.ORIGINAL_START + "=600;");
+                    lastLine = line;
+                }
+
+                writer.println(line);
+            }
+
+            writer.println(lastLine.replaceAll("\t72\t", "\t80\t").replaceAll(BackportLiftedVcf.ORIGINAL_START + "=469;", BackportLiftedVcf.ORIGINAL_START + "=10;"));
+        }
+
+        File sortedOutput = IOUtils.createTempFile("backportLiftedSorted", ".vcf");
+        File streamedOutput = IOUtils.createTempFile("backportLiftedStreamed", ".vcf");
+        try {
+            ArgumentsBuilder args = new ArgumentsBuilder();
+            args.add("R", normalizePath(fasta));
+            args.add("V", normalizePath(tempVcf));
+            args.add("targetFasta", normalizePath(fasta));
+            args.add("O", normalizePath(sortedOutput));
+            args.add("tmp-dir", getTmpDir());
+            runCommandLine(args);
+
+            args = new ArgumentsBuilder();
+            args.add("R", normalizePath(fasta));
+            args.add("V", normalizePath(tempVcf));
+            args.add("targetFasta", normalizePath(fasta));
+            args.add("reorderWindowSize", 1);
+            args.add("O", normalizePath(streamedOutput));
+            args.add("tmp-dir", getTmpDir());
+            runCommandLine(args);
+
+            IntegrationTestSpec.assertEqualTextFiles(streamedOutput, sortedOutput);
+        }
+        finally {
+            tempVcf.delete();
+            sortedOutput.delete();
+            streamedOutput.delete();
+        }
+    }
+
     private File getInputVcf(){
         return new File(testBaseDir, "backportLifted.vcf");
     }
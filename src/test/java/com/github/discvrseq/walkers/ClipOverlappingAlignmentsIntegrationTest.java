@@ -11,6 +11,15 @@ import java.util.Collections;
 public class ClipOverlappingAlignmentsIntegrationTest extends BaseIntegrationTest{
     @Test
     public void doBasicTest() throws Exception{
+        doBasicTest(false);
+    }
+
+    @Test
+    public void doBasicTestWithValidation() throws Exception{
+        doBasicTest(true);
+    }
+
+    private void doBasicTest(boolean validateAlignments) throws Exception{
         File fasta = getTestFile("SIVmac239.fasta");
         File bam = getTestFile("clipInput.sam");
         File bed = getTestFile("SIVmac239-overlap.bed");
@@ -24,6 +33,7 @@ public class ClipOverlappingAlignmentsIntegrationTest extends BaseIntegrationTes
                         " --clipIntervals " + normalizePath(bed) +
                         " -rf " + normalizePath(outReport) +
                         " -O " + normalizePath(outFile) +
+                        (validateAlignments ? " --validateAlignments" : "") +
                         " --tmp-dir " + getTmpDir(),
                 Collections.emptyList());
 
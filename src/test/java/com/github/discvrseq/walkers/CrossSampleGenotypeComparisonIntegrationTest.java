@@ -24,6 +24,22 @@ public class CrossSampleGenotypeComparisonIntegrationTest extends  BaseIntegrati
         spec.executeTest("testBasicOperation", this);
     }
 
+    @Test
+    public void testMultithreaded() throws Exception {
+        ArgumentsBuilder args = getBaseArgs();
+        args.addRaw("--threads");
+        args.addRaw("2");
+
+        IntegrationTestSpec spec = new IntegrationTestSpec(
+                args.getString(),
+                Arrays.asList(
+                    getTestFile("crossSampleGenotypeComparison.txt").getPath(),
+                    getTestFile("crossSampleGenotypeComparisonSummary.txt").getPath()
+                ));
+
+        spec.executeTest("testMultithreaded", this);
+    }
+
     private ArgumentsBuilder getBaseArgs() {
         ArgumentsBuilder args = new ArgumentsBuilder();
 
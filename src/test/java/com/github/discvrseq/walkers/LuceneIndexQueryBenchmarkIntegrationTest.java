@@ -0,0 +1,69 @@
+package com.github.discvrseq.walkers;
+
+import com.github.discvrseq.util.CsvUtils;
+import com.opencsv.CSVReader;
+import org.apache.commons.io.FileUtils;
+import org.broadinstitute.hellbender.testutils.ArgumentsBuilder;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.List;
+
+public class LuceneIndexQueryBenchmarkIntegrationTest extends BaseIntegrationTest {
+    @Test
+    public void doBasicTest() throws Exception {
+        File luceneOutDir = new File(getTmpDir(), "luceneBenchmarkIndex");
+        if (luceneOutDir.exists())
+        {
+            FileUtils.deleteDirectory(luceneOutDir);
+        }
+
+        ArgumentsBuilder indexArgs = new ArgumentsBuilder();
+        indexArgs.addRaw("--variant");
+        File input = new File(testBaseDir, "ClinvarAnnotator.vcf");
+        ensureVcfIndex(input);
+        indexArgs.addRaw(normalizePath(input));
+        indexArgs.addRaw("-O");
+        indexArgs.addRaw(normalizePath(luceneOutDir));
+        indexArgs.addRaw("-IF");
+        indexArgs.addRaw("PURPOSE");
+        runCommandLine(indexArgs.getArgsList(), VcfToLuceneIndexer.class.getSimpleName());
+
+        File output = new File(getTmpDir(), "luceneBenchmark.txt");
+
+        ArgumentsBuilder args = new ArgumentsBuilder();
+        args.addRaw("--index-dir");
+        args.addRaw(normalizePath(luceneOutDir));
+        args.addRaw("--query-file");
+        args.addRaw(normalizePath(getTestFile("queries.txt")));
+        args.addRaw("--iterations");
+        args.addRaw("3");
+        args.addRaw("--load-documents");
+        args.addRaw("--threads");
+        args.addRaw("2");
+        args.addRaw("-O");
+        args.addRaw(normalizePath(output));
+        runCommandLine(args);
+
+        try (CSVReader reader = CsvUtils.getTsvReader(output)) {
+            List<String[]> lines = reader.readAll();
+
+            // Header, five queries and the summary row:
+            Assert.assertEquals(lines.size(), 7);
+
+            Assert.assertEquals(lines.get(1)[0], "contig:1");
+            Assert.assertEquals(lines.get(1)[2], "37");
+            Assert.assertEquals(lines.get(1)[3], "3");
+
+            Assert.assertEquals(lines.get(2)[1], "genomicPosition_sort");
+            Assert.assertEquals(lines.get(2)[2], "10");
+
+            Assert.assertEquals(lines.get(3)[2], "10");
+            Assert.assertEquals(lines.get(4)[2], "1");
+
+            Assert.assertEquals(lines.get(6)[0], "ALL");
+            Assert.assertEquals(lines.get(6)[3], "15");
+        }
+    }
+}
@@ -103,6 +103,62 @@ public class PrintReadBackedHaplotypesIntegrationTest extends BaseIntegrationTes
         intervals.delete();
     }
 
+    @Test
+    public void multithreadedTest() throws Exception{
+        File fasta = getGenome();
+
+        File intervals = new File(getTmpDir(), "test.intervals");
+        try (BufferedWriter writer = IOUtil.openFileForBufferedUtf8Writing(intervals))
+        {
+            writer.write("080_pRR_Reporter_U24:3566-3685\n");
+            writer.write("080_pRR_Reporter_U24:3864-3983\n");
+        }
+
+        // Output should match the single-threaded run, including the order of intervals:
+        IntegrationTestSpec spec = new IntegrationTestSpec(
+                " -R " + normalizePath(fasta) +
+                        " -I " + normalizePath(getInput()) +
+                        " -O " + "%s" +
+                        " -L " + normalizePath(intervals) +
+                        " --threads 2" +
+                        " --in-memory-read-threshold 1000000" +
+                        " --tmp-dir " + getTmpDir(),
+                Arrays.asList(getTestFile("basicTest.txt").getPath()));
+
+        doExecute(spec, "multithreadedTest", this);
+
+        intervals.delete();
+    }
+
+    @Test
+    public void inMemoryThresholdExceededTest() throws Exception{
+        File fasta = getGenome();
+
+        File intervals = new File(getTmpDir(), "test.intervals");
+        try (BufferedWriter writer = IOUtil.openFileForBufferedUtf8Writing(intervals))
+        {
+            writer.write("080_pRR_Reporter_U24:3566-3685\n");
+            writer.write("080_pRR_Reporter_U24:3864-3983\n");
+        }
+
+        // A low threshold forces the switch from in-memory grouping to the disk-backed sort partway through each interval:
+        IntegrationTestSpec spec = new IntegrationTestSpec(
+                " -R " + normalizePath(fasta) +
+                        " -I " + normalizePath(getInput()) +
+                        " -O " + "%s" +
+                        " -rc " + "0.75" +
+                        " -mq " + "20" +
+                        " -mr " + "4" +
+                        " -L " + normalizePath(intervals) +
+                        " --in-memory-read-threshold 10" +
+                        " --tmp-dir " + getTmpDir(),
+                Arrays.asList(getTestFile("filteredTest.txt").getPath()));
+
+        doExecute(spec, "inMemoryThresholdExceededTest", this);
+
+        intervals.delete();
+    }
+
     @Test
     public void doTestWithoutIntervals() throws Exception{
         File fasta = getHg19Micro();
@@ -134,6 +134,41 @@ public class PrintReadsContainingIntegrationTest extends BaseIntegrationTest {
         IntegrationTestSpec.assertEqualTextFiles(getTestFile("ED2_R2.fastq"), output2);
     }
 
+    @Test
+    public void testMultithreaded() throws IOException {
+        File expected1 = createTempFile("expected", "-R1.fastq");
+        File expected2 = createTempFile("expected", "-R2.fastq");
+        File expectedSummary = createTempFile("expected", ".txt");
+
+        ArgumentsBuilder args = getBaseArgs(expected1, expected2, expectedSummary);
+        args.addRaw("-e");
+        args.addRaw("TCATACTCGGAGGAGCTGG");
+        args.addRaw("-e");
+        args.addRaw("^[ACGT]+GG$");
+        runCommandLine(args);
+
+        File output1 = createTempFile("output", "-R1.fastq");
+        File output2 = createTempFile("output", "-R2.fastq");
+        File summary = createTempFile("output", ".txt");
+
+        // Use small batches so the reads span several batches across the workers:
+        args = getBaseArgs(output1, output2, summary);
+        args.addRaw("-e");
+        args.addRaw("TCATACTCGGAGGAGCTGG");
+        args.addRaw("-e");
+        args.addRaw("^[ACGT]+GG$");
+        args.addRaw("--threads");
+        args.addRaw("3");
+        args.addRaw("--batch-size");
+        args.addRaw("2");
+        runCommandLine(args);
+
+        Assert.assertTrue(new XReadLines(expected1).readLines().size() > 0);
+        IntegrationTestSpec.assertEqualTextFiles(output1, expected1);
+        IntegrationTestSpec.assertEqualTextFiles(output2, expected2);
+        Assert.assertEquals(new XReadLines(summary).readLines().size(), new XReadLines(expectedSummary).readLines().size());
+    }
+
     @Test(dataProvider = "testExpressionsData")
     public void testExpressionsPairedWithSummary(String testName, String[] exprs, String[] r1Exprs, String[] r2Exprs, boolean matchAllExpressions, int expectedLinesPE, int expectedLinesSE, @Nullable  Integer expectedSummaryLines) throws IOException {
         _testExpressionsPairedWithSummaryAndNames(testName, exprs, r1Exprs, r2Exprs, matchAllExpressions, true, false, expectedLinesPE, expectedSummaryLines);
@@ -94,6 +94,28 @@ public class SplitVcfBySamplesIntegrationTest extends  BaseIntegrationTest {
         Assert.assertEquals(actualMD5, expectedMD5);
     }
 
+    @Test
+    public void testSynchronousWriters() throws Exception {
+        final File outDir = IOUtils.createTempDir("splitVcfBySamples.");
+        ArgumentsBuilder args = getBaseArgs(outDir, 1, "mergeVcfWithAlts.vcf");
+        args.addRaw("--recalculate-ac");
+        args.addRaw("--keep-original-ac");
+        args.addRaw("--original-ac-suffix");
+        args.addRaw(".new");
+        args.addRaw("--use-async-writers");
+        args.addRaw("false");
+
+        runCommandLine(args);
+
+        String actualMD5 = Utils.calculateFileMD5(new File(outDir, "mergeVcfWithAlts.1of2.vcf"));
+        String expectedMD5 = Utils.calculateFileMD5(getTestFile("mergeVcfWithAlts.1of2.vcf"));
+        Assert.assertEquals(actualMD5, expectedMD5);
+
+        actualMD5 = Utils.calculateFileMD5(new File(outDir, "mergeVcfWithAlts.2of2.vcf"));
+        expectedMD5 = Utils.calculateFileMD5(getTestFile("mergeVcfWithAlts.2of2.vcf"));
+        Assert.assertEquals(actualMD5, expectedMD5);
+    }
+
     private ArgumentsBuilder getBaseArgs(File outDir) {
         return getBaseArgs(outDir, 1);
     }
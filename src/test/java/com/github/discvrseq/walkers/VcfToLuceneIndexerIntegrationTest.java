@@ -3,6 +3,7 @@ package com.github.discvrseq.walkers;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import htsjdk.samtools.util.IOUtil;
 import org.apache.commons.io.FileUtils;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
@@ -24,6 +25,7 @@ import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.broadinstitute.hellbender.testutils.ArgumentsBuilder;
 import org.broadinstitute.hellbender.testutils.IntegrationTestSpec;
+import org.broadinstitute.hellbender.utils.io.IOUtils;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -92,6 +94,8 @@ public class VcfToLuceneIndexerIntegrationTest extends BaseIntegrationTest {
         ArgumentsBuilder args = getBaseArgs(luceneOutDir);
         args.addRaw("--threads");
         args.addRaw("2");
+        args.addRaw("--batch-size");
+        args.addRaw("5");
         runCommandLine(args);
 
         File[] outputs = luceneOutDir.listFiles();
@@ -100,6 +104,133 @@ public class VcfToLuceneIndexerIntegrationTest extends BaseIntegrationTest {
         validateLuceneIndex(luceneOutDir);
     }
 
+    @Test
+    public void doShardedTest() throws Exception {
+        File luceneOutDir = new File(getTmpDir(), "luceneOutDirSharded");
+        if (luceneOutDir.exists())
+        {
+            FileUtils.deleteDirectory(luceneOutDir);
+        }
+
+        ArgumentsBuilder args = getBaseArgs(luceneOutDir);
+        args.addRaw("--shard-by-contig");
+        args.addRaw("--shard-size");
+        args.addRaw("5000");
+        args.addRaw("--threads");
+        args.addRaw("2");
+        runCommandLine(args);
+
+        validateLuceneIndex(luceneOutDir);
+    }
+
+    @Test
+    public void doBulkProfileTest() throws Exception {
+        File luceneOutDir = new File(getTmpDir(), "luceneOutDirBulk");
+        if (luceneOutDir.exists())
+        {
+            FileUtils.deleteDirectory(luceneOutDir);
+        }
+
+        ArgumentsBuilder args = getBaseArgs(luceneOutDir);
+        args.addRaw("--index-profile");
+        args.addRaw("BULK");
+        args.addRaw("--ram-buffer-mb");
+        args.addRaw("64");
+        runCommandLine(args);
+
+        validateLuceneIndex(luceneOutDir);
+    }
+
+    @Test
+    public void doUpdateTest() throws Exception {
+        File luceneOutDir = new File(getTmpDir(), "luceneOutDirUpdate");
+        if (luceneOutDir.exists())
+        {
+            FileUtils.deleteDirectory(luceneOutDir);
+        }
+
+        runCommandLine(getBaseArgs(luceneOutDir));
+
+        // The VCF and fields are unchanged, so this should be skipped:
+        ArgumentsBuilder args = getBaseArgs(luceneOutDir);
+        args.addRaw("--update-existing-index");
+        runCommandLine(args);
+
+        validateLuceneIndex(luceneOutDir);
+
+        // This should replace the existing documents on contig 1, rather than duplicate them:
+        args = getBaseArgs(luceneOutDir);
+        args.addRaw("--update-existing-index");
+        args.addRaw("-L");
+        args.addRaw("1");
+        runCommandLine(args);
+
+        validateLuceneIndex(luceneOutDir);
+
+        try (Directory indexDirectory = FSDirectory.open(luceneOutDir.toPath());
+             DirectoryReader indexReader = DirectoryReader.open(indexDirectory)
+        ) {
+            Map<String, String> manifest = indexReader.getIndexCommit().getUserData();
+            Assert.assertEquals(manifest.size(), 1);
+
+            String key = manifest.keySet().iterator().next();
+            Assert.assertTrue(key.startsWith(VcfToLuceneIndexer.MANIFEST_KEY_PREFIX) && key.endsWith("ClinvarAnnotator.vcf"));
+            Assert.assertTrue(manifest.get(key).contains("intervals=1:"));
+        }
+    }
+
+    @Test
+    public void doShardedUpdateTest() throws Exception {
+        File luceneOutDir = new File(getTmpDir(), "luceneOutDirShardedUpdate");
+        if (luceneOutDir.exists())
+        {
+            FileUtils.deleteDirectory(luceneOutDir);
+        }
+
+        runCommandLine(getBaseArgs(luceneOutDir));
+
+        // Create a copy of the input with the sites moved to contig 2, so the existing index has a contig (1) not present in this VCF:
+        File vcfDir = IOUtils.createTempDir("luceneShardedUpdate");
+        File contig2Vcf = new File(vcfDir, "contig2.vcf");
+        try (BufferedReader reader = IOUtil.openFileForBufferedUtf8Reading(new File(testBaseDir, "ClinvarAnnotator.vcf")); PrintWriter writer = new PrintWriter(IOUtil.openFileForBufferedUtf8Writing(contig2Vcf))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                writer.println(line.startsWith("#") ? line : line.replaceFirst("^1\t", "2\t"));
+            }
+        }
+        ensureVcfIndex(contig2Vcf);
+
+        try {
+            ArgumentsBuilder args = new ArgumentsBuilder();
+            args.addRaw("--variant");
+            args.addRaw(normalizePath(contig2Vcf));
+            args.addRaw("-O");
+            args.addRaw(normalizePath(luceneOutDir));
+            args.addRaw("-IF");
+            args.addRaw("PURPOSE");
+            args.addRaw("--update-existing-index");
+            args.addRaw("--shard-by-contig");
+            args.addRaw("--threads");
+            args.addRaw("2");
+            args.addRaw(" --tmp-dir");
+            args.addRaw(getTmpDir());
+            runCommandLine(args);
+        }
+        finally {
+            FileUtils.deleteDirectory(vcfDir);
+        }
+
+        // The documents on contig 1 should be retained, and the sites on contig 2 added:
+        try (Directory indexDirectory = FSDirectory.open(luceneOutDir.toPath());
+             IndexReader indexReader = DirectoryReader.open(indexDirectory)
+        ) {
+            IndexSearcher indexSearcher  = new IndexSearcher(indexReader);
+            Assert.assertEquals(indexSearcher.search(new TermQuery(new Term("contig", "1")), 10).totalHits.value(), 37L);
+            Assert.assertEquals(indexSearcher.search(LongPoint.newRangeQuery("genomicPosition", 0, 3000), 10).totalHits.value(), 10L);
+            Assert.assertEquals(indexSearcher.search(new TermQuery(new Term("contig", "2")), 10).totalHits.value(), 37L);
+        }
+    }
+
     private void validateLuceneIndex(File indexPath) throws IOException, ParseException {
         try (Directory indexDirectory = FSDirectory.open(indexPath.toPath());
              IndexReader indexReader = DirectoryReader.open(indexDirectory)
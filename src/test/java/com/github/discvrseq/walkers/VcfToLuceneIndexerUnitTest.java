@@ -0,0 +1,66 @@
+package com.github.discvrseq.walkers;
+
+import htsjdk.variant.variantcontext.*;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class VcfToLuceneIndexerUnitTest {
+    private static final Allele REF = Allele.create("A", true);
+    private static final Allele ALT1 = Allele.create("G");
+    private static final Allele ALT2 = Allele.create("T");
+
+    private static final List<String> SAMPLES = Arrays.asList("Sample3", "Sample1", "Sample5", "Sample2", "Sample4", "Sample6", "Sample7");
+
+    private List<Genotype> getGenotypes() {
+        List<Genotype> ret = new ArrayList<>();
+        ret.add(new GenotypeBuilder("Sample3", Arrays.asList(REF, ALT1)).make());
+        ret.add(new GenotypeBuilder("Sample1", Arrays.asList(ALT1, ALT1)).make());
+        ret.add(new GenotypeBuilder("Sample5", Arrays.asList(ALT1, ALT2)).make());
+        ret.add(new GenotypeBuilder("Sample2", Arrays.asList(REF, REF)).make());
+        ret.add(new GenotypeBuilder("Sample4", Arrays.asList(ALT2, ALT2)).filter("LowGQ").make());
+        ret.add(new GenotypeBuilder("Sample6", Arrays.asList(Allele.NO_CALL, Allele.NO_CALL)).make());
+        ret.add(new GenotypeBuilder("Sample7", Arrays.asList(Allele.NO_CALL, ALT2)).make());
+
+        return ret;
+    }
+
+    private VariantContext getVariant(List<Genotype> genotypes) {
+        return new VariantContextBuilder("test", "1", 100, 100, Arrays.asList(REF, ALT1, ALT2)).genotypes(genotypes).make();
+    }
+
+    @Test
+    public void testGenotypeTally() {
+        List<Genotype> genotypes = getGenotypes();
+        validateTally(getVariant(genotypes));
+
+        // Genotypes not in header order should use the fallback path:
+        Collections.reverse(genotypes);
+        validateTally(getVariant(genotypes));
+    }
+
+    private void validateTally(VariantContext vc) {
+        VcfToLuceneIndexer.GenotypeTally tally = new VcfToLuceneIndexer.GenotypeTally(SAMPLES);
+        tally.tally(vc);
+
+        Assert.assertEquals(tally.getAltAlleleCount(), 2);
+        Assert.assertEquals(tally.getCalledCount(), vc.getGenotypes().stream().filter(g -> !g.isFiltered() && !g.isNoCall()).count());
+
+        for (Allele alt : vc.getAlternateAlleles()) {
+            int altIdx = vc.getAlleleIndex(alt) - 1;
+
+            List<String> expectedVariable = vc.getGenotypes().stream().filter(g -> !g.isFiltered() && !g.isNoCall() && g.getAlleles().contains(alt)).map(Genotype::getSampleName).sorted().toList();
+            Assert.assertEquals(Arrays.asList(tally.getVariableSamples(altIdx)).subList(0, tally.getVariableSampleCount(altIdx)), expectedVariable);
+
+            List<String> expectedHomVar = vc.getGenotypes().stream().filter(g -> !g.isFiltered() && !g.isNoCall() && g.getAlleles().contains(alt) && g.isHomVar()).map(Genotype::getSampleName).sorted().toList();
+            Assert.assertEquals(Arrays.asList(tally.getHomVarSamples(altIdx)).subList(0, tally.getHomVarCount(altIdx)), expectedHomVar);
+
+            long expectedHet = vc.getGenotypes().stream().filter(g -> !g.isFiltered() && !g.isNoCall() && g.getAlleles().contains(alt) && g.isHet()).count();
+            Assert.assertEquals(tally.getHetCount(altIdx), expectedHet);
+        }
+    }
+}
@@ -76,9 +76,35 @@ public class IntegrationSiteMapperIntegrationTest extends BaseIntegrationTest {
         doTest(1);
     }
 
+    @Test
+    public void doMultithreadedTest() throws Exception {
+        // Small batches ensure results from several workers are merged:
+        doTest(3, " --threads 2 --read-batch-size 2 ");
+    }
+
+    @Test
+    public void doCoordinateSortedTest() throws Exception {
+        // Alignments are grouped by read name in memory:
+        doTest(3, "", "tagPcrTestCoordinateSorted.sam");
+    }
+
+    @Test
+    public void doCoordinateSortedPartitionedTest() throws Exception {
+        // Alignments are partitioned by read name to temp files:
+        doTest(3, " --max-reads-in-ram 5 ", "tagPcrTestCoordinateSorted.sam");
+    }
+
     private void doTest(int minAlign) throws Exception {
+        doTest(minAlign, "");
+    }
+
+    private void doTest(int minAlign, String extraArgs) throws Exception {
+        doTest(minAlign, extraArgs, "tagPcrTest.sam");
+    }
+
+    private void doTest(int minAlign, String extraArgs, String inputFile) throws Exception {
         String name = "BasicTest";
-        File bam = new File(testBaseDir, "tagPcrTest.sam");
+        File bam = new File(testBaseDir, inputFile);
 
         IntegrationTestSpec spec = new IntegrationTestSpec(
                 " -R " + getHg19Micro() +
@@ -88,6 +114,7 @@ public class IntegrationSiteMapperIntegrationTest extends BaseIntegrationTest {
                         " -ma " + minAlign + " " +
                         " --reads-to-output 3 " +
                         " --insert-name piggybac " +
+                        extraArgs +
                         " --tmp-dir " + getTmpDir(),
                 Arrays.asList(getTestFile(name + "-" + minAlign + ".outputTable.txt").getPath(), getTestFile(name + "-" + minAlign + ".metrics.txt").getPath())
         );
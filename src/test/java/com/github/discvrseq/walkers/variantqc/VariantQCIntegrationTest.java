@@ -157,6 +157,50 @@ public class VariantQCIntegrationTest extends BaseIntegrationTest {
         expected.delete();
     }
 
+    @Test
+    public void testScatterGather() throws Exception {
+        // Split chromosome 1 into two shards, which should merge to the same report as a single run over chromosome 1:
+        ArgumentsBuilder gatherArgs = new ArgumentsBuilder();
+        int shardIdx = 0;
+        for (String interval : Arrays.asList("1:1-3000", "1:3001-16000")) {
+            shardIdx++;
+            File shardState = new File(getTmpDir(), "variantQCShard" + shardIdx + ".txt.gz");
+
+            ArgumentsBuilder args = new ArgumentsBuilder();
+            args.addRaw("--variant");
+            args.addRaw(normalizePath(new File(testBaseDir, "ClinvarAnnotator.vcf")));
+            args.addRaw("-R");
+            args.addRaw(normalizePath(getHg19Micro()));
+            args.addRaw("-L");
+            args.addRaw(interval);
+            args.addRaw("-O");
+            args.addRaw(normalizePath(new File(getTmpDir(), "variantQCShard" + shardIdx + ".html")));
+            args.addRaw("--shard-state-output");
+            args.addRaw(normalizePath(shardState));
+            args.addRaw("--tmp-dir");
+            args.addRaw(getTmpDir());
+            runCommandLine(args);
+
+            gatherArgs.addRaw("-I");
+            gatherArgs.addRaw(normalizePath(shardState));
+        }
+
+        File outFile = new File(getTmpDir(), "variantQCGathered.html");
+        File jsonFile = new File(getTmpDir(), "variantQCGathered.json");
+        gatherArgs.addRaw("-O");
+        gatherArgs.addRaw(normalizePath(outFile));
+        gatherArgs.addRaw("-rd");
+        gatherArgs.addRaw(normalizePath(jsonFile));
+        gatherArgs.addRaw("--tmp-dir");
+        gatherArgs.addRaw(getTmpDir());
+        runCommandLine(gatherArgs.getArgsList(), GatherVariantQC.class.getSimpleName());
+
+        File expected = generateCompleteOutput(getTestFile("testBasicOperation.html"));
+        IntegrationTestSpec.assertEqualTextFiles(outFile, expected);
+        IntegrationTestSpec.assertEqualTextFiles(jsonFile, getTestFile("testBasicOperation.json"));
+        expected.delete();
+    }
+
     private ArgumentsBuilder getBasePedigreeArgs()
     {
         ArgumentsBuilder args = new ArgumentsBuilder();